@@ -0,0 +1,57 @@
+package com.example.springbootreactor.benchmarks;
+
+import com.example.springbootreactor.flujos.SchedulerBloqueante;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.concurrent.TimeUnit;
+
+// * LLAMADAS llamadas bloqueantes de `latencia` ms, todas a la vez (flatMap sin tope), sobre boundedElastic
+// * (~10 hilos por nucleo) contra hilos virtuales. Cada operacion dura segundos, por eso SingleShotTime.
+// * En una JVM sin hilos virtuales (< 21) VIRTUAL falla en el @Setup y JMH no da numeros para ese caso (si no
+// * SchedulerBloqueante volveria a boundedElastic y se compararia boundedElastic consigo mismo):
+// * correr con un JDK 21 (java -jar benchmarks.jar o -jvm /ruta/jdk-21/bin/java)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BloqueantesBenchmark {
+
+    private static final int LLAMADAS = 10_000;
+
+    @Param({"BOUNDED_ELASTIC", "VIRTUAL"})
+    private SchedulerBloqueante.Tipo tipo;
+
+    @Param({"10"})
+    private long latencia;
+
+    private Scheduler scheduler;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        if (tipo == SchedulerBloqueante.Tipo.VIRTUAL && !SchedulerBloqueante.hilosVirtualesDisponibles()) {
+            throw new IllegalStateException("La JVM (" + Runtime.version() + ") no tiene hilos virtuales: "
+                    + "VIRTUAL seria boundedElastic otra vez, correr con un JDK 21");
+        }
+        scheduler = SchedulerBloqueante.crear(tipo);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        scheduler.dispose();
+    }
+
+    @Benchmark
+    public long llamadasConcurrentes() {
+        return Flux.range(1, LLAMADAS)
+                .flatMap(i -> SchedulerBloqueante.llamar(() -> {
+                    Thread.sleep(latencia);
+                    return i;
+                }, scheduler), LLAMADAS)
+                .count()
+                .block();
+    }
+}
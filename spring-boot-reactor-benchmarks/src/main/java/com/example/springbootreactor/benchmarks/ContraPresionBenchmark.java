@@ -0,0 +1,68 @@
+package com.example.springbootreactor.benchmarks;
+
+import com.example.springbootreactor.flujos.DemandaAdaptativa;
+import com.example.springbootreactor.flujos.Flujos;
+import com.example.springbootreactor.flujos.SuscriptorPorLotes;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// * ejemploContraPresion: el Subscriber propio que pide de a `limite` contra limitRate(limite) y DemandaAdaptativa
+// * (arranca en `limite` y crece hasta MAXIMO), y como referencia la suscripcion sin limite (request(Long.MAX_VALUE))
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ContraPresionBenchmark {
+
+    private static final int ELEMENTOS = 10_000;
+
+    private static final int MAXIMO = 1024;
+
+    private static final Duration OBJETIVO = Duration.ofMillis(1);
+
+    @Param({"2", "32", "256"})
+    private int limite;
+
+    @Benchmark
+    public void suscriptorPorLotes(Blackhole bh) {
+        Flux.range(1, ELEMENTOS).subscribe(new SuscriptorPorLotes<Integer>(limite, bh::consume));
+    }
+
+    @Benchmark
+    public void limitRate(Blackhole bh) {
+        Flux.range(1, ELEMENTOS).limitRate(limite).subscribe(bh::consume);
+    }
+
+    @Benchmark
+    public void demandaAdaptativa(Blackhole bh) {
+        Flux.range(1, ELEMENTOS).subscribe(new DemandaAdaptativa<Integer>(limite, MAXIMO, OBJETIVO, bh::consume));
+    }
+
+    // * Como operador (transform), el costo del puente con el suscriptor de abajo
+    @Benchmark
+    public void demandaAdaptativaOperador(Blackhole bh) {
+        Flux.range(1, ELEMENTOS).transform(DemandaAdaptativa.operador(limite, MAXIMO, OBJETIVO)).subscribe(bh::consume);
+    }
+
+    @Benchmark
+    public void sinLimite(Blackhole bh) {
+        Flux.range(1, ELEMENTOS).subscribe(bh::consume);
+    }
+
+    // * Flux.create guarda en su buffer lo que el suscriptor todavia no pidio
+    @Benchmark
+    public void createPorLotes(Blackhole bh) {
+        Flujos.desdeCreate(ELEMENTOS).subscribe(new SuscriptorPorLotes<Integer>(limite, bh::consume));
+    }
+
+    @Benchmark
+    public void createLimitRate(Blackhole bh) {
+        Flujos.desdeCreate(ELEMENTOS).limitRate(limite).subscribe(bh::consume);
+    }
+}
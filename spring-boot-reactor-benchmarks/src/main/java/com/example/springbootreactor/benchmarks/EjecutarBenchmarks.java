@@ -0,0 +1,22 @@
+package com.example.springbootreactor.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// * Igual que el main de JMH pero siempre con el profiler gc: cada benchmark informa ops/s y
+// * gc.alloc.rate.norm (bytes asignados por operacion). Acepta las mismas opciones de linea de comandos
+public class EjecutarBenchmarks {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions opciones = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder()
+                .parent(opciones)
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.springbootreactor.benchmarks;
+
+import com.example.springbootreactor.flujos.EnriquecimientoComentarios;
+import com.example.springbootreactor.flujos.Flujos;
+import com.example.springbootreactor.models.Comentarios;
+import com.example.springbootreactor.models.Usuario;
+import com.example.springbootreactor.models.UsuarioComentarios;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// * Enriquecer USUARIOS usuarios con una fuente bloqueante de `latencia` micros por llamada: un Mono.fromCallable
+// * por usuario como en ejemploUsuarioComentariosZipWith (secuencial) contra EnriquecimientoComentarios por lotes,
+// * con y sin orden. Al terminar cada iteracion se imprime el p99 por etapa
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EnriquecimientoBenchmark {
+
+    private static final int USUARIOS = 2_000;
+
+    private static final int LOTE = 100;
+
+    @Param({"200"})
+    private long latencia;
+
+    private EnriquecimientoComentarios desordenado;
+    private EnriquecimientoComentarios ordenado;
+
+    @Setup(Level.Iteration)
+    public void preparar() {
+        desordenado = new EnriquecimientoComentarios(this::fuente, LOTE, false);
+        ordenado = new EnriquecimientoComentarios(this::fuente, LOTE, true);
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportar() {
+        for (EnriquecimientoComentarios enriquecimiento : List.of(desordenado, ordenado)) {
+            if (enriquecimiento.getTotal().getMuestras() > 0) {
+                System.out.println();
+                System.out.println(enriquecimiento.estadisticas());
+            }
+        }
+    }
+
+    private List<Comentarios> fuente(List<Usuario> usuarios) {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(latencia));
+        return Flujos.comentarios(usuarios);
+    }
+
+    @Benchmark
+    public void secuencial(Blackhole bh) {
+        Flujos.usuarios(USUARIOS)
+                .concatMap(usuario -> Flujos.usuarioComentariosZipWith(Mono.just(usuario),
+                        Mono.fromCallable(() -> fuente(List.of(usuario)).get(0))))
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnNext(bh::consume)
+                .blockLast();
+    }
+
+    @Benchmark
+    public void porLotesDesordenado(Blackhole bh) {
+        consumir(desordenado.enriquecer(Flujos.usuarios(USUARIOS)), bh);
+    }
+
+    @Benchmark
+    public void porLotesOrdenado(Blackhole bh) {
+        consumir(ordenado.enriquecer(Flujos.usuarios(USUARIOS)), bh);
+    }
+
+    private static void consumir(Flux<UsuarioComentarios> flujo, Blackhole bh) {
+        flujo.doOnNext(bh::consume).blockLast();
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.springbootreactor.benchmarks;
+
+import com.example.springbootreactor.flujos.Flujos;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// * OPERADOR MAP, FILTER, FLATMAP y COLLECTLIST sobre la lista de nombres de SpringBootReactorApplication
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UsuarioBenchmark {
+
+    private static final String[] NOMBRES = {"Andres", "Pedro", "Maria", "Diego"};
+
+    @Param({"4", "1000"})
+    private int tamano;
+
+    private List<String> nombres;
+
+    @Setup
+    public void setUp() {
+        nombres = new ArrayList<>(tamano);
+        for (int i = 0; i < tamano; i++) {
+            nombres.add(NOMBRES[i % NOMBRES.length]);
+        }
+    }
+
+    @Benchmark
+    public void map(Blackhole bh) {
+        Flujos.usuarios(Flux.fromIterable(nombres)).subscribe(bh::consume);
+    }
+
+    @Benchmark
+    public void filter(Blackhole bh) {
+        Flujos.usuariosFiltrados(Flux.fromIterable(nombres)).subscribe(bh::consume);
+    }
+
+    // * Mismo resultado que filter pero con un Mono por elemento
+    @Benchmark
+    public void flatMap(Blackhole bh) {
+        Flujos.usuariosFlatMap(Flux.fromIterable(nombres)).subscribe(bh::consume);
+    }
+
+    @Benchmark
+    public void collectList(Blackhole bh) {
+        Flujos.coleccionar(Flux.fromIterable(nombres)).subscribe(bh::consume);
+    }
+}
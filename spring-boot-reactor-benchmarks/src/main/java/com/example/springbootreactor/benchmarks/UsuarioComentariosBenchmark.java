@@ -0,0 +1,32 @@
+package com.example.springbootreactor.benchmarks;
+
+import com.example.springbootreactor.flujos.Flujos;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+// * Combinar el Usuario con sus Comentarios: flatMap anidado contra zipWith
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UsuarioComentariosBenchmark {
+
+    @Benchmark
+    public void flatMap(Blackhole bh) {
+        Flujos.usuarioComentariosFlatMap(Flujos.usuario(), Flujos.comentarios()).subscribe(bh::consume);
+    }
+
+    @Benchmark
+    public void zipWith(Blackhole bh) {
+        Flujos.usuarioComentariosZipWith(Flujos.usuario(), Flujos.comentarios()).subscribe(bh::consume);
+    }
+
+    @Benchmark
+    public void zipWithRange(Blackhole bh) {
+        Flujos.zipWithRange(Flujos.desdeCreate(4), 4).subscribe(bh::consume);
+    }
+}
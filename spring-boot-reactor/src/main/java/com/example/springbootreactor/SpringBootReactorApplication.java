@@ -1,22 +1,31 @@
 package com.example.springbootreactor;
 
-import com.example.springbootreactor.models.Comentarios;
+import com.example.springbootreactor.flujos.DemandaAdaptativa;
+import com.example.springbootreactor.flujos.EnriquecimientoComentarios;
+import com.example.springbootreactor.flujos.FuenteEventos;
+import com.example.springbootreactor.flujos.Flujos;
+import com.example.springbootreactor.flujos.MicroLotes;
+import com.example.springbootreactor.flujos.SchedulerBloqueante;
 import com.example.springbootreactor.models.Usuario;
-import com.example.springbootreactor.models.UsuarioComentarios;
-import org.reactivestreams.Subscriber;
-import org.reactivestreams.Subscription;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.ui.Model;
+import org.springframework.context.ConfigurableApplicationContext;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
 
 import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
 
 
 @SpringBootApplication
@@ -24,8 +33,19 @@ public class SpringBootReactorApplication implements CommandLineRunner {
 
     private static final Logger log = LoggerFactory.getLogger(SpringBootReactorApplication.class);
 
+    @Value("${config.bloqueantes.scheduler:VIRTUAL}")
+    private SchedulerBloqueante.Tipo tipoBloqueantes;
+
+    // * Los ejemplos con tiempo corren encadenados en segundo plano: run() no bloquea el hilo
+    private Mono<Void> ejemplosConTiempo = Mono.empty();
+
+    private Disposable ejecucion = Disposables.disposed();
+
     public static void main(String[] args) {
-        SpringApplication.run(SpringBootReactorApplication.class, args);
+        ConfigurableApplicationContext contexto = SpringApplication.run(SpringBootReactorApplication.class, args);
+        // * El unico block() esta aca, en el borde: los hilos de Reactor son daemon y sin esto la JVM
+        // * terminaria antes de que los ejemplos con tiempo impriman algo
+        contexto.getBean(SpringBootReactorApplication.class).getEjemplosConTiempo().block();
     }
 
     @Override
@@ -52,16 +72,11 @@ public class SpringBootReactorApplication implements CommandLineRunner {
         );
 
         // * OPERADOR MAP
-        nombres.map(nombre -> {
-                    return new Usuario(nombre.toUpperCase(), "Un apellido");
-                })
+        Flujos.usuarios(nombres)
                 .subscribe(e -> System.out.println("OPERADOR MAP => " + e.toString()));
 
         // * OPERADOR FILTER - Cada vez que se ejecuta un nuevo operador se crea nuevas instancias con su propio estado modificado
-        nombres.map(nombre -> {
-                    return new Usuario(nombre.toUpperCase(), "Un apellido");
-                })
-                .filter(usuario -> usuario.getNombre().equalsIgnoreCase("Andres"))
+        Flujos.usuariosFiltrados(nombres)
                 .subscribe(e -> System.out.println("OPERADOR FILTER => " + e.toString()));
 
         // * CREANDO UN FLUX (OBSERVABLE) A PARTIR DE UN LIST O ITERABLE
@@ -79,20 +94,12 @@ public class SpringBootReactorApplication implements CommandLineRunner {
         // * MONGODB SI ES REACTIVO -> ReactivePersonRepository extends ReactiveSortingRepository<Person, Long>
 
         // * OPERADOR FLATMAP -> APLANA UNA LISTA DE LISTAS
-        nombresIterables.map(nombre -> new Usuario(nombre.toUpperCase(), "Un apellido"))
-                .flatMap(usuario -> {
-                    if (usuario.getNombre().equalsIgnoreCase("Andres")) {
-                        return Mono.just(usuario);
-                    } else {
-                        return Mono.empty();
-                    }
-                })
+        Flujos.usuariosFlatMap(nombresIterables)
                 .subscribe(e -> System.out.println("OPERADOR FLATMAP => " + e.toString()));
 
         // * CONVERTIR UN FLUX A MONO
         List<String> usuariosFlux = Arrays.asList("Andres", "Diego", "Maria");
-        Flux.fromIterable(usuariosFlux)
-                .collectList()
+        Flujos.coleccionar(Flux.fromIterable(usuariosFlux))
                 .subscribe(list -> {
                     System.out.println("FLUX A MONO => ");
                     list.forEach(System.out::println);
@@ -107,89 +114,79 @@ public class SpringBootReactorApplication implements CommandLineRunner {
         // * OPERADOR RANGE
         ejemploZipWithRange();
 
-        // * INTERVALOS DE TIEMPOS CON OPERADOR INTERVAL Y ZIPWITH
-        ejemploInterval();
-        ejemploDelayElements();
-
-        // * INTERVALOS DE TIEMPOS INFINITO
-        ejemploIntervaloInfinito();
-
-        // * CREANDO OPERADOR PROPIO FLUX
-        ejemploIntervaloDesdeCreate();
-
         // * MANEJANDO CONTRAPRESION
         ejemploContraPresion();
-    }
-
-    public void ejemploContraPresion() throws InterruptedException {
-        Flux.range(1, 10)
-                .log()
-                // * .limitRate(5) CANTIDAD DE ELEMNTOS QUE QUEREMOS RECIBIR
-                .subscribe(new Subscriber<Integer>() {
-
-                    private Subscription s;
-                    private Integer limite = 2;
-                    private Integer consumido = 0;
 
-                    @Override
-                    public void onSubscribe(Subscription subscription) {
-                        this.s = subscription;
-                        s.request(limite); // Envia todos los elementos de 1 sola vez
-                    }
-
-                    @Override
-                    public void onNext(Integer integer) {
-                        System.out.println("CONTRAPRESION => " + integer);
-                        consumido++;
-                        if (consumido == limite) {
-                            consumido = 0;
-                            s.request(limite);
-                        }
-                    }
+        // * Antes cada uno hacia blockLast() (o esperaba en un CountDownLatch que nunca se liberaba) y dejaba el hilo
+        // * bloqueado. Ahora cada ejemplo devuelve un Mono<Void> y se encadenan en el mismo orden
+        // * Los dos ejemplos bloqueantes van primero y uno detras del otro: si corren a la vez se reparten boundedElastic
+        // * y los tiempos que imprimen no dicen nada
+        ejemplosConTiempo = Mono.defer(this::ejemploLlamadasBloqueantes) // * LLAMADAS BLOQUEANTES (HILOS VIRTUALES O BOUNDEDELASTIC)
+                .then(Mono.defer(this::ejemploEnriquecimientoParalelo)) // * ENRIQUECER USUARIOS CON BUSQUEDAS POR LOTES
+                .then(Mono.defer(this::ejemploInterval)) // * INTERVALOS DE TIEMPOS CON OPERADOR INTERVAL Y ZIPWITH
+                .then(Mono.defer(this::ejemploDelayElements))
+                .then(Mono.defer(this::ejemploIntervaloInfinito)) // * INTERVALOS DE TIEMPOS INFINITO
+                .then(Mono.defer(this::ejemploIntervaloDesdeCreate)) // * CREANDO OPERADOR PROPIO FLUX
+                .then(Mono.defer(this::ejemploMicroLotes)) // * LOTES POR CANTIDAD O TIEMPO
+                .doFinally(signal -> log.info("Terminaron los ejemplos con tiempo"))
+                .cache();
+        ejecucion = ejemplosConTiempo.subscribe();
+    }
 
-                    @Override
-                    public void onError(Throwable throwable) {
+    public Mono<Void> getEjemplosConTiempo() {
+        return ejemplosConTiempo;
+    }
 
-                    }
+    @PreDestroy
+    public void detener() {
+        ejecucion.dispose();
+    }
 
-                    @Override
-                    public void onComplete() {
+    public Mono<Void> ejemploMicroLotes() {
+        // * Un elemento cada 10ms: los lotes se cortan por tiempo (50ms) mucho antes de llegar a 32 elementos.
+        // * La "escritura" tarda 20ms y hay como maximo 2 en vuelo
+        MicroLotes<Long> microLotes = new MicroLotes<>(32, Duration.ofMillis(50), 2, Schedulers.parallel());
+        return microLotes.procesar(Flux.interval(Duration.ofMillis(10)).take(200),
+                        lote -> Mono.delay(Duration.ofMillis(20)).thenReturn(lote.size()))
+                .doOnNext(tamano -> System.out.println("Lote escrito: " + tamano))
+                .doFinally(signal -> log.info("Micro lotes: " + microLotes.contadores()))
+                .then();
+    }
 
-                    }
-                });
+    public void ejemploContraPresion() {
+        // * Antes: new SuscriptorPorLotes<>(2, ...) pedia siempre de a 2. DemandaAdaptativa arranca en 2 y
+        // * agranda el lote mientras el consumo se mantenga por debajo de la latencia objetivo
+        DemandaAdaptativa<Integer> demanda = new DemandaAdaptativa<>(2, 8, Duration.ofMillis(10),
+                integer -> System.out.println("CONTRAPRESION => " + integer));
+        Flux.range(1, 10)
+                .log()
+                .subscribe(demanda);
+        log.info("Lote final: " + demanda.getLote());
     }
 
-    public void ejemploIntervaloDesdeCreate() throws InterruptedException {
-        Flux.create(emitter -> {
-                    Timer timer = new Timer();
-                    timer.schedule(new TimerTask() {
-                        private Integer contador = 0;
-
-                        @Override
-                        public void run() {
-                            emitter.next(++contador);
-                            if (contador == 10) {
-                                timer.cancel();
-                                emitter.complete();
-                            }
-                            if (contador == 5) {
-                                timer.cancel();
-                                emitter.error(new InterruptedException("Solo hasta 5"));
-                            }
-                        }
-                    }, 1000, 1000);
+    public Mono<Void> ejemploIntervaloDesdeCreate() {
+        // * Antes se emitia desde un java.util.Timer que seguia corriendo si se cancelaba la suscripcion
+        FuenteEventos<Long> fuente = new FuenteEventos<>(contador -> contador, 10, Duration.ofSeconds(1), Duration.ofSeconds(1),
+                Schedulers.parallel(), FuenteEventos.Desborde.BUFFER, 256);
+        return fuente.flujo()
+                .<Long>handle((next, sink) -> {
+                    sink.next(next);
+                    if (next == 5) {
+                        sink.error(new InterruptedException("Solo hasta 5"));
+                    }
                 })
                 .doOnNext(next -> System.out.println(next))
                 .doOnComplete(() -> System.out.println("Ha finalizado la ejecucion"))
                 .doOnError(error -> System.out.println("Ha ocurrido un error: " + error.getMessage()))
-                .subscribe();
+                .doFinally(signal -> log.info("Contadores: " + fuente.contadores()))
+                .onErrorResume(error -> Mono.empty())
+                .then();
     }
 
-    public void ejemploIntervaloInfinito() throws InterruptedException {
-        CountDownLatch latch = new CountDownLatch(1);
-
-        Flux.interval(Duration.ofSeconds(1))
-                .doOnTerminate(() -> latch.countDown())
+    public Mono<Void> ejemploIntervaloInfinito() {
+        // * El CountDownLatch se liberaba en doOnTerminate del interval, que nunca termina (el error lo cancela),
+        // * asi que el hilo quedaba esperando para siempre
+        return Flux.interval(Duration.ofSeconds(1))
                 .flatMap(i -> {
                     if (i >= 5) {
                         return Flux.error(new InterruptedException("Solo hasta 5"));
@@ -198,68 +195,78 @@ public class SpringBootReactorApplication implements CommandLineRunner {
                 })
                 .map(i -> "Hola " + i)
                 //.doOnNext(s -> System.out.println(s))
-                .retry(2)
-                .subscribe(s -> System.out.println(s), error -> log.error(error.getMessage()));
-
-        latch.await();
+                // * Antes .retry(2) se volvia a suscribir enseguida: con backoff exponencial y jitter los reintentos
+                // * se espacian (y no coinciden entre instancias). Al agotarse se propaga el error original
+                .retryWhen(Retry.backoff(2, Duration.ofMillis(500))
+                        .jitter(0.5)
+                        .doBeforeRetry(senal -> log.warn("Reintento " + (senal.totalRetries() + 1) + ": " + senal.failure().getMessage()))
+                        .onRetryExhaustedThrow((spec, senal) -> senal.failure()))
+                .doOnNext(s -> System.out.println(s))
+                .doOnError(error -> log.error(error.getMessage()))
+                .onErrorResume(error -> Mono.empty())
+                .then();
     }
 
-    public void ejemploDelayElements() throws InterruptedException {
+    public Mono<Void> ejemploDelayElements() {
         System.out.println("EJEMPLO DELAY ELEMENTS");
         Flux<Integer> rangos = Flux.range(1, 12)
                 .delayElements(Duration.ofSeconds(1))
                 .doOnNext(i -> System.out.println("Interval: " + i));
 
-        rangos.blockLast();
+        return rangos.then();
     }
 
-    public void ejemploInterval() {
+    public Mono<Void> ejemploInterval() {
         System.out.println("EJEMPLO INTERVAL");
         Flux<Integer> rangos = Flux.range(1, 12);
         Flux<Long> retraso = Flux.interval(Duration.ofSeconds(1));
-        rangos.zipWith(retraso, (rango, retrazo) -> rango)
+        // * Antes terminaba en blockLast(): TAMBIEN SE SUSCRIBE PERO BLOCKEA EL PROCESO - ES SYNCRONICO - NO ES RECOMENDABLE
+        return rangos.zipWith(retraso, (rango, retrazo) -> rango)
                 .doOnNext(i -> System.out.println("Interval: " + i))
-                .blockLast(); // * TAMBIEN SE SUSCRIBE PERO BLOCKEA EL PROCESO - ES SYNCRONICO - NO ES RECOMENDABLE
+                .then();
     }
 
     public void ejemploZipWithRange() {
         System.out.println("EJEMPLO ZIPWITH RANGE");
-        Flux<Integer> rangos = Flux.range(1, 4);
-        Flux.just(1, 2, 3, 4)
-                .map(i -> i * 2)
-                .zipWith(rangos, (uno, dos) -> String.format("Primer Flux: %d, Segundo Flux: %d", uno, dos))
+        Flujos.zipWithRange(Flux.just(1, 2, 3, 4), 4)
                 .subscribe(System.out::println);
     }
 
     public void ejemploUsuarioComentariosFlatMap() {
-        Mono<Usuario> usuarioMono = Mono.fromCallable(() -> crearUsuario());
-        Mono<Comentarios> comentariosUsuarioMono = Mono.fromCallable(() -> {
-            Comentarios comentarios = new Comentarios();
-            comentarios.addComentario("Hola que tal");
-            comentarios.addComentario("Que tal");
-            return comentarios;
-        });
-
-        usuarioMono
-                .flatMap(u -> comentariosUsuarioMono.map(c -> new UsuarioComentarios(u, c)))
+        Flujos.usuarioComentariosFlatMap(Flujos.usuario(), Flujos.comentarios())
                 .subscribe(uc -> System.out.println("EJEMPLO FLATMAP => " + uc.toString()));
     }
 
-    public void ejemploUsuarioComentariosZipWith() {
-        Mono<Usuario> usuarioMono = Mono.fromCallable(() -> crearUsuario());
-        Mono<Comentarios> comentariosUsuarioMono = Mono.fromCallable(() -> {
-            Comentarios comentarios = new Comentarios();
-            comentarios.addComentario("Hola que tal");
-            comentarios.addComentario("Que tal");
-            return comentarios;
-        });
-
-        usuarioMono
-                .zipWith(comentariosUsuarioMono, (usuario, comentarios) -> new UsuarioComentarios(usuario, comentarios))
-                .subscribe(uc -> System.out.println("EJEMPLO ZIPWITH => " + uc.toString()));
+    public Mono<Void> ejemploLlamadasBloqueantes() {
+        // * 1000 llamadas de 100ms a la vez: con boundedElastic se atienden de a ~10 por nucleo, con hilos virtuales todas juntas
+        Scheduler bloqueantes = SchedulerBloqueante.crear(tipoBloqueantes);
+        long inicio = System.nanoTime();
+        return Flux.range(1, 1_000)
+                .flatMap(i -> SchedulerBloqueante.llamar(() -> {
+                    Thread.sleep(100);
+                    return new Usuario("Usuario" + i, "Bloqueante");
+                }, bloqueantes), 1_000)
+                .count()
+                .doOnNext(cantidad -> log.info(String.format("Llamadas bloqueantes (%s): %d en %d ms",
+                        SchedulerBloqueante.tipo(bloqueantes), cantidad, Duration.ofNanos(System.nanoTime() - inicio).toMillis())))
+                .doFinally(signal -> bloqueantes.dispose())
+                .then();
+    }
+
+    public Mono<Void> ejemploEnriquecimientoParalelo() {
+        // * La fuente simula una consulta bloqueante de 5ms por lote de 100 usuarios
+        EnriquecimientoComentarios enriquecimiento = new EnriquecimientoComentarios(usuarios -> {
+            LockSupport.parkNanos(Duration.ofMillis(5).toNanos());
+            return Flujos.comentarios(usuarios);
+        }, 100, false);
+        return enriquecimiento.enriquecer(Flujos.usuarios(10_000))
+                .count()
+                .doOnNext(cantidad -> log.info("Usuarios enriquecidos: " + cantidad + " " + enriquecimiento.estadisticas()))
+                .then();
     }
 
-    private Usuario crearUsuario() {
-        return new Usuario("Diego", "Garcia");
+    public void ejemploUsuarioComentariosZipWith() {
+        Flujos.usuarioComentariosZipWith(Flujos.usuario(), Flujos.comentarios())
+                .subscribe(uc -> System.out.println("EJEMPLO ZIPWITH => " + uc.toString()));
     }
 }
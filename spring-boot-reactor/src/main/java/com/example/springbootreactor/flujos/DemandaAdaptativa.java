@@ -0,0 +1,182 @@
+package com.example.springbootreactor.flujos;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Operators;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+// * Reemplazo del request(2) fijo de ejemploContraPresion: pide de a `lote` elementos y ajusta el lote con AIMD.
+// * Si el lote se proceso dentro de la latencia objetivo y abajo sigue habiendo demanda, crece de forma aditiva.
+// * Si tardo mas, o abajo se acumulan elementos sin pedir, se divide a la mitad. Siempre entre minimo y maximo.
+// * La latencia se mide desde el primer elemento del lote: la espera a que la fuente conteste el request no cuenta,
+// * asi el lote sigue al consumidor y no a lo que tarda la fuente (por ejemplo la ida y vuelta de un cursor)
+public class DemandaAdaptativa<T> extends BaseSubscriber<T> {
+
+    private final int minimo;
+    private final int maximo;
+    private final int incremento;
+    private final long objetivo;
+    private final Consumer<? super T> consumidor;
+    private final LongSupplier demandaAbajo;
+    private final Runnable alCompletar;
+    private final Consumer<? super Throwable> alFallar;
+
+    // * true entre que se termino un lote y se pide el siguiente (el siguiente lo puede pedir el hilo de abajo)
+    private final AtomicBoolean esperando = new AtomicBoolean();
+
+    private volatile int lote;
+    private int pendientes;
+    private long inicioLote; // * 0 = todavia no llego el primer elemento del lote
+    private volatile long aumentos;
+    private volatile long reducciones;
+
+    public DemandaAdaptativa(int minimo, int maximo, Duration objetivo, Consumer<? super T> consumidor) {
+        this(minimo, maximo, objetivo, consumidor, () -> Long.MAX_VALUE, () -> { }, error -> { });
+    }
+
+    public DemandaAdaptativa(int minimo, int maximo, Duration objetivo, Consumer<? super T> consumidor,
+                             LongSupplier demandaAbajo, Runnable alCompletar, Consumer<? super Throwable> alFallar) {
+        this.minimo = Math.max(1, minimo);
+        this.maximo = Math.max(this.minimo, maximo);
+        this.incremento = Math.max(1, (this.maximo - this.minimo) / 8);
+        this.objetivo = objetivo.toNanos();
+        this.consumidor = consumidor;
+        this.demandaAbajo = demandaAbajo;
+        this.alCompletar = alCompletar;
+        this.alFallar = alFallar;
+        this.lote = this.minimo;
+    }
+
+    // * Como operador (flux.transform(DemandaAdaptativa.operador(...))): cada lote se limita a la demanda pendiente
+    // * de abajo, asi que nunca se recibe mas de lo pedido y no hace falta cola intermedia. Con Operators.lift el
+    // * suscriptor queda en la cadena y el Context de abajo llega a la fuente (sesiones de Mongo, observaciones)
+    public static <T> Function<Flux<T>, Flux<T>> operador(int minimo, int maximo, Duration objetivo) {
+        Function<? super Publisher<T>, ? extends Publisher<T>> lift =
+                Operators.lift((escaneable, abajo) -> new Operador<T>(minimo, maximo, objetivo, abajo, new AtomicLong()));
+        return fuente -> Flux.from(lift.apply(fuente));
+    }
+
+    private static final class Operador<T> extends DemandaAdaptativa<T> {
+
+        private final CoreSubscriber<? super T> abajo;
+        private final AtomicLong pedidos;
+
+        private Operador(int minimo, int maximo, Duration objetivo, CoreSubscriber<? super T> abajo, AtomicLong pedidos) {
+            super(minimo, maximo, objetivo, valor -> {
+                if (pedidos.get() != Long.MAX_VALUE) {
+                    pedidos.decrementAndGet();
+                }
+                abajo.onNext(valor);
+            }, pedidos::get, abajo::onComplete, abajo::onError);
+            this.abajo = abajo;
+            this.pedidos = pedidos;
+        }
+
+        @Override
+        public Context currentContext() {
+            return abajo.currentContext();
+        }
+
+        // * Abajo puede pedir dentro de su onSubscribe: el primer lote se pide recien en el hookOnSubscribe del padre
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            abajo.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                    if (Operators.validate(n)) {
+                        pedidos.getAndUpdate(r -> Operators.addCap(r, n));
+                        reanudar();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    dispose();
+                }
+            });
+            super.hookOnSubscribe(subscription);
+        }
+    }
+
+    @Override
+    protected void hookOnSubscribe(Subscription subscription) {
+        esperando.set(true);
+        reanudar();
+    }
+
+    @Override
+    protected void hookOnNext(T value) {
+        if (inicioLote == 0) {
+            inicioLote = System.nanoTime();
+        }
+        consumidor.accept(value);
+        if (--pendientes == 0) {
+            ajustar(System.nanoTime() - inicioLote);
+            esperando.set(true);
+            reanudar();
+        }
+    }
+
+    @Override
+    protected void hookOnComplete() {
+        alCompletar.run();
+    }
+
+    @Override
+    protected void hookOnError(Throwable throwable) {
+        alFallar.accept(throwable);
+    }
+
+    // * Pide el siguiente lote si hay uno pendiente de pedir y abajo hay demanda. Lo pueden llamar a la vez el hilo
+    // * que consume y el que genera demanda abajo: el compareAndSet hace que solo lo pida uno, y si no habia demanda
+    // * se vuelve a mirar despues de marcar esperando para no perder un request que llego en el medio
+    public void reanudar() {
+        while (esperando.compareAndSet(true, false)) {
+            long demanda = demandaAbajo.getAsLong();
+            if (demanda > 0) {
+                pendientes = (int) Math.min(lote, demanda);
+                inicioLote = 0;
+                request(pendientes);
+                return;
+            }
+            esperando.set(true);
+            if (demandaAbajo.getAsLong() == 0) {
+                return;
+            }
+        }
+    }
+
+    private void ajustar(long latencia) {
+        if (latencia <= objetivo && demandaAbajo.getAsLong() > 0) {
+            if (lote < maximo) {
+                lote = Math.min(maximo, lote + incremento);
+                aumentos++;
+            }
+        } else if (lote > minimo) {
+            lote = Math.max(minimo, lote / 2);
+            reducciones++;
+        }
+    }
+
+    public int getLote() {
+        return lote;
+    }
+
+    public long getAumentos() {
+        return aumentos;
+    }
+
+    public long getReducciones() {
+        return reducciones;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.springbootreactor.flujos;
+
+import com.example.springbootreactor.models.Comentarios;
+import com.example.springbootreactor.models.Usuario;
+import com.example.springbootreactor.models.UsuarioComentarios;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.ParallelFlux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+// * Version por lotes de ejemploUsuarioComentariosZipWith: en vez de un Mono.fromCallable por usuario, los usuarios
+// * se agrupan de a `lote` y los comentarios de todo el lote se buscan con una sola llamada a la fuente (bloqueante).
+// * Los lotes se reparten en `paralelismo` rieles (parallel().runOn). Cada riel tiene hasta `concurrencia` busquedas
+// * en vuelo sobre el scheduler de bloqueantes y el armado de los UsuarioComentarios vuelve a los rieles.
+// * En modo ordenado cada riel busca un lote a la vez (concatMap) y ordered() intercala los rieles por indice de lote
+public class EnriquecimientoComentarios {
+
+    private final Function<List<Usuario>, List<Comentarios>> buscarComentarios;
+    private final int lote;
+    private final int paralelismo;
+    private final int concurrencia;
+    private final boolean ordenado;
+    private final Scheduler rieles;
+    private final Scheduler bloqueantes;
+
+    private final EstadisticasEtapa busqueda = new EstadisticasEtapa("busqueda");
+    private final EstadisticasEtapa armado = new EstadisticasEtapa("armado");
+    // * Desde que el riel toma el lote (busqueda, salto a los rieles y armado). No cuenta la espera en la cola del
+    // * riel: con la fuente mucho mas rapida que las busquedas esa espera crece con el tamaño de la entrada
+    private final EstadisticasEtapa total = new EstadisticasEtapa("total");
+
+    private record Lote(long indice, List<Usuario> usuarios) {
+    }
+
+    private record LoteConComentarios(Lote lote, List<Comentarios> comentarios, long tomado) {
+    }
+
+    private record LoteEnriquecido(long indice, List<UsuarioComentarios> resultados) {
+    }
+
+    public EnriquecimientoComentarios(Function<List<Usuario>, List<Comentarios>> buscarComentarios, int lote, boolean ordenado) {
+        this(buscarComentarios, lote, Runtime.getRuntime().availableProcessors(), 4, ordenado,
+                Schedulers.parallel(), Schedulers.boundedElastic());
+    }
+
+    // * buscarComentarios devuelve los comentarios en el mismo orden que los usuarios que recibe
+    public EnriquecimientoComentarios(Function<List<Usuario>, List<Comentarios>> buscarComentarios, int lote, int paralelismo,
+                                      int concurrencia, boolean ordenado, Scheduler rieles, Scheduler bloqueantes) {
+        this.buscarComentarios = buscarComentarios;
+        this.lote = lote;
+        this.paralelismo = paralelismo;
+        this.concurrencia = concurrencia;
+        this.ordenado = ordenado;
+        this.rieles = rieles;
+        this.bloqueantes = bloqueantes;
+    }
+
+    public Flux<UsuarioComentarios> enriquecer(Flux<Usuario> usuarios) {
+        ParallelFlux<Lote> lotes = usuarios
+                .buffer(lote)
+                .index(Lote::new)
+                .parallel(paralelismo)
+                .runOn(rieles);
+
+        ParallelFlux<LoteEnriquecido> enriquecidos = (ordenado ? lotes.concatMap(this::buscar)
+                : lotes.flatMap(this::buscar, false, concurrencia))
+                .runOn(rieles)
+                .map(this::armar);
+
+        Flux<LoteEnriquecido> salida = ordenado
+                ? enriquecidos.ordered(Comparator.comparingLong(LoteEnriquecido::indice))
+                : enriquecidos.sequential();
+        return salida.flatMapIterable(LoteEnriquecido::resultados);
+    }
+
+    private Mono<LoteConComentarios> buscar(Lote lote) {
+        long tomado = System.nanoTime();
+        return Mono.fromCallable(() -> {
+                    long inicio = System.nanoTime();
+                    List<Comentarios> comentarios = buscarComentarios.apply(lote.usuarios());
+                    busqueda.registrar(inicio, lote.usuarios().size());
+                    return new LoteConComentarios(lote, comentarios, tomado);
+                })
+                .subscribeOn(bloqueantes);
+    }
+
+    private LoteEnriquecido armar(LoteConComentarios buscado) {
+        long inicio = System.nanoTime();
+        List<Usuario> usuarios = buscado.lote().usuarios();
+        List<UsuarioComentarios> resultados = new ArrayList<>(usuarios.size());
+        for (int i = 0; i < usuarios.size(); i++) {
+            resultados.add(new UsuarioComentarios(usuarios.get(i), buscado.comentarios().get(i)));
+        }
+        armado.registrar(inicio, usuarios.size());
+        total.registrar(buscado.tomado(), usuarios.size());
+        return new LoteEnriquecido(buscado.lote().indice(), resultados);
+    }
+
+    public EstadisticasEtapa getBusqueda() {
+        return busqueda;
+    }
+
+    public EstadisticasEtapa getArmado() {
+        return armado;
+    }
+
+    public EstadisticasEtapa getTotal() {
+        return total;
+    }
+
+    public Map<String, Map<String, Long>> estadisticas() {
+        Map<String, Map<String, Long>> estadisticas = new LinkedHashMap<>();
+        for (EstadisticasEtapa etapa : List.of(busqueda, armado, total)) {
+            estadisticas.put(etapa.getNombre(), etapa.resumen());
+        }
+        return estadisticas;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.springbootreactor.flujos;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// * Latencia y throughput de una etapa de un pipeline. Las latencias van a un histograma logaritmico
+// * (16 sub-buckets por potencia de 2, error menor al 7%) para sacar percentiles sin guardar cada muestra.
+// * Se puede registrar desde varios hilos a la vez (rieles de un ParallelFlux)
+public class EstadisticasEtapa {
+
+    private static final int SUB_BUCKETS = 16;
+    private static final int BITS_SUB_BUCKET = 4;
+
+    private final String nombre;
+    private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+    private final LongAdder muestras = new LongAdder();
+    private final LongAdder elementos = new LongAdder();
+    private final AtomicLong primerInicio = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong ultimoFin = new AtomicLong();
+
+    public EstadisticasEtapa(String nombre) {
+        this.nombre = nombre;
+    }
+
+    // * desde = System.nanoTime() al empezar la etapa, elementos = cuantos elementos proceso
+    public void registrar(long desde, int elementos) {
+        long ahora = System.nanoTime();
+        buckets.incrementAndGet(indice(Math.max(1, ahora - desde)));
+        muestras.increment();
+        this.elementos.add(elementos);
+        primerInicio.accumulateAndGet(desde, Math::min);
+        ultimoFin.accumulateAndGet(ahora, Math::max);
+    }
+
+    // * Latencia (nanos) por debajo de la cual quedan el p (0..1) de las muestras. Devuelve el tope del bucket
+    public long percentil(double p) {
+        long total = muestras.sum();
+        if (total == 0) {
+            return 0;
+        }
+        long rango = Math.max(1, (long) Math.ceil(p * total));
+        long acumulado = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            acumulado += buckets.get(i);
+            if (acumulado >= rango) {
+                return tope(i);
+            }
+        }
+        return tope(buckets.length() - 1);
+    }
+
+    // * Elementos por segundo entre el inicio de la primera muestra y el fin de la ultima
+    public long getElementosPorSegundo() {
+        long duracion = ultimoFin.get() - primerInicio.get();
+        if (duracion <= 0) {
+            return 0;
+        }
+        return elementos.sum() * TimeUnit.SECONDS.toNanos(1) / duracion;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public long getMuestras() {
+        return muestras.sum();
+    }
+
+    public long getElementos() {
+        return elementos.sum();
+    }
+
+    public Map<String, Long> resumen() {
+        Map<String, Long> resumen = new LinkedHashMap<>();
+        resumen.put("muestras", getMuestras());
+        resumen.put("elementos", getElementos());
+        resumen.put("elementosPorSegundo", getElementosPorSegundo());
+        resumen.put("p50Micros", TimeUnit.NANOSECONDS.toMicros(percentil(0.50)));
+        resumen.put("p99Micros", TimeUnit.NANOSECONDS.toMicros(percentil(0.99)));
+        return resumen;
+    }
+
+    // * Los valores menores a 16 tienen bucket propio, el resto se reparte en 16 buckets por potencia de 2
+    private static int indice(long valor) {
+        if (valor < SUB_BUCKETS) {
+            return (int) valor;
+        }
+        int exponente = 63 - Long.numberOfLeadingZeros(valor);
+        int sub = (int) (valor >>> (exponente - BITS_SUB_BUCKET)) & (SUB_BUCKETS - 1);
+        return (exponente - BITS_SUB_BUCKET + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long tope(int indice) {
+        if (indice < SUB_BUCKETS) {
+            return indice;
+        }
+        int exponente = indice / SUB_BUCKETS + BITS_SUB_BUCKET - 1;
+        int desplazamiento = exponente - BITS_SUB_BUCKET;
+        long base = (long) (SUB_BUCKETS + indice % SUB_BUCKETS) << desplazamiento;
+        return base + (1L << desplazamiento) - 1;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.springbootreactor.flujos;
+
+import com.example.springbootreactor.models.Comentarios;
+import com.example.springbootreactor.models.Usuario;
+import com.example.springbootreactor.models.UsuarioComentarios;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// * Cadenas de operadores de los ejemplos de SpringBootReactorApplication, sin los System.out.
+// * Las usan tanto la aplicacion como el modulo spring-boot-reactor-benchmarks (JMH)
+public final class Flujos {
+
+    private Flujos() {
+    }
+
+    // * OPERADOR MAP
+    public static Flux<Usuario> usuarios(Flux<String> nombres) {
+        return nombres.map(nombre -> new Usuario(nombre.toUpperCase(), "Un apellido"));
+    }
+
+    // * OPERADOR FILTER
+    public static Flux<Usuario> usuariosFiltrados(Flux<String> nombres) {
+        return usuarios(nombres)
+                .filter(usuario -> usuario.getNombre().equalsIgnoreCase("Andres"));
+    }
+
+    // * OPERADOR FLATMAP
+    public static Flux<Usuario> usuariosFlatMap(Flux<String> nombres) {
+        return usuarios(nombres)
+                .flatMap(usuario -> {
+                    if (usuario.getNombre().equalsIgnoreCase("Andres")) {
+                        return Mono.just(usuario);
+                    } else {
+                        return Mono.empty();
+                    }
+                });
+    }
+
+    // * FLUX A MONO
+    public static Mono<List<String>> coleccionar(Flux<String> nombres) {
+        return nombres.collectList();
+    }
+
+    public static Mono<UsuarioComentarios> usuarioComentariosFlatMap(Mono<Usuario> usuarioMono, Mono<Comentarios> comentariosMono) {
+        return usuarioMono
+                .flatMap(u -> comentariosMono.map(c -> new UsuarioComentarios(u, c)));
+    }
+
+    public static Mono<UsuarioComentarios> usuarioComentariosZipWith(Mono<Usuario> usuarioMono, Mono<Comentarios> comentariosMono) {
+        return usuarioMono
+                .zipWith(comentariosMono, (usuario, comentarios) -> new UsuarioComentarios(usuario, comentarios));
+    }
+
+    public static Mono<Usuario> usuario() {
+        return Mono.fromCallable(() -> new Usuario("Diego", "Garcia"));
+    }
+
+    public static Mono<Comentarios> comentarios() {
+        return Mono.fromCallable(() -> {
+            Comentarios comentarios = new Comentarios();
+            comentarios.addComentario("Hola que tal");
+            comentarios.addComentario("Que tal");
+            return comentarios;
+        });
+    }
+
+    // * Busqueda por lotes: los comentarios de varios usuarios en una sola llamada, en el mismo orden
+    public static List<Comentarios> comentarios(List<Usuario> usuarios) {
+        List<Comentarios> resultado = new ArrayList<>(usuarios.size());
+        for (Usuario usuario : usuarios) {
+            Comentarios comentarios = new Comentarios();
+            comentarios.addComentario("Hola " + usuario.getNombre());
+            comentarios.addComentario("Que tal");
+            resultado.add(comentarios);
+        }
+        return resultado;
+    }
+
+    public static Flux<Usuario> usuarios(int cantidad) {
+        return Flux.range(1, cantidad).map(i -> new Usuario("Usuario" + i, "Apellido" + i));
+    }
+
+    // * OPERADOR RANGE + ZIPWITH
+    public static Flux<String> zipWithRange(Flux<Integer> numeros, int cantidad) {
+        return numeros
+                .map(i -> i * 2)
+                .zipWith(Flux.range(1, cantidad), (uno, dos) -> String.format("Primer Flux: %d, Segundo Flux: %d", uno, dos));
+    }
+
+    // * FLUX.CREATE emitiendo de forma sincronica (el ejemplo de la aplicacion lo hace desde un Timer)
+    public static Flux<Integer> desdeCreate(int cantidad) {
+        return Flux.create(emitter -> {
+            for (int i = 1; i <= cantidad && !emitter.isCancelled(); i++) {
+                emitter.next(i);
+            }
+            emitter.complete();
+        });
+    }
+}
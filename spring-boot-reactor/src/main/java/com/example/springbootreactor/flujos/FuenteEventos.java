@@ -0,0 +1,111 @@
+package com.example.springbootreactor.flujos;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+// * Fuente de eventos periodica basada en ejemploIntervaloDesdeCreate, pero sobre un Scheduler de Reactor en vez de un Timer.
+// * La tarea periodica se cancela al cancelar/terminar la suscripcion (FluxSink.onDispose) y lo que el suscriptor
+// * no alcanza a pedir se resuelve con la estrategia de desborde configurada.
+// * Los contadores permiten medir la perdida (descartados) y el retraso (encolados) ante rafagas del productor
+public class FuenteEventos<T> {
+
+    public enum Desborde {
+        BUFFER,  // * Buffer acotado a `capacidad`, si se llena se descarta el mas viejo
+        DROP,    // * Se descartan los eventos que el suscriptor no pidio
+        LATEST,  // * Solo se guarda el ultimo evento no pedido
+        ERROR    // * Falla con una excepcion de overflow
+    }
+
+    private final LongFunction<T> generador;
+    private final long cantidad;
+    private final Duration retraso;
+    private final Duration periodo;
+    private final Scheduler scheduler;
+    private final Desborde desborde;
+    private final int capacidad;
+
+    private final AtomicLong emitidos = new AtomicLong();
+    private final AtomicLong entregados = new AtomicLong();
+    private final AtomicLong descartados = new AtomicLong();
+
+    // * generador recibe el contador (1, 2, 3...) y cantidad = 0 emite sin fin
+    public FuenteEventos(LongFunction<T> generador, long cantidad, Duration retraso, Duration periodo,
+                         Scheduler scheduler, Desborde desborde, int capacidad) {
+        this.generador = generador;
+        this.cantidad = cantidad;
+        this.retraso = retraso;
+        this.periodo = periodo;
+        this.scheduler = scheduler;
+        this.desborde = desborde;
+        this.capacidad = capacidad;
+    }
+
+    public Flux<T> flujo() {
+        Flux<T> eventos = Flux.create(this::programar, estrategia());
+        if (desborde == Desborde.BUFFER) {
+            eventos = eventos.onBackpressureBuffer(capacidad, descartado -> { }, BufferOverflowStrategy.DROP_OLDEST);
+        }
+        // * Todo lo que se descarta (por desborde o al cancelar con eventos en el buffer) pasa por el hook de discard
+        return eventos
+                .doOnNext(evento -> entregados.incrementAndGet())
+                .doOnDiscard(Object.class, descartado -> descartados.incrementAndGet());
+    }
+
+    private void programar(FluxSink<T> sink) {
+        AtomicLong contador = new AtomicLong();
+        Disposable tarea = scheduler.schedulePeriodically(() -> {
+            long actual = contador.incrementAndGet();
+            emitidos.incrementAndGet();
+            sink.next(generador.apply(actual));
+            if (actual == cantidad) {
+                sink.complete();
+            }
+        }, retraso.toNanos(), periodo.toNanos(), TimeUnit.NANOSECONDS);
+        sink.onDispose(tarea);
+    }
+
+    private FluxSink.OverflowStrategy estrategia() {
+        return switch (desborde) {
+            case BUFFER -> FluxSink.OverflowStrategy.BUFFER;
+            case DROP -> FluxSink.OverflowStrategy.DROP;
+            case LATEST -> FluxSink.OverflowStrategy.LATEST;
+            case ERROR -> FluxSink.OverflowStrategy.ERROR;
+        };
+    }
+
+    public long getEmitidos() {
+        return emitidos.get();
+    }
+
+    public long getEntregados() {
+        return entregados.get();
+    }
+
+    public long getDescartados() {
+        return descartados.get();
+    }
+
+    // * Emitidos que todavia no llegaron al suscriptor ni se descartaron
+    public long getEncolados() {
+        return emitidos.get() - entregados.get() - descartados.get();
+    }
+
+    public Map<String, Long> contadores() {
+        Map<String, Long> contadores = new LinkedHashMap<>();
+        contadores.put("emitidos", getEmitidos());
+        contadores.put("entregados", getEntregados());
+        contadores.put("descartados", getDescartados());
+        contadores.put("encolados", getEncolados());
+        return contadores;
+    }
+}
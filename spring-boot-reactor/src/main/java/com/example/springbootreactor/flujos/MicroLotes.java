@@ -0,0 +1,126 @@
+package com.example.springbootreactor.flujos;
+
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+// * Junta los elementos en lotes de hasta `tamano`, o lo que haya llegado en `espera` si no se llena antes, y los
+// * escribe con hasta `enVuelo` escrituras a la vez (insertAll de Mongo, llamadas salientes...). Asi se paga el costo
+// * por llamada una vez por lote sin que un lote incompleto espere indefinidamente.
+// * Se usa windowTimeout con fairBackpressure y no bufferTimeout: en esta version de Reactor bufferTimeout falla
+// * con overflow si vence el tiempo mientras las escrituras en vuelo no piden mas lotes
+public class MicroLotes<T> {
+
+    public enum Motivo {
+        TAMANO,  // * El lote se lleno
+        TIEMPO,  // * Vencio la espera con el lote incompleto
+        FIN      // * Termino la fuente con el lote incompleto
+    }
+
+    private final int tamano;
+    private final Duration espera;
+    private final int enVuelo;
+    private final Scheduler scheduler;
+
+    private final LongAdder lotes = new LongAdder();
+    private final LongAdder elementos = new LongAdder();
+    private final Map<Motivo, LongAdder> cortes = new EnumMap<>(Motivo.class);
+    private final AtomicInteger enCurso = new AtomicInteger();
+    private final AtomicInteger maximoEnCurso = new AtomicInteger();
+
+    public MicroLotes(int tamano, Duration espera, int enVuelo, Scheduler scheduler) {
+        this.tamano = tamano;
+        this.espera = espera;
+        this.enVuelo = enVuelo;
+        this.scheduler = scheduler;
+        for (Motivo motivo : Motivo.values()) {
+            cortes.put(motivo, new LongAdder());
+        }
+    }
+
+    // * Los resultados salen en el orden de los lotes (flatMapSequential) aunque las escrituras terminen desordenadas
+    public <R> Flux<R> procesar(Flux<T> fuente, Function<List<T>, Publisher<R>> escribir) {
+        AtomicBoolean terminada = new AtomicBoolean();
+        // * Lote incompleto que llego con la fuente ya terminada: es FIN solo si resulta ser el ultimo
+        AtomicBoolean finPendiente = new AtomicBoolean();
+        return fuente
+                .doOnComplete(() -> terminada.set(true))
+                .windowTimeout(tamano, espera, scheduler, true)
+                .concatMap(Flux::collectList, 1)
+                .filter(lote -> !lote.isEmpty())
+                .doOnNext(lote -> registrar(lote, terminada.get(), finPendiente))
+                // * doOnComplete y no doFinally: los contadores tienen que estar al dia cuando el fin llega abajo
+                .doOnComplete(() -> cerrar(finPendiente, Motivo.FIN))
+                .doOnError(error -> cerrar(finPendiente, Motivo.TIEMPO))
+                .doOnCancel(() -> cerrar(finPendiente, Motivo.TIEMPO))
+                .flatMapSequential(lote -> Flux.defer(() -> {
+                    maximoEnCurso.accumulateAndGet(enCurso.incrementAndGet(), Math::max);
+                    return escribir.apply(lote);
+                })
+                        // * Antes de propagar el fin (doFinally corre despues y flatMapSequential ya habria empezado otra)
+                        .doOnTerminate(enCurso::decrementAndGet)
+                        .doOnCancel(enCurso::decrementAndGet), enVuelo);
+    }
+
+    // * Con escrituras lentas windowTimeout puede tener varias ventanas cerradas cuando termina la fuente: esas se
+    // * cortaron por tiempo o por tamaño. El motivo de un lote incompleto se decide recien con el siguiente (TIEMPO)
+    // * o con el fin de los lotes (FIN); antes se marcaban como FIN todos los que salian despues de terminar la fuente
+    private void registrar(List<T> lote, boolean terminada, AtomicBoolean finPendiente) {
+        lotes.increment();
+        elementos.add(lote.size());
+        if (finPendiente.getAndSet(false)) {
+            cortes.get(Motivo.TIEMPO).increment();
+        }
+        if (lote.size() >= tamano) {
+            cortes.get(Motivo.TAMANO).increment();
+        } else if (terminada) {
+            finPendiente.set(true);
+        } else {
+            cortes.get(Motivo.TIEMPO).increment();
+        }
+    }
+
+    private void cerrar(AtomicBoolean finPendiente, Motivo motivo) {
+        if (finPendiente.getAndSet(false)) {
+            cortes.get(motivo).increment();
+        }
+    }
+
+    public long getLotes() {
+        return lotes.sum();
+    }
+
+    public long getElementos() {
+        return elementos.sum();
+    }
+
+    public long getCortes(Motivo motivo) {
+        return cortes.get(motivo).sum();
+    }
+
+    public int getMaximoEnCurso() {
+        return maximoEnCurso.get();
+    }
+
+    public Map<String, Long> contadores() {
+        Map<String, Long> contadores = new LinkedHashMap<>();
+        contadores.put("lotes", getLotes());
+        contadores.put("elementos", getElementos());
+        contadores.put("tamanoPromedio", getLotes() == 0 ? 0 : getElementos() / getLotes());
+        contadores.put("porTamano", getCortes(Motivo.TAMANO));
+        contadores.put("porTiempo", getCortes(Motivo.TIEMPO));
+        contadores.put("porFin", getCortes(Motivo.FIN));
+        contadores.put("maximoEnVuelo", (long) getMaximoEnCurso());
+        return contadores;
+    }
+}
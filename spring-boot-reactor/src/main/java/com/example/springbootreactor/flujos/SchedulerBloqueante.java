@@ -0,0 +1,69 @@
+package com.example.springbootreactor.flujos;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// * Scheduler para envolver llamadas bloqueantes (JDBC, archivos, SDKs viejos) que con Mono.fromCallable correrian en el
+// * hilo que se suscribe. boundedElastic tiene un tope de ~10 hilos por nucleo, asi que miles de llamadas a la vez quedan
+// * encoladas. Con hilos virtuales cada llamada tiene su propio hilo y al bloquearse no ocupa un hilo de plataforma.
+// * El proyecto compila con Java 17: Executors.newVirtualThreadPerTaskExecutor() se busca por reflexion y si la JVM
+// * no lo tiene (o es preview sin --enable-preview) se usa boundedElastic
+public final class SchedulerBloqueante {
+
+    public enum Tipo {
+        VIRTUAL,
+        BOUNDED_ELASTIC
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(SchedulerBloqueante.class);
+
+    private SchedulerBloqueante() {
+    }
+
+    // * Con VIRTUAL el Scheduler es nuevo y hay que hacerle dispose() al terminar (cierra el executor).
+    // * Con BOUNDED_ELASTIC es el compartido de Reactor y dispose() no hace nada
+    public static Scheduler crear(Tipo tipo) {
+        if (tipo == Tipo.VIRTUAL) {
+            ExecutorService virtuales = hilosVirtuales();
+            if (virtuales != null) {
+                return Schedulers.fromExecutorService(virtuales, "virtuales");
+            }
+            log.warn("La JVM (" + Runtime.version() + ") no tiene hilos virtuales, se usa boundedElastic");
+        }
+        return Schedulers.boundedElastic();
+    }
+
+    // * El tipo que realmente devolvio crear(): con VIRTUAL configurado puede haber caido a boundedElastic
+    public static Tipo tipo(Scheduler scheduler) {
+        return scheduler == Schedulers.boundedElastic() ? Tipo.BOUNDED_ELASTIC : Tipo.VIRTUAL;
+    }
+
+    public static boolean hilosVirtualesDisponibles() {
+        ExecutorService virtuales = hilosVirtuales();
+        if (virtuales == null) {
+            return false;
+        }
+        virtuales.shutdown();
+        return true;
+    }
+
+    public static <T> Mono<T> llamar(Callable<T> llamada, Scheduler scheduler) {
+        return Mono.fromCallable(llamada).subscribeOn(scheduler);
+    }
+
+    private static ExecutorService hilosVirtuales() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // * NoSuchMethodException antes de JDK 19, InvocationTargetException en 19/20 sin --enable-preview
+            return null;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.springbootreactor.flujos;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.function.Consumer;
+
+// * El Subscriber de ejemploContraPresion: pide `limite` elementos y vuelve a pedir cuando los consumio todos.
+// * Es lo que hace limitRate, pero a mano
+public class SuscriptorPorLotes<T> implements Subscriber<T> {
+
+    private final int limite;
+    private final Consumer<? super T> consumidor;
+    private Subscription s;
+    private int consumido = 0;
+
+    public SuscriptorPorLotes(int limite, Consumer<? super T> consumidor) {
+        this.limite = limite;
+        this.consumidor = consumidor;
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        this.s = subscription;
+        s.request(limite);
+    }
+
+    @Override
+    public void onNext(T elemento) {
+        consumidor.accept(elemento);
+        consumido++;
+        if (consumido == limite) {
+            consumido = 0;
+            s.request(limite);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+
+    }
+
+    @Override
+    public void onComplete() {
+
+    }
+}
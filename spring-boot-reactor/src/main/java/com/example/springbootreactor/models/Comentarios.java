@@ -14,6 +14,10 @@ public class Comentarios {
         this.comentarios.add(comentario);
     }
 
+    public List<String> getComentarios() {
+        return comentarios;
+    }
+
     @Override
     public String toString() {
         return "Comentarios{" + "comentarios=" + comentarios + '}';
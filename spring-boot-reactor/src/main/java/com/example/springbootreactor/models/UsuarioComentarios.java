@@ -9,6 +9,14 @@ public class UsuarioComentarios {
         this.comentarios = comentarios;
     }
 
+    public Usuario getUsuario() {
+        return usuario;
+    }
+
+    public Comentarios getComentarios() {
+        return comentarios;
+    }
+
     @Override
     public String toString() {
         return "UsuarioComentarios{" + "usuario=" + usuario + ", comentarios=" + comentarios + '}';
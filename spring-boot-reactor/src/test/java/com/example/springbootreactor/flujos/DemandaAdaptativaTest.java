@@ -0,0 +1,99 @@
+package com.example.springbootreactor.flujos;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DemandaAdaptativaTest {
+
+    @Test
+    void fuenteRapidaAgrandaElLoteHastaElMaximo() {
+        List<Long> pedidos = new ArrayList<>();
+        List<Integer> recibidos = new ArrayList<>();
+        DemandaAdaptativa<Integer> demanda = new DemandaAdaptativa<>(2, 256, Duration.ofSeconds(1), recibidos::add);
+
+        Flux.range(1, 10_000).doOnRequest(pedidos::add).subscribe(demanda);
+
+        assertThat(recibidos).hasSize(10_000);
+        assertThat(pedidos.get(0)).isEqualTo(2);
+        assertThat(demanda.getLote()).isEqualTo(256);
+        assertThat(pedidos).allMatch(n -> n >= 2 && n <= 256);
+        // * Con request(2) fijo serian 5000 pedidos
+        assertThat(pedidos.size()).isLessThan(100);
+    }
+
+    @Test
+    void consumidorLentoAchicaElLote() {
+        DemandaAdaptativa<Integer> demanda = new DemandaAdaptativa<>(2, 256, Duration.ofMillis(1), i -> {
+            if (i > 2_000) {
+                LockSupport.parkNanos(100_000);
+            }
+        });
+        Flux.range(1, 2_600).subscribe(demanda);
+
+        // * Lotes de 256 * 0.1ms superan el objetivo de 1ms: el lote baja y oscila alrededor de ~10
+        assertThat(demanda.getReducciones()).isGreaterThanOrEqualTo(3);
+        assertThat(demanda.getLote()).isLessThan(64);
+    }
+
+    @Test
+    void operadorSoloPideCuandoAbajoHayDemanda() {
+        List<Long> pedidos = new CopyOnWriteArrayList<>();
+        Flux<Integer> flujo = Flux.range(1, 1_000)
+                .doOnRequest(pedidos::add)
+                .transform(DemandaAdaptativa.operador(4, 64, Duration.ofSeconds(1)));
+
+        StepVerifier.create(flujo, 4)
+                .expectNextCount(4)
+                .then(() -> assertThat(pedidos).containsExactly(4L))
+                .thenRequest(Long.MAX_VALUE)
+                .expectNextCount(996)
+                .verifyComplete();
+
+        assertThat(pedidos).allMatch(n -> n <= 64);
+        assertThat(pedidos.stream().mapToLong(Long::longValue).sum()).isGreaterThanOrEqualTo(1_000);
+    }
+
+    @Test
+    void operadorPropagaErrores() {
+        Flux<Integer> flujo = Flux.concat(Flux.range(1, 3), Flux.<Integer>error(new IllegalStateException("fallo")))
+                .transform(DemandaAdaptativa.operador(2, 8, Duration.ofSeconds(1)));
+
+        StepVerifier.create(flujo)
+                .expectNext(1, 2, 3)
+                .verifyErrorMessage("fallo");
+    }
+
+    @Test
+    void operadorConservaElContextoDeAbajo() {
+        Flux<Integer> flujo = Flux.deferContextual(contexto -> Flux.just(contexto.getOrDefault("clave", -1)))
+                .transform(DemandaAdaptativa.operador(2, 8, Duration.ofSeconds(1)))
+                .contextWrite(Context.of("clave", 42));
+
+        StepVerifier.create(flujo)
+                .expectNext(42)
+                .verifyComplete();
+    }
+
+    @Test
+    void laEsperaDeLaFuenteNoAchicaElLote() {
+        // * La fuente tarda 10ms en contestar cada request pero el consumidor es inmediato: el lote crece igual.
+        // * Si la espera contara, cada lote pasaria el objetivo de 5ms y el lote no saldria de 2.
+        // * Se tolera una reduccion: con un solo nucleo una pausa del GC puede pasar el objetivo
+        DemandaAdaptativa<Integer> demanda = new DemandaAdaptativa<>(2, 64, Duration.ofMillis(5), i -> {
+        });
+        Flux.range(1, 1_000).doOnRequest(n -> LockSupport.parkNanos(10_000_000)).subscribe(demanda);
+
+        assertThat(demanda.getLote()).isGreaterThanOrEqualTo(32);
+        assertThat(demanda.getReducciones()).isLessThanOrEqualTo(1);
+    }
+}
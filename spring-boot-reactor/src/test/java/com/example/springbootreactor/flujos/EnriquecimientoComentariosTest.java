@@ -0,0 +1,120 @@
+package com.example.springbootreactor.flujos;
+
+import com.example.springbootreactor.models.Comentarios;
+import com.example.springbootreactor.models.Usuario;
+import com.example.springbootreactor.models.UsuarioComentarios;
+import org.junit.jupiter.api.Test;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EnriquecimientoComentariosTest {
+
+    @Test
+    void buscaLosComentariosPorLotes() {
+        List<Integer> tamanos = new CopyOnWriteArrayList<>();
+        EnriquecimientoComentarios enriquecimiento = new EnriquecimientoComentarios(usuarios -> {
+            tamanos.add(usuarios.size());
+            return Flujos.comentarios(usuarios);
+        }, 100, false);
+
+        List<UsuarioComentarios> resultados = enriquecimiento.enriquecer(Flujos.usuarios(1_050)).collectList().block();
+
+        assertThat(resultados).hasSize(1_050);
+        assertThat(tamanos).hasSize(11).allMatch(tamano -> tamano <= 100);
+        // * Cada usuario queda con sus propios comentarios
+        assertThat(resultados).allMatch(uc -> uc.getComentarios().getComentarios().get(0)
+                .equals("Hola " + uc.getUsuario().getNombre()));
+    }
+
+    @Test
+    void modoOrdenadoMantieneElOrdenDeLosUsuarios() {
+        // * Latencias aleatorias por lote: sin ordered() los lotes saldrian en el orden en que terminan
+        EnriquecimientoComentarios enriquecimiento = new EnriquecimientoComentarios(usuarios -> {
+            LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(100_000, 2_000_000));
+            return Flujos.comentarios(usuarios);
+        }, 10, 4, 4, true, Schedulers.parallel(), Schedulers.boundedElastic());
+
+        List<String> nombres = enriquecimiento.enriquecer(Flujos.usuarios(500))
+                .map(uc -> uc.getUsuario().getNombre())
+                .collectList()
+                .block();
+
+        assertThat(nombres).hasSize(500);
+        for (int i = 0; i < nombres.size(); i++) {
+            assertThat(nombres.get(i)).isEqualTo("Usuario" + (i + 1));
+        }
+    }
+
+    @Test
+    void busquedasConcurrentesAcotadasPorParalelismoYConcurrencia() {
+        AtomicInteger enVuelo = new AtomicInteger();
+        AtomicInteger maximo = new AtomicInteger();
+        Function<List<Usuario>, List<Comentarios>> lenta = usuarios -> {
+            maximo.accumulateAndGet(enVuelo.incrementAndGet(), Math::max);
+            LockSupport.parkNanos(2_000_000);
+            enVuelo.decrementAndGet();
+            return Flujos.comentarios(usuarios);
+        };
+        EnriquecimientoComentarios enriquecimiento = new EnriquecimientoComentarios(lenta, 10, 2, 3, false,
+                Schedulers.parallel(), Schedulers.boundedElastic());
+
+        long cantidad = enriquecimiento.enriquecer(Flujos.usuarios(1_000)).count().block();
+
+        assertThat(cantidad).isEqualTo(1_000);
+        assertThat(maximo.get()).isGreaterThan(1).isLessThanOrEqualTo(2 * 3);
+    }
+
+    @Test
+    void registraEstadisticasPorEtapa() {
+        EnriquecimientoComentarios enriquecimiento = new EnriquecimientoComentarios(usuarios -> {
+            LockSupport.parkNanos(500_000);
+            return Flujos.comentarios(usuarios);
+        }, 50, false);
+
+        enriquecimiento.enriquecer(Flujos.usuarios(1_000)).blockLast();
+
+        EstadisticasEtapa busqueda = enriquecimiento.getBusqueda();
+        assertThat(busqueda.getMuestras()).isEqualTo(20);
+        assertThat(busqueda.getElementos()).isEqualTo(1_000);
+        assertThat(busqueda.percentil(0.99)).isGreaterThanOrEqualTo(500_000);
+        assertThat(enriquecimiento.getTotal().percentil(0.99)).isGreaterThanOrEqualTo(busqueda.percentil(0.50));
+        assertThat(enriquecimiento.getTotal().getElementosPorSegundo()).isPositive();
+        assertThat(enriquecimiento.estadisticas()).containsOnlyKeys("busqueda", "armado", "total");
+    }
+
+    @Test
+    void elTotalNoCuentaLaEsperaEnLaColaDelRiel() {
+        // * Un riel, una busqueda de 5ms a la vez y 40 lotes que llegan juntos: el ultimo espera ~200ms en la cola
+        EnriquecimientoComentarios enriquecimiento = new EnriquecimientoComentarios(usuarios -> {
+            LockSupport.parkNanos(5_000_000);
+            return Flujos.comentarios(usuarios);
+        }, 10, 1, 1, false, Schedulers.parallel(), Schedulers.boundedElastic());
+
+        enriquecimiento.enriquecer(Flujos.usuarios(400)).blockLast();
+
+        assertThat(enriquecimiento.getTotal().getMuestras()).isEqualTo(40);
+        assertThat(enriquecimiento.getTotal().percentil(0.50)).isLessThan(50_000_000);
+    }
+
+    @Test
+    void percentilesDelHistograma() {
+        EstadisticasEtapa etapa = new EstadisticasEtapa("prueba");
+        // * 99 muestras de ~1ms y una de ~100ms (el bucket agrega hasta un 6.25%)
+        for (int i = 0; i < 99; i++) {
+            etapa.registrar(System.nanoTime() - 1_000_000, 1);
+        }
+        etapa.registrar(System.nanoTime() - 100_000_000, 1);
+
+        assertThat(etapa.percentil(0.50)).isBetween(1_000_000L, 1_200_000L);
+        assertThat(etapa.percentil(0.99)).isBetween(1_000_000L, 1_200_000L);
+        assertThat(etapa.percentil(1.0)).isGreaterThanOrEqualTo(100_000_000L);
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.springbootreactor.flujos;
+
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.Exceptions;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FuenteEventosTest {
+
+    private final VirtualTimeScheduler scheduler = VirtualTimeScheduler.create();
+
+    private FuenteEventos<Long> fuente(long cantidad, FuenteEventos.Desborde desborde, int capacidad) {
+        return new FuenteEventos<>(contador -> contador, cantidad, Duration.ofSeconds(1), Duration.ofSeconds(1),
+                scheduler, desborde, capacidad);
+    }
+
+    @Test
+    void emiteEnElSchedulerYCompleta() {
+        FuenteEventos<Long> fuente = fuente(3, FuenteEventos.Desborde.BUFFER, 10);
+
+        StepVerifier.withVirtualTime(fuente::flujo, () -> scheduler, Long.MAX_VALUE)
+                .expectSubscription()
+                .expectNoEvent(Duration.ofSeconds(1))
+                .expectNext(1L)
+                .thenAwait(Duration.ofSeconds(2))
+                .expectNext(2L, 3L)
+                .verifyComplete();
+
+        assertThat(fuente.contadores()).containsEntry("emitidos", 3L).containsEntry("entregados", 3L)
+                .containsEntry("descartados", 0L).containsEntry("encolados", 0L);
+    }
+
+    @Test
+    void cancelarDetieneLaTareaPeriodica() {
+        FuenteEventos<Long> fuente = fuente(0, FuenteEventos.Desborde.BUFFER, 10);
+
+        StepVerifier.withVirtualTime(fuente::flujo, () -> scheduler, Long.MAX_VALUE)
+                .thenAwait(Duration.ofSeconds(2))
+                .expectNext(1L, 2L)
+                .thenCancel()
+                .verify();
+        scheduler.advanceTimeBy(Duration.ofSeconds(10));
+
+        assertThat(fuente.getEmitidos()).isEqualTo(2);
+    }
+
+    @Test
+    void bufferAcotadoDescartaLosMasViejos() {
+        FuenteEventos<Long> fuente = fuente(10, FuenteEventos.Desborde.BUFFER, 3);
+
+        StepVerifier.withVirtualTime(fuente::flujo, () -> scheduler, 0)
+                .thenAwait(Duration.ofSeconds(10))
+                .then(() -> assertThat(fuente.getEncolados()).isEqualTo(3))
+                .thenRequest(10)
+                .expectNext(8L, 9L, 10L)
+                .verifyComplete();
+
+        assertThat(fuente.getDescartados()).isEqualTo(7);
+        assertThat(fuente.getEncolados()).isZero();
+    }
+
+    @Test
+    void dropDescartaLoQueNoSePidio() {
+        FuenteEventos<Long> fuente = fuente(5, FuenteEventos.Desborde.DROP, 0);
+        List<Long> recibidos = new ArrayList<>();
+        BaseSubscriber<Long> suscriptor = new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(1);
+            }
+
+            @Override
+            protected void hookOnNext(Long value) {
+                recibidos.add(value);
+            }
+        };
+        fuente.flujo().subscribe(suscriptor);
+
+        scheduler.advanceTimeBy(Duration.ofSeconds(3));
+        suscriptor.request(1);
+        scheduler.advanceTimeBy(Duration.ofSeconds(2));
+
+        assertThat(recibidos).containsExactly(1L, 4L);
+        assertThat(fuente.getDescartados()).isEqualTo(3);
+        assertThat(suscriptor.isDisposed()).isTrue();
+    }
+
+    @Test
+    void latestGuardaSoloElUltimo() {
+        FuenteEventos<Long> fuente = fuente(5, FuenteEventos.Desborde.LATEST, 0);
+
+        StepVerifier.withVirtualTime(fuente::flujo, () -> scheduler, 0)
+                .thenAwait(Duration.ofSeconds(5))
+                .thenRequest(5)
+                .expectNext(5L)
+                .verifyComplete();
+
+        assertThat(fuente.getDescartados()).isEqualTo(4);
+    }
+
+    @Test
+    void errorAlDesbordar() {
+        FuenteEventos<Long> fuente = fuente(5, FuenteEventos.Desborde.ERROR, 0);
+
+        StepVerifier.withVirtualTime(fuente::flujo, () -> scheduler, 1)
+                .thenAwait(Duration.ofSeconds(2))
+                .expectNext(1L)
+                .verifyErrorMatches(Exceptions::isOverflow);
+
+        scheduler.advanceTimeBy(Duration.ofSeconds(10));
+        assertThat(fuente.getEmitidos()).isEqualTo(2);
+    }
+}
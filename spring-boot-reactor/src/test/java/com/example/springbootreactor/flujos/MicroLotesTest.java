@@ -0,0 +1,77 @@
+package com.example.springbootreactor.flujos;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MicroLotesTest {
+
+    @Test
+    void cortaPorTamanoYAlTerminar() {
+        MicroLotes<Integer> microLotes = new MicroLotes<>(4, Duration.ofSeconds(10), 2, Schedulers.parallel());
+
+        StepVerifier.create(microLotes.procesar(Flux.range(1, 10), Flux::just))
+                .expectNext(List.of(1, 2, 3, 4), List.of(5, 6, 7, 8), List.of(9, 10))
+                .verifyComplete();
+
+        assertThat(microLotes.getLotes()).isEqualTo(3);
+        assertThat(microLotes.getElementos()).isEqualTo(10);
+        assertThat(microLotes.getCortes(MicroLotes.Motivo.TAMANO)).isEqualTo(2);
+        assertThat(microLotes.getCortes(MicroLotes.Motivo.FIN)).isEqualTo(1);
+        assertThat(microLotes.getCortes(MicroLotes.Motivo.TIEMPO)).isZero();
+    }
+
+    @Test
+    void cortaPorTiempoSiElLoteNoSeLlena() {
+        MicroLotes<Integer> microLotes = new MicroLotes<>(100, Duration.ofMillis(50), 2, Schedulers.parallel());
+        Flux<Integer> fuente = Flux.concat(Flux.just(1, 2), Mono.delay(Duration.ofMillis(300)).thenReturn(3));
+
+        StepVerifier.create(microLotes.procesar(fuente, Flux::just))
+                .expectNext(List.of(1, 2), List.of(3))
+                .verifyComplete();
+
+        assertThat(microLotes.getCortes(MicroLotes.Motivo.TIEMPO)).isEqualTo(1);
+        assertThat(microLotes.getCortes(MicroLotes.Motivo.FIN)).isEqualTo(1);
+    }
+
+    @Test
+    void escriturasLentasNoDesbordanNiSuperanElMaximoEnVuelo() {
+        // * Con bufferTimeout(10, 2ms) esto falla con "Could not emit buffer due to lack of requests": vence la
+        // * espera mientras la unica escritura en vuelo todavia no pidio otro lote
+        MicroLotes<Long> microLotes = new MicroLotes<>(10, Duration.ofMillis(2), 1, Schedulers.parallel());
+        Flux<Long> fuente = Flux.interval(Duration.ofMillis(1)).take(300).onBackpressureBuffer();
+
+        List<Integer> tamanos = microLotes.procesar(fuente, lote -> Mono.delay(Duration.ofMillis(20)).thenReturn(lote.size()))
+                .collectList()
+                .block(Duration.ofSeconds(30));
+
+        assertThat(tamanos.stream().mapToInt(Integer::intValue).sum()).isEqualTo(300);
+        assertThat(tamanos).allMatch(tamano -> tamano <= 10);
+        assertThat(microLotes.getMaximoEnCurso()).isEqualTo(1);
+        assertThat(microLotes.contadores()).containsEntry("elementos", 300L);
+        // * La fuente termina mucho antes que las escrituras: solo el ultimo lote puede ser FIN
+        assertThat(microLotes.getCortes(MicroLotes.Motivo.FIN)).isLessThanOrEqualTo(1);
+        assertThat(microLotes.getCortes(MicroLotes.Motivo.TAMANO) + microLotes.getCortes(MicroLotes.Motivo.TIEMPO)
+                + microLotes.getCortes(MicroLotes.Motivo.FIN)).isEqualTo(microLotes.getLotes());
+    }
+
+    @Test
+    void losResultadosSalenEnElOrdenDeLosLotes() {
+        MicroLotes<Integer> microLotes = new MicroLotes<>(5, Duration.ofSeconds(10), 4, Schedulers.parallel());
+
+        // * El primer lote es el que mas tarda en escribirse
+        List<Integer> primeros = microLotes.procesar(Flux.range(1, 20),
+                        lote -> Mono.delay(Duration.ofMillis(lote.get(0) == 1 ? 100 : 1)).thenReturn(lote.get(0)))
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+        assertThat(primeros).containsExactly(1, 6, 11, 16);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.springbootreactor.flujos;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SchedulerBloqueanteTest {
+
+    @Test
+    void llamarCorreFueraDelHiloQueSeSuscribe() {
+        Thread actual = Thread.currentThread();
+        Scheduler scheduler = SchedulerBloqueante.crear(SchedulerBloqueante.Tipo.BOUNDED_ELASTIC);
+
+        Thread hilo = SchedulerBloqueante.llamar(Thread::currentThread, scheduler).block();
+
+        assertThat(hilo).isNotSameAs(actual);
+        assertThat(hilo.getName()).startsWith("boundedElastic");
+        assertThat(scheduler).isSameAs(Schedulers.boundedElastic());
+        assertThat(SchedulerBloqueante.tipo(scheduler)).isEqualTo(SchedulerBloqueante.Tipo.BOUNDED_ELASTIC);
+    }
+
+    @Test
+    void virtualUsaHilosVirtualesOVuelveABoundedElastic() throws Exception {
+        Scheduler scheduler = SchedulerBloqueante.crear(SchedulerBloqueante.Tipo.VIRTUAL);
+        try {
+            Thread hilo = SchedulerBloqueante.llamar(Thread::currentThread, scheduler).block();
+
+            if (SchedulerBloqueante.hilosVirtualesDisponibles()) {
+                assertThat((Boolean) Thread.class.getMethod("isVirtual").invoke(hilo)).isTrue();
+                assertThat(SchedulerBloqueante.tipo(scheduler)).isEqualTo(SchedulerBloqueante.Tipo.VIRTUAL);
+            } else {
+                assertThat(hilo.getName()).startsWith("boundedElastic");
+                assertThat(SchedulerBloqueante.tipo(scheduler)).isEqualTo(SchedulerBloqueante.Tipo.BOUNDED_ELASTIC);
+            }
+        } finally {
+            scheduler.dispose();
+        }
+    }
+
+    @Test
+    void muchasLlamadasBloqueantesConcurrentes() {
+        Scheduler scheduler = SchedulerBloqueante.crear(SchedulerBloqueante.Tipo.VIRTUAL);
+        try {
+            Long cantidad = Flux.range(1, 500)
+                    .flatMap(i -> SchedulerBloqueante.llamar(() -> {
+                        Thread.sleep(20);
+                        return i;
+                    }, scheduler), 500)
+                    .count()
+                    .block();
+
+            assertThat(cantidad).isEqualTo(500);
+        } finally {
+            scheduler.dispose();
+        }
+    }
+}
@@ -3,14 +3,25 @@ package com.example.springbootwebfluxapirest;
 import com.example.springbootwebfluxapirest.models.documents.Categoria;
 import com.example.springbootwebfluxapirest.models.documents.Producto;
 import com.example.springbootwebfluxapirest.services.ProductoService;
+import com.example.springbootwebfluxapirest.services.ResolutorCategorias;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 @SpringBootApplication
 public class SpringBootWebfluxApirestApplication implements CommandLineRunner {
@@ -21,6 +32,22 @@ public class SpringBootWebfluxApirestApplication implements CommandLineRunner {
     @Autowired
     private ReactiveMongoTemplate mongoTemplate;
 
+    // * En modo referencia los productos de la carga inicial se insertan con solo el id de la categoria
+    @Autowired
+    private ResolutorCategorias resolutorCategorias;
+
+    @Value("${config.carga.habilitada:true}")
+    private boolean cargaHabilitada;
+
+    @Value("${config.carga.productos:0}")
+    private int productosGenerados;
+
+    @Value("${config.carga.lote:1000}")
+    private int lote;
+
+    @Value("${config.carga.concurrencia:4}")
+    private int concurrencia;
+
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(SpringBootWebfluxApirestApplication.class);
 
     public static void main(String[] args) {
@@ -29,34 +56,77 @@ public class SpringBootWebfluxApirestApplication implements CommandLineRunner {
 
     @Override
     public void run(String... args) throws Exception {
-        mongoTemplate.dropCollection("productos").subscribe();
-        mongoTemplate.dropCollection("categorias").subscribe();
+        if (!cargaHabilitada) {
+            versionarProductos();
+            return;
+        }
+        long inicio = System.nanoTime();
 
         Categoria electrónica = new Categoria("Electrónica");
         Categoria deportes = new Categoria("Deportes");
         Categoria jardín = new Categoria("Jardín");
         Categoria muebles = new Categoria("Muebles");
+        List<Categoria> categorias = List.of(electrónica, deportes, jardín, muebles);
 
-        Flux.just(electrónica, deportes, jardín, muebles)
-                .flatMap(productoService::saveCategoria)
+        Flux<Producto> fijos = Flux.just(
+                new Producto("TV Panasonic Pantalla LCD", 456.89, electrónica),
+                new Producto("Sony Camara HD Digital", 177.89, electrónica),
+                new Producto("Apple iPod", 46.89, electrónica),
+                new Producto("Sony Notebook", 846.89, electrónica),
+                new Producto("Hewlett Packard Multifuncional", 200.89, jardín),
+                new Producto("Bianchi Bicicleta", 70.89, deportes),
+                new Producto("HP Notebook Omen 17", 2500.89, electrónica),
+                new Producto("Mica Cómoda 5 Cajones", 150.89, muebles),
+                new Producto("TV Sony Bravia OLED 4K Ultra HD", 2255.89, electrónica),
+                new Producto("Apple Watch Series 4 GPS", 1846.89, electrónica)
+        );
+        // * Productos generados para entornos de rendimiento (config.carga.productos)
+        Flux<Producto> generados = Flux.range(0, productosGenerados)
+                .map(i -> new Producto("Producto " + i, Math.round(ThreadLocalRandom.current().nextDouble(1, 3000) * 100) / 100.0,
+                        categorias.get(i % categorias.size())));
+
+        // * Primero se borran las colecciones (esperando a que terminen) y se vuelven a crear los indices, despues las
+        // * categorias y al final los productos en lotes con insertAll (un insertMany por lote) y una cantidad acotada de lotes en paralelo
+        Long total = Mono.when(mongoTemplate.dropCollection("productos"), mongoTemplate.dropCollection("categorias"))
+                .then(crearIndices())
+                .thenMany(Flux.fromIterable(categorias))
+                .concatMap(productoService::saveCategoria)
                 .doOnNext(categoria -> {
                     log.info("Categoria creada: " + categoria.getNombre() + " Id: " + categoria.getId());
-                }).thenMany(
-                        Flux.just(
-                                new Producto("TV Panasonic Pantalla LCD", 456.89, electrónica),
-                                new Producto("Sony Camara HD Digital", 177.89, electrónica),
-                                new Producto("Apple iPod", 46.89, electrónica),
-                                new Producto("Sony Notebook", 846.89, electrónica),
-                                new Producto("Hewlett Packard Multifuncional", 200.89, jardín),
-                                new Producto("Bianchi Bicicleta", 70.89, deportes),
-                                new Producto("HP Notebook Omen 17", 2500.89, electrónica),
-                                new Producto("Mica Cómoda 5 Cajones", 150.89, muebles),
-                                new Producto("TV Sony Bravia OLED 4K Ultra HD", 2255.89, electrónica),
-                                new Producto("Apple Watch Series 4 GPS", 1846.89, electrónica)
-                        )
-                ).flatMap(producto -> {
+                })
+                .thenMany(fijos.concatWith(generados))
+                .map(producto -> {
                     producto.setCreateAt(new Date());
-                    return productoService.save(producto);
-                }).subscribe(producto -> log.info("Insert: " + producto.getId() + " " + producto.getNombre()));
+                    return resolutorCategorias.reducir(producto);
+                })
+                .buffer(lote)
+                .flatMap(productos -> mongoTemplate.insertAll(productos).count(), concurrencia)
+                .reduce(0L, Long::sum)
+                .block(); // * El arranque no termina hasta que la carga finaliza
+
+        double segundos = (System.nanoTime() - inicio) / 1_000_000_000.0;
+        log.info(String.format("Carga inicial: %d productos en %.2f s (%.0f docs/seg)", total, segundos, total / segundos));
+    }
+
+    // * Los productos guardados antes de @Version no la tienen y save() los tomaria por nuevos (insert con un _id
+    // * repetido): se les pone 0 en segundo plano. Con la carga inicial no hace falta, insertAll ya la inicializa
+    private void versionarProductos() {
+        Mono.defer(() -> mongoTemplate.updateMulti(new Query(Criteria.where("version").exists(false)),
+                        new Update().set("version", 0L), Producto.class))
+                .subscribe(resultado -> {
+                    if (resultado.getModifiedCount() > 0) {
+                        log.info("Productos sin version: " + resultado.getModifiedCount() + " quedaron en la version 0");
+                    }
+                }, e -> log.warn("No se pudo versionar los productos existentes: " + e.getMessage()));
+    }
+
+    // * Los indices declarados en Producto (@Indexed, @CompoundIndex) los crea Spring Data al arrancar
+    // * (spring.data.mongodb.auto-index-creation) pero se pierden al borrar la coleccion
+    private Mono<Void> crearIndices() {
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+        ReactiveIndexOperations indexOps = mongoTemplate.indexOps(Producto.class);
+        return Flux.fromIterable(resolver.resolveIndexFor(Producto.class))
+                .concatMap(indexOps::ensureIndex)
+                .then();
     }
 }
@@ -1,25 +1,48 @@
 package com.example.springbootwebfluxapirest.controllers;
 
 import com.example.springbootwebfluxapirest.models.documents.Producto;
+import com.example.springbootwebfluxapirest.models.dto.EstadisticaCategoria;
+import com.example.springbootwebfluxapirest.models.dto.FiltroProducto;
+import com.example.springbootwebfluxapirest.models.dto.ResultadoBulk;
+import com.example.springbootwebfluxapirest.models.dto.Sugerencia;
+import com.example.springbootwebfluxapirest.services.AlmacenFotos;
+import com.example.springbootwebfluxapirest.services.FeedProductos;
+import com.example.springbootwebfluxapirest.services.FeedProductos.EventoProducto;
+import com.example.springbootwebfluxapirest.services.IndiceProductos;
+import com.example.springbootwebfluxapirest.services.MetricasFlujos;
+import com.example.springbootwebfluxapirest.services.MicroLotes;
+import com.example.springbootwebfluxapirest.services.MiniaturaService;
 import com.example.springbootwebfluxapirest.services.ProductoService;
+import com.example.springbootwebfluxapirest.services.ProductoServiceCache;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.bind.support.WebExchangeBindException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.function.Tuple2;
 
-import java.io.File;
 import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.function.Function;
+import java.util.logging.Logger;
 
 @RestController
 @RequestMapping("/api/productos")
@@ -28,68 +51,230 @@ public class ProductoController {
     @Autowired
     private ProductoService productoService;
 
-    @Value("${config.uploads.path}")
-    private String path;
+    @Autowired
+    private ProductoServiceCache productoServiceCache;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private MiniaturaService miniaturaService;
+
+    @Autowired
+    private AlmacenFotos almacenFotos;
+
+    @Autowired
+    private MetricasFlujos metricas;
+
+    @Autowired
+    private FeedProductos feedProductos;
+
+    @Autowired
+    private IndiceProductos indiceProductos;
+
+    @Value("${config.paginacion.limite:50}")
+    private int limiteDefecto;
+
+    @Value("${config.paginacion.limite-maximo:1000}")
+    private int limiteMaximo;
+
+    @Value("${config.busqueda.limite:20}")
+    private int limiteBusqueda;
+
+    @Value("${config.busqueda.sugerencias:10}")
+    private int limiteSugerencias;
+
+    @Value("${config.bulk.lote:500}")
+    private int loteBulk;
+
+    @Value("${config.bulk.lote-maximo:5000}")
+    private int loteBulkMaximo;
+
+    @Value("${config.bulk.concurrencia:2}")
+    private int concurrenciaBulk;
+
+    @Value("${config.bulk.espera:200ms}")
+    private Duration esperaBulk;
 
+    // * Con true un PUT / PATCH sin If-Match se rechaza con 428 en lugar de pisar lo que haya
+    @Value("${config.productos.if-match-obligatorio:false}")
+    private boolean ifMatchObligatorio;
+
+    @Value("${config.feed.latido:15s}")
+    private Duration latidoFeed;
+
+    private static final Logger log = Logger.getLogger(ProductoController.class.getName());
+
+    // * La foto se guarda por hash (AlmacenFotos) y el producto queda con el nombre resultante
     @PostMapping("/v2")
     public Mono<ResponseEntity<Producto>> crearConFoto(Producto producto, @RequestPart FilePart file) {
         if (producto.getCreateAt() == null) {
             producto.setCreateAt(new Date());
         }
-        producto.setFoto(UUID.randomUUID().toString() + "-" + file.filename()
-                .replace(" ", "")
-                .replace(":", "")
-                .replace("\\", ""));
-        return file.transferTo(new File(path + producto.getFoto()))
-                .then(productoService.save(producto))
+        producto.setVersion(null); // * La version la asigna Mongo al insertar
+        return almacenFotos.guardar(file)
+                .flatMap(foto -> {
+                    producto.setFoto(foto);
+                    return productoService.save(producto);
+                })
+                .doOnNext(p -> miniaturaService.encolar(p.getId(), p.getFoto()))
                 .map(p -> ResponseEntity
                         .created(URI.create("/api/productos/".concat(p.getId())))
                         .contentType(MediaType.APPLICATION_JSON)
                         .body(p)
-                );
+                )
+                .onErrorResume(DataBufferLimitException.class, ex -> Mono.just(ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build()));
     }
 
     @PostMapping("/upload/{id}")
     public Mono<ResponseEntity<Producto>> upload(@PathVariable String id, @RequestPart FilePart file) {
-        return productoService.findById(id).flatMap(p -> {
-                    p.setFoto(UUID.randomUUID().toString() + "-" + file.filename()
-                            .replace(" ", "")
-                            .replace(":", "")
-                            .replace("\\", ""));
-                    return file.transferTo(new File(path + p.getFoto()))
-                            .then(productoService.save(p));
-                }).map(p -> ResponseEntity.created(URI.create("/api/productos/".concat(p.getId())))
+        // * findById solo para no guardar fotos de productos que no existen; la escritura es un $set de la foto
+        return productoService.findById(id).flatMap(p -> almacenFotos.guardar(file)
+                        .flatMap(foto -> productoService.cambiarFoto(id, foto))
+                        .doOnNext(guardado -> miniaturaService.encolar(guardado.getId(), guardado.getFoto()))
+                ).map(p -> ResponseEntity.created(URI.create("/api/productos/".concat(p.getId())))
                         .contentType(MediaType.APPLICATION_JSON)
                         .body(p))
-                .defaultIfEmpty(ResponseEntity.notFound().build());
+                .defaultIfEmpty(ResponseEntity.notFound().build())
+                .onErrorResume(DataBufferLimitException.class, ex -> Mono.just(ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build()));
     }
 
-    @GetMapping
-    public Mono<ResponseEntity<Flux<Producto>>> listar() {
+    // * ?categoriaId=...&precioMin=...&precioMax=...&nombre=...&desde=...&hasta=...&orden=...&direccion=...&limite=...
+    // * -> Los filtros se resuelven en Mongo
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Flux<Producto>>> listar(FiltroProducto filtro) {
         return Mono.just(
                 ResponseEntity.ok()
                         .contentType(MediaType.APPLICATION_JSON)
-                        .body(productoService.findAll())
+                        .body(metricas.controlador("listar", productoService.buscar(filtro)))
         );
     }
 
+    // * STREAMING -> Con Accept NDJSON o SSE cada producto se escribe a medida que llega de Mongo, sin armar un array
+    @GetMapping(produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<Producto> listarStream(FiltroProducto filtro) {
+        return metricas.controlador("listarStream", productoService.buscar(filtro));
+    }
+
+    // * PAGINACION POR CURSOR -> ?limite=50&cursor=<id del ultimo producto de la pagina anterior>
+    @GetMapping("/pagina")
+    public Mono<ResponseEntity<Map<String, Object>>> listarPagina(@RequestParam(required = false) String cursor,
+                                                                  @RequestParam(required = false) Integer limite) {
+        if (cursor != null && !ObjectId.isValid(cursor)) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        int tamano = limite != null && limite > 0 ? Math.min(limite, limiteMaximo) : limiteDefecto;
+        return metricas.controlador("listarPagina", productoService.findPagina(cursor, tamano))
+                .collectList()
+                .map(productos -> {
+                    Map<String, Object> respuesta = new HashMap<>();
+                    respuesta.put("productos", productos);
+                    respuesta.put("siguiente", productos.size() < tamano ? null : productos.get(productos.size() - 1).getId());
+                    return ResponseEntity.ok()
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .body(respuesta);
+                });
+    }
+
+    // * BUSQUEDA -> ?q=sony notebook&limite=20: indice de texto de Mongo sobre el nombre y la categoria, por relevancia
+    @GetMapping("/buscar")
+    public Mono<ResponseEntity<Flux<Producto>>> buscar(@RequestParam String q, @RequestParam(required = false) Integer limite) {
+        if (q.isBlank()) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        int tamano = limite != null && limite > 0 ? Math.min(limite, limiteMaximo) : limiteBusqueda;
+        return Mono.just(
+                ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(metricas.controlador("buscar", productoService.buscarTexto(q, tamano)))
+        );
+    }
+
+    // * AUTOCOMPLETAR -> ?q=son&limite=10: prefijos de las palabras del nombre, desde el indice en memoria (sin Mongo)
+    @GetMapping("/sugerencias")
+    public Mono<ResponseEntity<List<Sugerencia>>> sugerencias(@RequestParam String q, @RequestParam(required = false) Integer limite) {
+        int tamano = limite != null && limite > 0 ? Math.min(limite, limiteMaximo) : limiteSugerencias;
+        return Mono.fromSupplier(() -> ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(indiceProductos.sugerir(q, tamano)));
+    }
+
+    // * ESTADISTICAS -> cantidad, precio minimo / promedio / maximo y ultimo createAt, calculados en Mongo.
+    // * Aceptan los mismos filtros que el listado (?categoriaId=...&precioMin=...&desde=...)
+    @GetMapping("/estadisticas")
+    public Mono<ResponseEntity<EstadisticaCategoria>> estadisticas(FiltroProducto filtro) {
+        return metricas.controlador("estadisticas", productoService.estadisticasGenerales(filtro)
+                .map(e -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(e))
+                .defaultIfEmpty(ResponseEntity.noContent().build()));
+    }
+
+    @GetMapping("/estadisticas/categorias")
+    public Mono<ResponseEntity<Flux<EstadisticaCategoria>>> estadisticasPorCategoria(FiltroProducto filtro) {
+        return Mono.just(
+                ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(metricas.controlador("estadisticasPorCategoria", productoService.estadisticasPorCategoria(filtro)))
+        );
+    }
+
+    @GetMapping("/cache")
+    public Mono<ResponseEntity<Map<String, Object>>> cache() {
+        return Mono.fromSupplier(() -> ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(productoServiceCache.estadisticas()));
+    }
+
+    // * CAMBIOS EN VIVO (SSE) -> cada evento lleva como id su resume token: el EventSource lo reenvia solo en
+    // * Last-Event-ID al reconectarse y recibe lo que se perdio. El latido mantiene abierta la conexion en los proxies
+    @GetMapping(value = "/cambios", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<EventoProducto>> cambios(@RequestHeader(value = "Last-Event-ID", required = false) String ultimoEvento,
+                                                         @RequestParam(required = false) String desde) {
+        Flux<ServerSentEvent<EventoProducto>> eventos = feedProductos.suscribir(ultimoEvento != null ? ultimoEvento : desde)
+                .map(evento -> ServerSentEvent.builder(evento)
+                        .id(evento.token())
+                        .event(evento.operacion())
+                        .build());
+        Flux<ServerSentEvent<EventoProducto>> latidos = Flux.interval(latidoFeed)
+                .map(i -> ServerSentEvent.<EventoProducto>builder().comment("latido").build());
+        // * Los latidos terminan junto con los eventos
+        return eventos.publish(compartidos -> Flux.merge(compartidos, latidos.takeUntilOther(compartidos.then())));
+    }
+
+    // * CAMBIOS EN VIVO (NDJSON) -> el token va en cada linea, para reconectarse con ?desde=<token>
+    @GetMapping(value = "/cambios", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<EventoProducto> cambiosNdjson(@RequestParam(required = false) String desde) {
+        return feedProductos.suscribir(desde);
+    }
+
+    @GetMapping("/cambios/estadisticas")
+    public Mono<ResponseEntity<Map<String, Object>>> estadisticasCambios() {
+        return Mono.fromSupplier(() -> ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(feedProductos.estadisticas()));
+    }
+
+    // * El ETag es la version del producto: con If-None-Match el ResponseEntityResultHandler contesta 304
     @GetMapping("/{id}")
     public Mono<ResponseEntity<Producto>> ver(@PathVariable String id) {
-        return productoService.findById(id)
+        return metricas.controlador("ver", productoService.findById(id)
                 .map(p -> ResponseEntity.ok()
                         .contentType(MediaType.APPLICATION_JSON)
+                        .headers(cabeceras -> etag(cabeceras, p))
                         .body(p)
                 )
-                .defaultIfEmpty(ResponseEntity.notFound().build());
+                .defaultIfEmpty(ResponseEntity.notFound().build()));
     }
 
     @PostMapping
     public Mono<ResponseEntity<Map<String, Object>>> crear(@Valid @RequestBody Mono<Producto> productoMono) {
         Map<String, Object> respuesta = new HashMap<>();
-        return productoMono.flatMap(producto -> {
+        return metricas.controlador("crear", productoMono.flatMap(producto -> {
             if (producto.getCreateAt() == null) {
                 producto.setCreateAt(new Date());
             }
+            producto.setVersion(null);
             return productoService.save(producto)
                     .map(p -> {
                         respuesta.put("producto", p);
@@ -112,33 +297,117 @@ public class ProductoController {
                         respuesta.put("status", HttpStatus.BAD_REQUEST.value());
                         return Mono.just(ResponseEntity.badRequest().body(respuesta));
                     });
-        });
+        }));
+    }
+
+    // * Carga masiva: recibe NDJSON o un array JSON como Flux, valida cada producto y los guarda en lotes con un solo
+    // * bulkWrite por lote. Devuelve un resultado por producto (NDJSON) a medida que se escriben los lotes, con contrapresion.
+    // * Si el cliente envia de a poco, un lote incompleto se escribe igual al pasar config.bulk.espera
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ResultadoBulk> crearBulk(@RequestBody Flux<Producto> productos, @RequestParam(required = false) Integer lote) {
+        int tamanoLote = lote != null && lote > 0 ? Math.min(lote, loteBulkMaximo) : loteBulk;
+        MicroLotes<Tuple2<Long, Producto>> microLotes = new MicroLotes<>(tamanoLote, esperaBulk, concurrenciaBulk, Schedulers.parallel());
+        return metricas.controlador("crearBulk", microLotes.procesar(productos.index(), this::guardarLote)
+                .doOnComplete(() -> log.info("Carga masiva: " + microLotes.contadores())));
+    }
+
+    private Flux<ResultadoBulk> guardarLote(List<Tuple2<Long, Producto>> lote) {
+        List<Long> indices = new ArrayList<>();
+        List<Producto> validos = new ArrayList<>();
+        List<ResultadoBulk> invalidos = new ArrayList<>();
+        for (Tuple2<Long, Producto> item : lote) {
+            Producto producto = item.getT2();
+            List<String> errores = validator.validate(producto).stream()
+                    .map(violacion -> "El campo " + violacion.getPropertyPath() + " " + violacion.getMessage())
+                    .toList();
+            if (errores.isEmpty()) {
+                if (producto.getCreateAt() == null) {
+                    producto.setCreateAt(new Date());
+                }
+                indices.add(item.getT1());
+                validos.add(producto);
+            } else {
+                ResultadoBulk resultado = new ResultadoBulk(HttpStatus.BAD_REQUEST.value(), errores);
+                resultado.setIndice(item.getT1());
+                resultado.setId(producto.getId());
+                invalidos.add(resultado);
+            }
+        }
+        return Flux.fromIterable(invalidos)
+                .concatWith(Flux.fromIterable(indices).zipWith(productoService.saveAll(validos), (indice, resultado) -> {
+                    resultado.setIndice(indice);
+                    return resultado;
+                }));
     }
 
+    // * EDITAR -> reemplaza nombre, precio, categoria y createAt en un solo findAndModify (sin findById + save).
+    // * If-Match: "<version>" (el ETag de GET /{id}) o la version en el cuerpo; si otro lo modifico antes -> 412
     @PutMapping("/{id}")
-    public Mono<ResponseEntity<Producto>> editar(@RequestBody Producto producto, @PathVariable String id) {
-        return productoService.findById(id)
-                .flatMap(p -> {
-                    p.setNombre(producto.getNombre());
-                    p.setPrecio(producto.getPrecio());
-                    p.setCategoria(producto.getCategoria());
-                    p.setCreateAt(producto.getCreateAt());
-                    return productoService.save(p);
-                })
-                .map(p -> ResponseEntity
-                        .created(URI.create("/api/productos/".concat(p.getId())))
+    public Mono<ResponseEntity<Producto>> editar(@RequestBody Producto producto, @PathVariable String id,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return condicional("editar", ifMatch, producto, version -> productoService.reemplazar(id, version, producto));
+    }
+
+    // * MODIFICAR -> $set solo de los campos que vienen ({"precio": 99.9}), con las mismas reglas de If-Match que PUT
+    @PatchMapping("/{id}")
+    public Mono<ResponseEntity<Producto>> modificar(@RequestBody Producto cambios, @PathVariable String id,
+                                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        if (cambios.getNombre() == null && cambios.getPrecio() == null && cambios.getCategoria() == null && cambios.getCreateAt() == null) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return condicional("modificar", ifMatch, cambios, version -> productoService.modificar(id, version, cambios));
+    }
+
+    // * Version esperada: la del If-Match, o la del cuerpo si no hay header; "*" -> sin condicion.
+    // * Sin If-Match ni version en el cuerpo tambien se escribe sin condicion (gana la ultima escritura), salvo
+    // * con config.productos.if-match-obligatorio=true, que responde 428
+    private Mono<ResponseEntity<Producto>> condicional(String operacion, String ifMatch, Producto producto,
+                                                       Function<Long, Mono<Producto>> actualizar) {
+        if (ifMatch == null && ifMatchObligatorio) {
+            return Mono.just(ResponseEntity.status(HttpStatus.PRECONDITION_REQUIRED).build());
+        }
+        Long version = producto.getVersion();
+        if (ifMatch != null) {
+            boolean cualquiera = "*".equals(ifMatch.trim());
+            version = cualquiera ? null : version(ifMatch);
+            if (!cualquiera && version == null) {
+                // * Un ETag debil o que no es una version nunca coincide
+                return Mono.just(ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build());
+            }
+        }
+        return metricas.controlador(operacion, actualizar.apply(version)
+                .map(p -> ResponseEntity.ok()
                         .contentType(MediaType.APPLICATION_JSON)
+                        .headers(cabeceras -> etag(cabeceras, p))
                         .body(p)
                 )
-                .defaultIfEmpty(ResponseEntity.notFound().build());
+                .defaultIfEmpty(ResponseEntity.notFound().build())
+                .onErrorResume(OptimisticLockingFailureException.class, e -> Mono.just(ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build())));
+    }
+
+    // * ETag = "<version>"; los documentos sin version no llevan
+    private static void etag(HttpHeaders cabeceras, Producto producto) {
+        if (producto.getVersion() != null) {
+            cabeceras.setETag("\"" + producto.getVersion() + "\"");
+        }
+    }
+
+    private static Long version(String etag) {
+        String valor = etag.trim();
+        if (valor.length() < 3 || !valor.startsWith("\"") || !valor.endsWith("\"")) {
+            return null;
+        }
+        try {
+            return Long.parseLong(valor.substring(1, valor.length() - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 
     @DeleteMapping("/{id}")
     public Mono<ResponseEntity<Void>> eliminar(@PathVariable String id) {
-        return productoService.findById(id)
-                .flatMap(p -> productoService.delete(p)
-                        .then(Mono.just(new ResponseEntity<Void>(HttpStatus.NO_CONTENT)))
-                )
-                .defaultIfEmpty(new ResponseEntity<Void>(HttpStatus.NOT_FOUND));
+        return metricas.controlador("eliminar", productoService.deleteById(id)
+                .map(borrado -> new ResponseEntity<Void>(borrado ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND)));
     }
 }
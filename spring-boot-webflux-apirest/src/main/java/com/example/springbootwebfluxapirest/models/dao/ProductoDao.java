@@ -1,7 +1,12 @@
 package com.example.springbootwebfluxapirest.models.dao;
 
 import com.example.springbootwebfluxapirest.models.documents.Producto;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
 
-public interface ProductoDao extends ReactiveMongoRepository<Producto, String> {
+public interface ProductoDao extends ReactiveMongoRepository<Producto, String>, ProductoDaoCustom {
+    // * Paginacion por cursor (keyset) sobre _id: usa el indice y no depende de skip
+    public Flux<Producto> findByIdGreaterThan(String id, Pageable pageable);
+    public Flux<Producto> findAllBy(Pageable pageable);
 }
@@ -0,0 +1,21 @@
+package com.example.springbootwebfluxapirest.models.dao;
+
+import com.example.springbootwebfluxapirest.models.documents.Producto;
+import com.example.springbootwebfluxapirest.models.documents.Variante;
+import com.example.springbootwebfluxapirest.models.dto.EstadisticaCategoria;
+import com.example.springbootwebfluxapirest.models.dto.FiltroProducto;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+// * Consultas que necesitan el ReactiveMongoTemplate (filtros combinados, texto y agregaciones)
+public interface ProductoDaoCustom {
+    public Flux<Producto> buscar(FiltroProducto filtro);
+    public Flux<Producto> buscarTexto(String texto, int limite);
+    public Flux<EstadisticaCategoria> estadisticasPorCategoria(FiltroProducto filtro);
+    public Mono<EstadisticaCategoria> estadisticasGenerales(FiltroProducto filtro);
+    public Mono<Producto> modificar(String id, Long version, Map<String, Object> campos);
+    public Mono<Boolean> guardarVariantes(String id, String foto, List<Variante> variantes);
+}
@@ -0,0 +1,162 @@
+package com.example.springbootwebfluxapirest.models.dao;
+
+import com.example.springbootwebfluxapirest.models.documents.Producto;
+import com.example.springbootwebfluxapirest.models.documents.Variante;
+import com.example.springbootwebfluxapirest.models.dto.EstadisticaCategoria;
+import com.example.springbootwebfluxapirest.models.dto.FiltroProducto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.GroupOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class ProductoDaoCustomImpl implements ProductoDaoCustom {
+
+    private static final Set<String> CAMPOS_ORDEN = Set.of("id", "nombre", "precio", "createAt");
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    // * Un ?limite= mas grande se recorta a este maximo (sin ?limite= el listado sigue siendo el stream completo)
+    @Value("${config.paginacion.limite-maximo:1000}")
+    private int limiteMaximo;
+
+    // * Todos los filtros se resuelven en Mongo (con los indices de Producto) en lugar de filtrar el Flux en Java
+    @Override
+    public Flux<Producto> buscar(FiltroProducto filtro) {
+        Query query = new Query();
+        criterios(filtro).forEach(query::addCriteria);
+        if (filtro.getOrden() != null && CAMPOS_ORDEN.contains(filtro.getOrden())) {
+            Sort.Direction direccion = Sort.Direction.fromOptionalString(filtro.getDireccion()).orElse(Sort.Direction.ASC);
+            query.with(Sort.by(direccion, filtro.getOrden()));
+        }
+        if (filtro.getLimite() != null && filtro.getLimite() > 0) {
+            query.limit(Math.min(filtro.getLimite(), limiteMaximo));
+        }
+        return mongoTemplate.find(query, Producto.class);
+    }
+
+    // * $text sobre el indice de texto de Producto (nombre con mas peso que la categoria), ordenado por relevancia.
+    // * En modo referencia la categoria no esta en el documento y solo cuenta el nombre
+    @Override
+    public Flux<Producto> buscarTexto(String texto, int limite) {
+        Query query = TextQuery.queryText(TextCriteria.forDefaultLanguage().matching(texto))
+                .sortByScore()
+                .limit(limite);
+        return mongoTemplate.find(query, Producto.class);
+    }
+
+    // * Estadisticas calculadas en Mongo ($match -> $group -> $lookup del nombre -> $sort): por la red viaja una fila
+    // * por categoria en lugar de todo el catalogo. El nombre sale de la coleccion de categorias (vale tambien con
+    // * config.categorias.referencia, y un renombre se ve sin reescribir productos); si no esta, el embebido
+    @Override
+    public Flux<EstadisticaCategoria> estadisticasPorCategoria(FiltroProducto filtro) {
+        List<AggregationOperation> etapas = new ArrayList<>(filtrar(filtro));
+        etapas.add(agrupar(Aggregation.group("categoria.id")).first("categoria.nombre").as("categoria"));
+        etapas.add(Aggregation.lookup("categorias", "_id", "_id", "categoriaActual"));
+        etapas.add(Aggregation.addFields()
+                .addField("categoria").withValue(ConditionalOperators
+                        .ifNull(ArrayOperators.ArrayElemAt.arrayOf("categoriaActual.nombre").elementAt(0))
+                        .thenValueOf("categoria"))
+                .build());
+        etapas.add(Aggregation.project().andExclude("categoriaActual"));
+        etapas.add(Aggregation.sort(Sort.by(Sort.Direction.DESC, "cantidad").and(Sort.by("_id"))));
+        return mongoTemplate.aggregate(Aggregation.newAggregation(etapas), Producto.class, EstadisticaCategoria.class);
+    }
+
+    @Override
+    public Mono<EstadisticaCategoria> estadisticasGenerales(FiltroProducto filtro) {
+        List<AggregationOperation> etapas = new ArrayList<>(filtrar(filtro));
+        etapas.add(agrupar(Aggregation.group()));
+        return mongoTemplate.aggregate(Aggregation.newAggregation(etapas), Producto.class, EstadisticaCategoria.class)
+                .next();
+    }
+
+    private List<AggregationOperation> filtrar(FiltroProducto filtro) {
+        List<Criteria> criterios = criterios(filtro);
+        return criterios.isEmpty() ? List.of()
+                : List.of(Aggregation.match(new Criteria().andOperator(criterios)));
+    }
+
+    private static GroupOperation agrupar(GroupOperation grupo) {
+        return grupo.count().as("cantidad")
+                .min("precio").as("precioMinimo")
+                .avg("precio").as("precioPromedio")
+                .max("precio").as("precioMaximo")
+                .max("createAt").as("ultimoCreateAt");
+    }
+
+    // * Los mismos filtros para los listados y las estadisticas (el orden y el limite son solo de los listados)
+    private List<Criteria> criterios(FiltroProducto filtro) {
+        List<Criteria> criterios = new ArrayList<>();
+        if (filtro.getCategoriaId() != null) {
+            criterios.add(Criteria.where("categoria.id").is(filtro.getCategoriaId()));
+        }
+        if (filtro.getPrecioMin() != null || filtro.getPrecioMax() != null) {
+            Criteria precio = Criteria.where("precio");
+            if (filtro.getPrecioMin() != null) {
+                precio.gte(filtro.getPrecioMin());
+            }
+            if (filtro.getPrecioMax() != null) {
+                precio.lte(filtro.getPrecioMax());
+            }
+            criterios.add(precio);
+        }
+        if (filtro.getNombre() != null && !filtro.getNombre().isEmpty()) {
+            // * Prefijo anclado y escapado para que Mongo pueda recorrer el indice de nombre
+            criterios.add(Criteria.where("nombre").regex("^" + filtro.getNombre().replaceAll("\\W", "\\\\$0")));
+        }
+        if (filtro.getDesde() != null || filtro.getHasta() != null) {
+            Criteria createAt = Criteria.where("createAt");
+            if (filtro.getDesde() != null) {
+                createAt.gte(filtro.getDesde());
+            }
+            if (filtro.getHasta() != null) {
+                // * hasta llega como yyyy-MM-dd (medianoche): se incluye todo ese dia
+                createAt.lt(Date.from(filtro.getHasta().toInstant().plus(1, ChronoUnit.DAYS)));
+            }
+            criterios.add(createAt);
+        }
+        return criterios;
+    }
+
+    // * Un solo findAndModify: $set de los campos recibidos y $inc de la version, condicionado a la version esperada
+    // * (null = sin condicion). Devuelve el documento ya modificado, o vacio si no existe o la version no coincide
+    @Override
+    public Mono<Producto> modificar(String id, Long version, Map<String, Object> campos) {
+        Criteria criteria = Criteria.where("id").is(id);
+        if (version != null) {
+            criteria.and("version").is(version);
+        }
+        Update update = new Update().inc("version", 1);
+        campos.forEach(update::set);
+        return mongoTemplate.findAndModify(new Query(criteria), update, FindAndModifyOptions.options().returnNew(true), Producto.class);
+    }
+
+    // * $set atomico solo de las variantes y solo si la foto no cambio mientras se generaban
+    @Override
+    public Mono<Boolean> guardarVariantes(String id, String foto, List<Variante> variantes) {
+        Query query = new Query(Criteria.where("id").is(id).and("foto").is(foto));
+        return mongoTemplate.updateFirst(query, new Update().set("variantes", variantes), Producto.class)
+                .map(resultado -> resultado.getModifiedCount() > 0);
+    }
+}
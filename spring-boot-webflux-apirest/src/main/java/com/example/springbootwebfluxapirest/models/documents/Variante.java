@@ -0,0 +1,55 @@
+package com.example.springbootwebfluxapirest.models.documents;
+
+// * Miniatura generada a partir de la foto original del producto
+public class Variante {
+    private Integer ancho;
+    private Integer alto;
+    private String foto;
+    private Long bytes;
+
+    public Variante() {
+    }
+
+    public Variante(Integer ancho, Integer alto, String foto, Long bytes) {
+        this.ancho = ancho;
+        this.alto = alto;
+        this.foto = foto;
+        this.bytes = bytes;
+    }
+
+    public Variante(Variante otra) {
+        this(otra.ancho, otra.alto, otra.foto, otra.bytes);
+    }
+
+    public Integer getAncho() {
+        return ancho;
+    }
+
+    public void setAncho(Integer ancho) {
+        this.ancho = ancho;
+    }
+
+    public Integer getAlto() {
+        return alto;
+    }
+
+    public void setAlto(Integer alto) {
+        this.alto = alto;
+    }
+
+    public String getFoto() {
+        return foto;
+    }
+
+    public void setFoto(String foto) {
+        this.foto = foto;
+    }
+
+    public Long getBytes() {
+        return bytes;
+    }
+
+    public void setBytes(Long bytes) {
+        this.bytes = bytes;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.springbootwebfluxapirest.models.dto;
+
+import org.springframework.data.annotation.Id;
+
+import java.util.Date;
+
+// * Resultado del $group de productos: una por categoria, o una sola sin categoria para el total del catalogo
+public class EstadisticaCategoria {
+    @Id
+    private String categoriaId;
+    private String categoria;
+    private Long cantidad;
+    private Double precioMinimo;
+    private Double precioPromedio;
+    private Double precioMaximo;
+    private Date ultimoCreateAt;
+
+    public EstadisticaCategoria() {
+    }
+
+    public String getCategoriaId() {
+        return categoriaId;
+    }
+
+    public void setCategoriaId(String categoriaId) {
+        this.categoriaId = categoriaId;
+    }
+
+    public String getCategoria() {
+        return categoria;
+    }
+
+    public void setCategoria(String categoria) {
+        this.categoria = categoria;
+    }
+
+    public Long getCantidad() {
+        return cantidad;
+    }
+
+    public void setCantidad(Long cantidad) {
+        this.cantidad = cantidad;
+    }
+
+    public Double getPrecioMinimo() {
+        return precioMinimo;
+    }
+
+    public void setPrecioMinimo(Double precioMinimo) {
+        this.precioMinimo = precioMinimo;
+    }
+
+    public Double getPrecioPromedio() {
+        return precioPromedio;
+    }
+
+    public void setPrecioPromedio(Double precioPromedio) {
+        this.precioPromedio = precioPromedio;
+    }
+
+    public Double getPrecioMaximo() {
+        return precioMaximo;
+    }
+
+    public void setPrecioMaximo(Double precioMaximo) {
+        this.precioMaximo = precioMaximo;
+    }
+
+    public Date getUltimoCreateAt() {
+        return ultimoCreateAt;
+    }
+
+    public void setUltimoCreateAt(Date ultimoCreateAt) {
+        this.ultimoCreateAt = ultimoCreateAt;
+    }
+}
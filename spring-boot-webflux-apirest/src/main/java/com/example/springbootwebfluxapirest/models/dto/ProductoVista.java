@@ -0,0 +1,17 @@
+package com.example.springbootwebfluxapirest.models.dto;
+
+import com.example.springbootwebfluxapirest.models.documents.Producto;
+
+import java.util.Date;
+
+// * Resultado de findAllNombreUpperCase: el nombre en mayusculas va en un record nuevo, la entidad no se modifica
+public record ProductoVista(String id, String nombre, Double precio, Date createAt, String categoriaNombre) {
+
+    public static ProductoVista nombreUpperCase(Producto producto) {
+        return new ProductoVista(producto.getId(),
+                producto.getNombre().toUpperCase(),
+                producto.getPrecio(),
+                producto.getCreateAt(),
+                producto.getCategoria() != null ? producto.getCategoria().getNombre() : null);
+    }
+}
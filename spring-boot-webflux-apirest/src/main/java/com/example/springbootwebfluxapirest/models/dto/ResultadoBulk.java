@@ -0,0 +1,77 @@
+package com.example.springbootwebfluxapirest.models.dto;
+
+import java.util.Date;
+import java.util.List;
+
+// * Resultado por elemento de POST /api/productos/bulk, con la misma forma de errores que crear (errors, timestamp, status)
+public class ResultadoBulk {
+    private Long indice;
+    private String id;
+    private Integer status;
+    private String mensaje;
+    private List<String> errors;
+    private Date timestamp;
+
+    public ResultadoBulk() {
+    }
+
+    public ResultadoBulk(String id, Integer status, String mensaje) {
+        this.id = id;
+        this.status = status;
+        this.mensaje = mensaje;
+    }
+
+    public ResultadoBulk(Integer status, List<String> errors) {
+        this.status = status;
+        this.errors = errors;
+        this.timestamp = new Date();
+    }
+
+    public Long getIndice() {
+        return indice;
+    }
+
+    public void setIndice(Long indice) {
+        this.indice = indice;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Integer getStatus() {
+        return status;
+    }
+
+    public void setStatus(Integer status) {
+        this.status = status;
+    }
+
+    public String getMensaje() {
+        return mensaje;
+    }
+
+    public void setMensaje(String mensaje) {
+        this.mensaje = mensaje;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<String> errors) {
+        this.errors = errors;
+    }
+
+    public Date getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(Date timestamp) {
+        this.timestamp = timestamp;
+    }
+}
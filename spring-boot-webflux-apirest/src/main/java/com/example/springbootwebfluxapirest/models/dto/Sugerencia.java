@@ -0,0 +1,5 @@
+package com.example.springbootwebfluxapirest.models.dto;
+
+// * Resultado del autocompletado: lo justo para mostrar la lista y abrir el producto
+public record Sugerencia(String id, String nombre) {
+}
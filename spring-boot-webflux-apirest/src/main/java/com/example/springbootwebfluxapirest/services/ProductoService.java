@@ -2,19 +2,34 @@ package com.example.springbootwebfluxapirest.services;
 
 import com.example.springbootwebfluxapirest.models.documents.Categoria;
 import com.example.springbootwebfluxapirest.models.documents.Producto;
+import com.example.springbootwebfluxapirest.models.dto.EstadisticaCategoria;
+import com.example.springbootwebfluxapirest.models.dto.FiltroProducto;
+import com.example.springbootwebfluxapirest.models.dto.ProductoVista;
+import com.example.springbootwebfluxapirest.models.dto.ResultadoBulk;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 public interface ProductoService {
     public Flux<Producto> findAll();
-    public Flux<Producto> findAllNombreUpperCase();
-    public Flux<Producto> findAllNombreUpperCaseRepeat();
+    public Flux<Producto> findPagina(String cursor, int limite);
+    public Flux<Producto> buscar(FiltroProducto filtro);
+    public Flux<Producto> buscarTexto(String texto, int limite);
+    public Flux<ProductoVista> findAllNombreUpperCase();
+    public Flux<ProductoVista> findAllNombreUpperCaseRepeat();
     public Mono<Producto> findById(String id);
     public Mono<Producto> save(Producto producto);
-    public Mono<Void> delete(Producto producto);
+    public Mono<Producto> reemplazar(String id, Long version, Producto producto);
+    public Mono<Producto> modificar(String id, Long version, Producto cambios);
+    public Mono<Producto> cambiarFoto(String id, String foto);
+    public Flux<ResultadoBulk> saveAll(List<Producto> productos);
+    public Mono<Boolean> deleteById(String id);
     public Flux<Categoria> findAllCategoria();
     public Mono<Categoria> findCategoriaById(String id);
     public Mono<Categoria> saveCategoria(Categoria categoria);
+    public Flux<EstadisticaCategoria> estadisticasPorCategoria(FiltroProducto filtro);
+    public Mono<EstadisticaCategoria> estadisticasGenerales(FiltroProducto filtro);
 
 
 
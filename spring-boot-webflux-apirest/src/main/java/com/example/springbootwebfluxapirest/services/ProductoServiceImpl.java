@@ -4,66 +4,316 @@ import com.example.springbootwebfluxapirest.models.dao.CategoriaDao;
 import com.example.springbootwebfluxapirest.models.dao.ProductoDao;
 import com.example.springbootwebfluxapirest.models.documents.Categoria;
 import com.example.springbootwebfluxapirest.models.documents.Producto;
+import com.example.springbootwebfluxapirest.models.dto.EstadisticaCategoria;
+import com.example.springbootwebfluxapirest.models.dto.FiltroProducto;
+import com.example.springbootwebfluxapirest.models.dto.ProductoVista;
+import com.example.springbootwebfluxapirest.models.dto.ResultadoBulk;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 @Service
 public class ProductoServiceImpl implements ProductoService {
 
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(ProductoServiceImpl.class);
+
     @Autowired
     private ProductoDao dao;
 
     @Autowired
     private CategoriaDao categoriaDao;
 
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    // * Todas las llamadas a Mongo pasan por aca: timeout, reintentos (solo lecturas) y circuit breaker
+    @Autowired
+    private ResilienciaMongo resiliencia;
+
+    // * Suscripciones, demanda, elementos, latencia y errores de cada operacion (ver MetricasFlujos)
+    @Autowired
+    private MetricasFlujos metricas;
+
+    // * Con config.categorias.referencia el producto guarda solo el id de la categoria y el nombre se resuelve aca
+    @Autowired
+    private ResolutorCategorias categorias;
+
+    // * Autocompletado en memoria: se mantiene al dia con cada save / delete
+    @Autowired
+    private IndiceProductos indice;
+
+    // * Apagada por defecto: contra limitRate queda dentro del ruido (ContraPresionBenchmark, en
+    // * spring-boot-reactor-benchmarks)
+    @Value("${config.demanda.habilitada:false}")
+    private boolean demandaAdaptativa;
+
+    @Value("${config.demanda.minimo:32}")
+    private int demandaMinima;
+
+    @Value("${config.demanda.maximo:1024}")
+    private int demandaMaxima;
+
+    @Value("${config.demanda.objetivo:50ms}")
+    private Duration demandaObjetivo;
+
+    // * Solo lo que usa ProductoVista (_id viene siempre): foto, variantes y version no viajan desde Mongo
+    private static final String[] CAMPOS_VISTA = {"nombre", "precio", "createAt", "categoria"};
+
+    // * Con config.demanda.habilitada el cursor de Mongo se pide en lotes que se ajustan a lo rapido que consume el
+    // * cliente (ver DemandaAdaptativa)
     @Override
     public Flux<Producto> findAll() {
-        return dao.findAll();
+        Flux<Producto> productos = resiliencia.lectura(dao.findAll());
+        if (demandaAdaptativa) {
+            productos = productos.transform(DemandaAdaptativa.operador(demandaMinima, demandaMaxima, demandaObjetivo));
+        }
+        return metricas.servicio("findAll", categorias.resolver(productos));
     }
 
     @Override
-    public Flux<Producto> findAllNombreUpperCase() {
-        return dao.findAll()
-                .map(producto -> {
-                    producto.setNombre(producto.getNombre().toUpperCase());
-                    return producto;
-                });
+    public Flux<Producto> findPagina(String cursor, int limite) {
+        Pageable pagina = PageRequest.of(0, limite, Sort.by("id"));
+        return metricas.servicio("findPagina", categorias.resolver(
+                resiliencia.lectura(cursor == null ? dao.findAllBy(pagina) : dao.findByIdGreaterThan(cursor, pagina))));
     }
 
     @Override
-    public Flux<Producto> findAllNombreUpperCaseRepeat() {
-        return findAllNombreUpperCase().repeat(5000);
+    public Flux<Producto> buscar(FiltroProducto filtro) {
+        return metricas.servicio("buscar", categorias.resolver(resiliencia.lectura(dao.buscar(filtro))));
+    }
+
+    @Override
+    public Flux<Producto> buscarTexto(String texto, int limite) {
+        return metricas.servicio("buscarTexto", categorias.resolver(resiliencia.lectura(dao.buscarTexto(texto, limite))));
+    }
+
+    @Override
+    public Flux<ProductoVista> findAllNombreUpperCase() {
+        Query query = new Query();
+        query.fields().include(CAMPOS_VISTA);
+        return metricas.servicio("findAllNombreUpperCase", categorias.resolver(resiliencia.lectura(mongoTemplate.find(query, Producto.class)))
+                .map(ProductoVista::nombreUpperCase));
+    }
+
+    // * Una sola consulta: las vistas se guardan en memoria y se reproducen 5000 veces
+    @Override
+    public Flux<ProductoVista> findAllNombreUpperCaseRepeat() {
+        return metricas.servicio("findAllNombreUpperCaseRepeat", findAllNombreUpperCase()
+                .collectList()
+                .flatMapMany(vistas -> Flux.fromIterable(vistas).repeat(5000)));
     }
 
     @Override
     public Mono<Producto> findById(String id) {
-        return dao.findById(id);
+        return metricas.servicio("findById", categorias.resolver(resiliencia.lectura(dao.findById(id))));
     }
 
     @Override
     public Mono<Producto> save(Producto producto) {
-        return dao.save(producto);
+        return metricas.servicio("save", categorias.guardar(producto, p -> resiliencia.escritura(dao.save(p)))
+                .doOnNext(indice::actualizar));
     }
 
+    // * PUT: los campos editables se reemplazan todos (los null tambien) en un solo findAndModify, sin leer antes
     @Override
-    public Mono<Void> delete(Producto producto) {
-        return dao.delete(producto);
+    public Mono<Producto> reemplazar(String id, Long version, Producto producto) {
+        categorias.reducir(producto);
+        Map<String, Object> campos = new LinkedHashMap<>();
+        campos.put("nombre", producto.getNombre());
+        campos.put("precio", producto.getPrecio());
+        campos.put("categoria", producto.getCategoria());
+        campos.put("createAt", producto.getCreateAt());
+        return metricas.servicio("reemplazar", actualizarCampos(id, version, campos));
+    }
+
+    // * PATCH: solo los campos que vienen, asi un cambio de precio no reescribe el resto del documento
+    @Override
+    public Mono<Producto> modificar(String id, Long version, Producto cambios) {
+        categorias.reducir(cambios);
+        Map<String, Object> campos = new LinkedHashMap<>();
+        if (cambios.getNombre() != null) {
+            campos.put("nombre", cambios.getNombre());
+        }
+        if (cambios.getPrecio() != null) {
+            campos.put("precio", cambios.getPrecio());
+        }
+        if (cambios.getCategoria() != null) {
+            campos.put("categoria", cambios.getCategoria());
+        }
+        if (cambios.getCreateAt() != null) {
+            campos.put("createAt", cambios.getCreateAt());
+        }
+        return metricas.servicio("modificar", actualizarCampos(id, version, campos));
+    }
+
+    // * Upload: solo foto y variantes, sin condicion de version. Un findById + save fallaba con
+    // * OptimisticLockingFailureException (500) si otro editaba el producto entre la lectura y el save
+    @Override
+    public Mono<Producto> cambiarFoto(String id, String foto) {
+        Map<String, Object> campos = new LinkedHashMap<>();
+        campos.put("foto", foto);
+        campos.put("variantes", null);
+        return metricas.servicio("cambiarFoto", actualizarCampos(id, null, campos));
+    }
+
+    // * Si el findAndModify no encontro nada y habia version se distingue "no existe" (vacio) de "lo cambio otro"
+    private Mono<Producto> actualizarCampos(String id, Long version, Map<String, Object> campos) {
+        return categorias.resolver(resiliencia.escritura(dao.modificar(id, version, campos))
+                        .switchIfEmpty(Mono.defer(() -> version == null ? Mono.empty() : resiliencia.lectura(dao.existsById(id))
+                                .flatMap(existe -> existe
+                                        ? Mono.error(new OptimisticLockingFailureException("El producto " + id + " ya no esta en la version " + version))
+                                        : Mono.empty()))))
+                .doOnNext(indice::actualizar);
+    }
+
+    // * Un solo bulkWrite por lote: un upsert por producto que reemplaza el documento entero (crea los nuevos y
+    // * reemplaza los existentes). Es un pipeline ($replaceWith) para poder incrementar la version que ya tenia en
+    // * Mongo: la carga masiva pisa sin condicion, pero los ETag anteriores dejan de valer.
+    // * Sin orden para que un documento con error no corte el resto del lote. Si falla el lote entero (timeout, red,
+    // * circuito abierto) cada producto recibe su 5xx y los lotes siguientes se siguen escribiendo
+    @Override
+    public Flux<ResultadoBulk> saveAll(List<Producto> productos) {
+        if (productos.isEmpty()) {
+            return Flux.empty();
+        }
+        List<WriteModel<Document>> operaciones = new ArrayList<>(productos.size());
+        for (Producto producto : productos) {
+            if (producto.getId() == null) {
+                producto.setId(new ObjectId().toHexString());
+            }
+            Document documento = new Document();
+            mongoTemplate.getConverter().write(categorias.reducir(producto), documento);
+            Document version = new Document("$add", List.of(new Document("$ifNull", List.of("$version", -1L)), 1L));
+            Document reemplazo = new Document("$replaceWith",
+                    new Document("$mergeObjects", List.of(new Document("$literal", documento), new Document("version", version))));
+            operaciones.add(new UpdateOneModel<>(Filters.eq("_id", documento.get("_id")), List.of(reemplazo),
+                    new UpdateOptions().upsert(true)));
+        }
+
+        return metricas.servicio("saveAll", resiliencia.escritura(mongoTemplate.getCollection(mongoTemplate.getCollectionName(Producto.class))
+                        .flatMap(coleccion -> Mono.from(coleccion.bulkWrite(operaciones, new BulkWriteOptions().ordered(false)))))
+                .map(resultado -> resultados(productos, indicesCreados(resultado.getUpserts()), Collections.emptyMap()))
+                .onErrorResume(MongoBulkWriteException.class, e -> {
+                    Map<Integer, String> errores = new HashMap<>();
+                    for (BulkWriteError error : e.getWriteErrors()) {
+                        errores.put(error.getIndex(), error.getMessage());
+                    }
+                    return Mono.just(resultados(productos, indicesCreados(e.getWriteResult().getUpserts()), errores));
+                })
+                .onErrorResume(e -> !(e instanceof MongoBulkWriteException), e -> Mono.just(loteFallido(productos, e)))
+                .doOnNext(resultados -> {
+                    for (int i = 0; i < resultados.size(); i++) {
+                        if (resultados.get(i).getErrors() == null) {
+                            indice.actualizar(productos.get(i));
+                        }
+                    }
+                })
+                .flatMapMany(Flux::fromIterable));
+    }
+
+    private Set<Integer> indicesCreados(List<BulkWriteUpsert> upserts) {
+        Set<Integer> indices = new HashSet<>();
+        upserts.forEach(upsert -> indices.add(upsert.getIndex()));
+        return indices;
+    }
+
+    private List<ResultadoBulk> loteFallido(List<Producto> productos, Throwable error) {
+        log.warn("Carga masiva: no se pudo escribir un lote de {} productos: {}", productos.size(), error.toString());
+        // * 503 con el circuito abierto: Mongo no se llego a tocar y reintentar mas tarde tiene sentido
+        HttpStatus status = error instanceof CallNotPermittedException ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.INTERNAL_SERVER_ERROR;
+        String mensaje = error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+        List<ResultadoBulk> resultados = new ArrayList<>(productos.size());
+        for (Producto producto : productos) {
+            ResultadoBulk resultado = new ResultadoBulk(status.value(), List.of(mensaje));
+            resultado.setId(producto.getId());
+            resultados.add(resultado);
+        }
+        return resultados;
+    }
+
+    private List<ResultadoBulk> resultados(List<Producto> productos, Set<Integer> creados, Map<Integer, String> errores) {
+        List<ResultadoBulk> resultados = new ArrayList<>(productos.size());
+        for (int i = 0; i < productos.size(); i++) {
+            if (errores.containsKey(i)) {
+                ResultadoBulk resultado = new ResultadoBulk(HttpStatus.INTERNAL_SERVER_ERROR.value(), List.of(errores.get(i)));
+                resultado.setId(productos.get(i).getId());
+                resultados.add(resultado);
+            } else if (creados.contains(i)) {
+                resultados.add(new ResultadoBulk(productos.get(i).getId(), HttpStatus.CREATED.value(), "Producto creado con éxito"));
+            } else {
+                resultados.add(new ResultadoBulk(productos.get(i).getId(), HttpStatus.OK.value(), "Producto actualizado con éxito"));
+            }
+        }
+        return resultados;
+    }
+
+    @Override
+    public Mono<Boolean> deleteById(String id) {
+        // * Por id y no delete(producto): con @Version el delete de una copia vieja (la cache) tira OptimisticLockingFailureException
+        return metricas.servicio("deleteById", resiliencia.escritura(mongoTemplate.remove(new Query(Criteria.where("id").is(id)), Producto.class))
+                .map(resultado -> resultado.getDeletedCount() > 0)
+                .doOnNext(borrado -> {
+                    if (borrado) {
+                        indice.eliminar(id);
+                    }
+                }));
     }
 
     @Override
     public Flux<Categoria> findAllCategoria() {
-        return categoriaDao.findAll();
+        return metricas.servicio("findAllCategoria", resiliencia.lectura(categoriaDao.findAll()));
     }
 
     @Override
     public Mono<Categoria> findCategoriaById(String id) {
-        return categoriaDao.findById(id);
+        return metricas.servicio("findCategoriaById", resiliencia.lectura(categoriaDao.findById(id)));
     }
 
     @Override
     public Mono<Categoria> saveCategoria(Categoria categoria) {
-        return categoriaDao.save(categoria);
+        return metricas.servicio("saveCategoria", resiliencia.escritura(categoriaDao.save(categoria))
+                .doOnNext(categorias::actualizar));
+    }
+
+    // * Se calculan en Mongo con un aggregate, sin traer los productos
+    @Override
+    public Flux<EstadisticaCategoria> estadisticasPorCategoria(FiltroProducto filtro) {
+        return metricas.servicio("estadisticasPorCategoria", resiliencia.lectura(dao.estadisticasPorCategoria(filtro)));
+    }
+
+    @Override
+    public Mono<EstadisticaCategoria> estadisticasGenerales(FiltroProducto filtro) {
+        return metricas.servicio("estadisticasGenerales", resiliencia.lectura(dao.estadisticasGenerales(filtro)));
     }
 }
@@ -0,0 +1,123 @@
+package com.example.springbootwebfluxapirest.services;
+
+import com.example.springbootwebfluxapirest.models.dao.CategoriaDao;
+import com.example.springbootwebfluxapirest.models.documents.Categoria;
+import com.example.springbootwebfluxapirest.models.documents.Producto;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+// * Modo referencia (config.categorias.referencia=true): el producto guarda solo el id de su categoria
+// * ({categoria: {_id: ...}}, asi las consultas e indices sobre categoria._id no cambian) y el nombre se completa al leer.
+// * Los listados se resuelven de a lotes: un solo findAllById ($in) por lote con los ids que no estan en el mapa en
+// * memoria, en vez de decodificar la categoria embebida en cada documento. Renombrar una categoria ya no obliga a
+// * reescribir todos sus productos. Sin el modo referencia la categoria sigue embebida y aca no se hace nada
+// * En este modulo lo usan save, reemplazar, modificar y el bulk (reducir/guardar antes de escribir con el template)
+// * y los listados y el detalle (resolver)
+@Service
+public class ResolutorCategorias {
+
+    @Autowired
+    private CategoriaDao categoriaDao;
+
+    @Autowired
+    private ResilienciaMongo resiliencia;
+
+    private final boolean referencia;
+    private final int lote;
+    private final Cache<String, Categoria> categorias;
+
+
+    public ResolutorCategorias(@Value("${config.categorias.referencia:false}") boolean referencia,
+                               @Value("${config.categorias.lote:500}") int lote,
+                               @Value("${config.categorias.ttl:5m}") Duration ttl) {
+        this.referencia = referencia;
+        this.lote = lote;
+        // * Son pocas: el TTL es solo para que otra instancia que renombre una categoria se vea en algun momento
+        this.categorias = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    // * Deja en el producto solo el id de la categoria (para inserciones directas con el template)
+    public Producto reducir(Producto producto) {
+        // * No se guarda en el mapa la categoria que viene en el producto: puede traer un nombre que no es el de Mongo
+        if (referencia && producto.getCategoria() != null && producto.getCategoria().getId() != null) {
+            Categoria soloId = new Categoria();
+            soloId.setId(producto.getCategoria().getId());
+            producto.setCategoria(soloId);
+        }
+        return producto;
+    }
+
+    // * Guarda el producto con la categoria reducida y se la devuelve completa a quien llamo
+    public Mono<Producto> guardar(Producto producto, Function<Producto, Mono<Producto>> guardar) {
+        if (!referencia || producto.getCategoria() == null) {
+            return guardar.apply(producto);
+        }
+        return Mono.defer(() -> {
+            Categoria completa = producto.getCategoria();
+            return guardar.apply(reducir(producto))
+                    .doOnNext(guardado -> guardado.setCategoria(completa))
+                    .doOnError(e -> producto.setCategoria(completa));
+        });
+    }
+
+    public Flux<Producto> resolver(Flux<Producto> productos) {
+        if (!referencia) {
+            return productos;
+        }
+        return productos
+                .buffer(lote)
+                .concatMap(this::completar)
+                .flatMapIterable(Function.identity());
+    }
+
+    public Mono<Producto> resolver(Mono<Producto> producto) {
+        if (!referencia) {
+            return producto;
+        }
+        return producto.flatMap(p -> completar(List.of(p)).thenReturn(p));
+    }
+
+    public void actualizar(Categoria categoria) {
+        if (categoria.getId() != null && categoria.getNombre() != null) {
+            categorias.put(categoria.getId(), categoria);
+        }
+    }
+
+    private Mono<List<Producto>> completar(List<Producto> productos) {
+        Set<String> faltan = new HashSet<>();
+        for (Producto producto : productos) {
+            String id = producto.getCategoria() != null ? producto.getCategoria().getId() : null;
+            if (id != null && categorias.getIfPresent(id) == null) {
+                faltan.add(id);
+            }
+        }
+        Mono<Void> carga = faltan.isEmpty() ? Mono.empty() : resiliencia.lectura(categoriaDao.findAllById(faltan))
+                .doOnNext(this::actualizar)
+                .then();
+        return carga.then(Mono.fromCallable(() -> {
+            for (Producto producto : productos) {
+                if (producto.getCategoria() != null && producto.getCategoria().getId() != null) {
+                    Categoria categoria = categorias.getIfPresent(producto.getCategoria().getId());
+                    if (categoria != null) {
+                        producto.setCategoria(categoria);
+                    }
+                }
+            }
+            return productos;
+        }));
+    }
+}
@@ -3,7 +3,8 @@ package com.example.springbootwebfluxapirest;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+// * Sin la carga inicial: el arranque espera a que termine y necesitaria un Mongo disponible
+@SpringBootTest(properties = "config.carga.habilitada=false")
 class SpringBootWebfluxApirestApplicationTests {
 
     @Test
@@ -0,0 +1,268 @@
+package com.example.springbootwebfluxapirest.controllers;
+
+import com.example.springbootwebfluxapirest.models.documents.Producto;
+import com.example.springbootwebfluxapirest.models.dto.FiltroProducto;
+import com.example.springbootwebfluxapirest.models.dto.ResultadoBulk;
+import com.example.springbootwebfluxapirest.services.AlmacenFotos;
+import com.example.springbootwebfluxapirest.services.FeedProductos;
+import com.example.springbootwebfluxapirest.services.FeedProductos.EventoProducto;
+import com.example.springbootwebfluxapirest.services.IndiceProductos;
+import com.example.springbootwebfluxapirest.services.MetricasFlujos;
+import com.example.springbootwebfluxapirest.services.MiniaturaService;
+import com.example.springbootwebfluxapirest.services.ProductoService;
+import com.example.springbootwebfluxapirest.services.ProductoServiceCache;
+import com.example.springbootwebfluxapirest.services.ResolutorCategorias;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@WebFluxTest(controllers = ProductoController.class, properties = "config.carga.habilitada=false")
+@Import({MetricasFlujos.class, SimpleMeterRegistry.class})
+class ProductoControllerTest {
+
+    @Autowired
+    private WebTestClient client;
+
+    @MockBean(name = "productoService")
+    private ProductoService productoService;
+
+    @MockBean
+    private ProductoServiceCache productoServiceCache;
+
+    @MockBean
+    private MiniaturaService miniaturaService;
+
+    @MockBean
+    private AlmacenFotos almacenFotos;
+
+    @MockBean
+    private ResolutorCategorias resolutorCategorias;
+
+    @MockBean
+    private FeedProductos feedProductos;
+
+    @MockBean
+    private IndiceProductos indiceProductos;
+
+    @MockBean
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void crearBulkValidaYAgrupaEnLotes() {
+        when(productoService.saveAll(anyList())).thenAnswer(invocation -> Flux
+                .fromIterable((List<Producto>) invocation.getArgument(0))
+                .map(p -> new ResultadoBulk(p.getNombre(), 201, "Producto creado con éxito")));
+
+        String cuerpo = """
+                {"nombre": "TV", "precio": 10.0, "categoria": {"id": "c1"}}
+                {"precio": 20.0, "categoria": {"id": "c1"}}
+                {"nombre": "Radio", "precio": 30.0, "categoria": {"id": "c1"}}
+                {"nombre": "Reloj", "precio": 40.0, "categoria": {"id": "c1"}}
+                """;
+
+        List<ResultadoBulk> resultados = client.post().uri("/api/productos/bulk?lote=2")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(cuerpo)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(ResultadoBulk.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        assertThat(resultados).hasSize(4);
+        assertThat(resultados).filteredOn(r -> r.getStatus() == 400)
+                .singleElement()
+                .satisfies(r -> {
+                    assertThat(r.getIndice()).isEqualTo(1L);
+                    assertThat(r.getErrors()).singleElement().asString().startsWith("El campo nombre ");
+                    assertThat(r.getTimestamp()).isNotNull();
+                });
+        assertThat(resultados).filteredOn(r -> r.getStatus() == 201)
+                .extracting(ResultadoBulk::getIndice)
+                .containsExactly(0L, 2L, 3L);
+        verify(productoService, times(2)).saveAll(anyList());
+    }
+
+    @Test
+    void listarConNdjsonEscribeUnProductoPorLinea() {
+        when(productoService.buscar(any())).thenReturn(Flux.just(producto("1", "TV"), producto("2", "Radio")));
+
+        client.get().uri("/api/productos")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBody(String.class)
+                .value(cuerpo -> assertThat(cuerpo.lines()).hasSize(2));
+    }
+
+    @Test
+    void cambiosUsaElResumeTokenComoIdYReanudaConLastEventId() {
+        when(feedProductos.suscribir("t1")).thenReturn(Flux.just(
+                new EventoProducto(2, "t2", "update", "2", producto("2", "Radio"))));
+
+        client.get().uri("/api/productos/cambios")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .header("Last-Event-ID", "t1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .value(cuerpo -> assertThat(cuerpo).contains("id:t2", "event:update", "\"nombre\":\"Radio\""));
+    }
+
+    @Test
+    void listarSinAcceptDevuelveUnArrayJson() {
+        when(productoService.buscar(any())).thenReturn(Flux.just(producto("1", "TV")));
+
+        client.get().uri("/api/productos")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$[0].nombre").isEqualTo("TV");
+    }
+
+    @Test
+    void listarEnlazaLosFiltrosDeLaConsulta() {
+        ArgumentCaptor<FiltroProducto> filtro = ArgumentCaptor.forClass(FiltroProducto.class);
+        when(productoService.buscar(filtro.capture())).thenReturn(Flux.empty());
+
+        client.get().uri("/api/productos?categoriaId=c1&precioMax=100&nombre=TV&desde=2023-01-01&orden=precio&direccion=desc&limite=5")
+                .exchange()
+                .expectStatus().isOk();
+
+        assertThat(filtro.getValue().getCategoriaId()).isEqualTo("c1");
+        assertThat(filtro.getValue().getPrecioMax()).isEqualTo(100.0);
+        assertThat(filtro.getValue().getNombre()).isEqualTo("TV");
+        assertThat(filtro.getValue().getDesde()).isNotNull();
+        assertThat(filtro.getValue().getOrden()).isEqualTo("precio");
+        assertThat(filtro.getValue().getDireccion()).isEqualTo("desc");
+        assertThat(filtro.getValue().getLimite()).isEqualTo(5);
+    }
+
+    @Test
+    void listarPaginaDevuelveElSiguienteCursor() {
+        String cursor = "63d1e2f0a1b2c3d4e5f60718";
+        when(productoService.findPagina(cursor, 2))
+                .thenReturn(Flux.just(producto("63d1e2f0a1b2c3d4e5f60719", "TV"), producto("63d1e2f0a1b2c3d4e5f6071a", "Radio")));
+
+        client.get().uri("/api/productos/pagina?cursor={cursor}&limite=2", cursor)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.productos.length()").isEqualTo(2)
+                .jsonPath("$.siguiente").isEqualTo("63d1e2f0a1b2c3d4e5f6071a");
+    }
+
+    @Test
+    void editarUsaLaVersionDelIfMatchYDevuelveElNuevoEtag() {
+        Producto guardado = producto("1", "TV");
+        guardado.setVersion(4L);
+        when(productoService.reemplazar(eq("1"), eq(3L), any())).thenReturn(Mono.just(guardado));
+
+        client.put().uri("/api/productos/1")
+                .header("If-Match", "\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"nombre\": \"TV\", \"precio\": 10.0}")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("ETag", "\"4\"");
+    }
+
+    @Test
+    void modificarConUnaVersionViejaDevuelve412() {
+        when(productoService.modificar(eq("1"), eq(3L), any()))
+                .thenReturn(Mono.error(new OptimisticLockingFailureException("version 3")));
+        when(productoService.modificar(eq("2"), isNull(), any())).thenReturn(Mono.empty());
+
+        client.patch().uri("/api/productos/1")
+                .header("If-Match", "\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"precio\": 99.9}")
+                .exchange()
+                .expectStatus().isEqualTo(412);
+        client.patch().uri("/api/productos/1")
+                .header("If-Match", "W/\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"precio\": 99.9}")
+                .exchange()
+                .expectStatus().isEqualTo(412);
+        client.patch().uri("/api/productos/2")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"precio\": 99.9}")
+                .exchange()
+                .expectStatus().isNotFound();
+        client.patch().uri("/api/productos/1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{}")
+                .exchange()
+                .expectStatus().isBadRequest();
+        verify(productoService, times(1)).modificar(eq("1"), any(), any());
+        verify(productoService, never()).save(any());
+    }
+
+    @Test
+    void eliminarBorraPorIdSinLeerElProducto() {
+        when(productoService.deleteById("1")).thenReturn(Mono.just(true));
+        when(productoService.deleteById("2")).thenReturn(Mono.just(false));
+
+        client.delete().uri("/api/productos/1").exchange().expectStatus().isNoContent();
+        client.delete().uri("/api/productos/2").exchange().expectStatus().isNotFound();
+        verify(productoService, never()).findById(any());
+    }
+
+    @Test
+    void uploadSoloCambiaLaFoto() {
+        Producto actualizado = producto("1", "TV");
+        actualizado.setFoto("abc.jpg");
+        when(productoService.findById("1")).thenReturn(Mono.just(producto("1", "TV")));
+        when(almacenFotos.guardar(any())).thenReturn(Mono.just("abc.jpg"));
+        when(productoService.cambiarFoto("1", "abc.jpg")).thenReturn(Mono.just(actualizado));
+        MultipartBodyBuilder partes = new MultipartBodyBuilder();
+        partes.part("file", new ByteArrayResource(new byte[]{1, 2, 3})).filename("foto.jpg");
+
+        client.post().uri("/api/productos/upload/1")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(partes.build()))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody()
+                .jsonPath("$.foto").isEqualTo("abc.jpg");
+        verify(miniaturaService).encolar("1", "abc.jpg");
+        verify(productoService, never()).save(any());
+    }
+
+    private Producto producto(String id, String nombre) {
+        Producto producto = new Producto(nombre, 10.0);
+        producto.setId(id);
+        return producto;
+    }
+}
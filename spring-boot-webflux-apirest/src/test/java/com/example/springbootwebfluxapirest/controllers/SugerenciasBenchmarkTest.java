@@ -0,0 +1,169 @@
+package com.example.springbootwebfluxapirest.controllers;
+
+import com.example.springbootwebfluxapirest.models.documents.Producto;
+import com.example.springbootwebfluxapirest.services.AlmacenFotos;
+import com.example.springbootwebfluxapirest.services.FeedProductos;
+import com.example.springbootwebfluxapirest.services.IndiceProductos;
+import com.example.springbootwebfluxapirest.services.MetricasFlujos;
+import com.example.springbootwebfluxapirest.services.MiniaturaService;
+import com.example.springbootwebfluxapirest.services.ProductoService;
+import com.example.springbootwebfluxapirest.services.ProductoServiceCache;
+import com.example.springbootwebfluxapirest.services.ResolutorCategorias;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// * Latencia del autocompletado con PRODUCTOS nombres en el indice en memoria: directo (IndiceProductos.sugerir) y
+// * por HTTP (GET /api/productos/sugerencias, servidor de prueba sin red). Las consultas son prefijos de 1 a 6 letras
+// * de palabras de productos existentes, un 30% con una segunda palabra completa. El objetivo es p99 < 10ms y el
+// * margen es chico: en una maquina de 1 CPU el p99 por HTTP dio entre 5.2 y 9.06 ms, el armado del indice 46-73 s
+// * y el heap usado ~700 MB.
+// * mvn test -Dbenchmark=true -Dtest=SugerenciasBenchmarkTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@WebFluxTest(controllers = ProductoController.class, properties = "config.carga.habilitada=false")
+@Import({MetricasFlujos.class, SimpleMeterRegistry.class, IndiceProductos.class})
+class SugerenciasBenchmarkTest {
+
+    private static final int PRODUCTOS = 1_000_000;
+    private static final int CALENTAMIENTO = 20_000;
+    private static final int CONSULTAS_DIRECTAS = 200_000;
+    private static final int CONSULTAS_HTTP = 20_000;
+    private static final long OBJETIVO_P99_NS = 10_000_000;
+
+    private static final List<String> MARCAS = List.of("Sony", "Samsung", "Apple", "Panasonic", "Hewlett Packard", "Lenovo",
+            "Asus", "Acer", "Dell", "LG", "Philips", "Bosch", "Siemens", "Bianchi", "Trek", "Specialized", "Mica", "Ikea",
+            "Xiaomi", "Huawei", "Motorola", "Nokia", "Canon", "Nikon", "Olympus", "Garmin", "Polar", "Suunto", "Adidas",
+            "Nike", "Puma", "Reebok", "Makita", "Black Decker", "Stanley", "Dewalt", "Whirlpool", "Electrolux", "Gafa", "Drean");
+    private static final List<String> TIPOS = List.of("TV", "Notebook", "Cámara", "Reloj", "Auriculares", "Parlante",
+            "Bicicleta", "Zapatillas", "Cómoda", "Mesa", "Silla", "Heladera", "Lavarropas", "Taladro", "Amoladora",
+            "Celular", "Tablet", "Monitor", "Impresora", "Teclado", "Mouse", "Router", "Consola", "Proyector", "Microondas",
+            "Horno", "Cafetera", "Licuadora", "Aspiradora", "Ventilador", "Estufa", "Colchón", "Sillón", "Escritorio",
+            "Lámpara", "Mochila", "Valija", "Carpa", "Pelota", "Raqueta");
+    private static final List<String> ADJETIVOS = List.of("Pro", "Ultra", "Max", "Mini", "Plus", "Lite", "Digital", "Smart",
+            "Inalámbrico", "Portátil", "Compacto", "Gamer", "Clásico", "Deluxe", "Eco", "Turbo", "HD", "4K", "OLED", "LED",
+            "Negro", "Blanco", "Rojo", "Azul", "Plata", "Dorado", "Madera", "Acero", "Cuero", "Titanio");
+
+    @Autowired
+    private WebTestClient client;
+
+    @Autowired
+    private IndiceProductos indice;
+
+    @MockBean(name = "productoService")
+    private ProductoService productoService;
+
+    @MockBean
+    private ProductoServiceCache productoServiceCache;
+
+    @MockBean
+    private MiniaturaService miniaturaService;
+
+    @MockBean
+    private AlmacenFotos almacenFotos;
+
+    @MockBean
+    private ResolutorCategorias resolutorCategorias;
+
+    @MockBean
+    private FeedProductos feedProductos;
+
+    @MockBean
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Test
+    void p99DelAutocompletadoConUnMillonDeProductos() {
+        Random random = new Random(42);
+        String[] nombres = new String[PRODUCTOS];
+        long inicio = System.nanoTime();
+        for (int i = 0; i < PRODUCTOS; i++) {
+            nombres[i] = MARCAS.get(random.nextInt(MARCAS.size())) + " " + TIPOS.get(random.nextInt(TIPOS.size())) + " "
+                    + ADJETIVOS.get(random.nextInt(ADJETIVOS.size())) + " X" + random.nextInt(100_000);
+            Producto producto = new Producto(nombres[i], 10.0);
+            producto.setId(new ObjectId().toHexString());
+            indice.actualizar(producto);
+        }
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        System.out.printf("indice: %s en %.1f s, heap usado %d MB%n", indice.estadisticas(),
+                (System.nanoTime() - inicio) / 1e9, (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024));
+
+        String[] consultas = new String[CALENTAMIENTO + CONSULTAS_DIRECTAS];
+        for (int i = 0; i < consultas.length; i++) {
+            consultas[i] = consulta(nombres[random.nextInt(PRODUCTOS)], random);
+        }
+
+        int vacias = 0;
+        for (int i = 0; i < CALENTAMIENTO; i++) {
+            vacias += indice.sugerir(consultas[i], 10).isEmpty() ? 1 : 0;
+        }
+        long[] directas = new long[CONSULTAS_DIRECTAS];
+        for (int i = 0; i < CONSULTAS_DIRECTAS; i++) {
+            long t = System.nanoTime();
+            vacias += indice.sugerir(consultas[CALENTAMIENTO + i], 10).isEmpty() ? 1 : 0;
+            directas[i] = System.nanoTime() - t;
+        }
+        assertTrue(vacias == 0, "Toda consulta sale de un producto existente y tiene que tener sugerencias");
+
+        for (int i = 0; i < 2_000; i++) {
+            pedir(consultas[i]);
+        }
+        long[] http = new long[CONSULTAS_HTTP];
+        for (int i = 0; i < CONSULTAS_HTTP; i++) {
+            long t = System.nanoTime();
+            pedir(consultas[CALENTAMIENTO + i]);
+            http[i] = System.nanoTime() - t;
+        }
+
+        System.out.printf("%-8s %9s %9s %9s %9s %9s%n", "modo", "consultas", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        imprimir("directo", directas);
+        imprimir("http", http);
+        assertTrue(percentil(directas, 99) < OBJETIVO_P99_NS, "p99 directo por encima de 10ms");
+        assertTrue(percentil(http, 99) < OBJETIVO_P99_NS, "p99 por HTTP por encima de 10ms");
+    }
+
+    // * Prefijo de una palabra del nombre y a veces otra palabra completa del mismo nombre adelante
+    private static String consulta(String nombre, Random random) {
+        String[] palabras = nombre.split(" ");
+        String palabra = palabras[random.nextInt(palabras.length)];
+        String prefijo = palabra.substring(0, 1 + random.nextInt(Math.min(6, palabra.length())));
+        if (random.nextInt(10) < 3) {
+            return palabras[random.nextInt(palabras.length)] + " " + prefijo;
+        }
+        return prefijo;
+    }
+
+    private void pedir(String consulta) {
+        byte[] cuerpo = client.get().uri(uri -> uri.path("/api/productos/sugerencias").queryParam("q", consulta).build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .returnResult()
+                .getResponseBody();
+        assertFalse(cuerpo == null || cuerpo.length <= 2, "Sin sugerencias para " + consulta);
+    }
+
+    private static void imprimir(String modo, long[] latencias) {
+        System.out.printf("%-8s %9d %9.3f %9.3f %9.3f %9.3f%n", modo, latencias.length, percentil(latencias, 50) / 1e6,
+                percentil(latencias, 99) / 1e6, percentil(latencias, 99.9) / 1e6, percentil(latencias, 100) / 1e6);
+    }
+
+    private static long percentil(long[] latencias, double percentil) {
+        long[] ordenadas = latencias.clone();
+        Arrays.sort(ordenadas);
+        return ordenadas[(int) Math.min(ordenadas.length - 1, Math.ceil(percentil / 100 * ordenadas.length) - 1)];
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.springbootwebfluxapirest.models.dao;
+
+import com.example.springbootwebfluxapirest.models.documents.Producto;
+import com.example.springbootwebfluxapirest.models.dto.EstadisticaCategoria;
+import com.example.springbootwebfluxapirest.models.dto.FiltroProducto;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.RelaxedTypeBasedAggregationOperationContext;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver.IndexDefinitionHolder;
+import org.springframework.data.mongodb.core.index.TextIndexDefinition;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.text.SimpleDateFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProductoDaoCustomImplTest {
+
+    private ReactiveMongoTemplate mongoTemplate;
+    private ProductoDaoCustomImpl dao;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(ReactiveMongoTemplate.class);
+        when(mongoTemplate.find(any(Query.class), eq(Producto.class))).thenReturn(Flux.empty());
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Producto.class), eq(EstadisticaCategoria.class)))
+                .thenReturn(Flux.empty());
+        dao = new ProductoDaoCustomImpl();
+        ReflectionTestUtils.setField(dao, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(dao, "limiteMaximo", 100);
+    }
+
+    @Test
+    void buscarLlevaLosFiltrosAMongo() {
+        FiltroProducto filtro = new FiltroProducto();
+        filtro.setCategoriaId("c1");
+        filtro.setPrecioMin(10.0);
+        filtro.setPrecioMax(100.0);
+        filtro.setNombre("TV (4K)");
+        filtro.setOrden("precio");
+        filtro.setDireccion("desc");
+        filtro.setLimite(20);
+
+        Query query = buscar(filtro);
+        Document criterios = query.getQueryObject();
+
+        assertThat(criterios.get("categoria.id")).isEqualTo("c1");
+        assertThat(criterios.get("precio", Document.class)).containsEntry("$gte", 10.0).containsEntry("$lte", 100.0);
+        assertThat(((Pattern) criterios.get("nombre")).pattern()).isEqualTo("^TV\\ \\(4K\\)");
+        assertThat(query.getSortObject()).containsEntry("precio", -1);
+        assertThat(query.getLimit()).isEqualTo(20);
+    }
+
+    @Test
+    void buscarIncluyeElDiaHastaYRecortaElLimite() throws Exception {
+        FiltroProducto filtro = new FiltroProducto();
+        filtro.setDesde(new SimpleDateFormat("yyyy-MM-dd").parse("2023-01-01"));
+        filtro.setHasta(new SimpleDateFormat("yyyy-MM-dd").parse("2023-01-31"));
+        filtro.setLimite(5000);
+
+        Query query = buscar(filtro);
+        Document createAt = query.getQueryObject().get("createAt", Document.class);
+
+        assertThat(createAt).containsEntry("$gte", filtro.getDesde())
+                .containsEntry("$lt", new SimpleDateFormat("yyyy-MM-dd").parse("2023-02-01"))
+                .doesNotContainKey("$lte");
+        assertThat(query.getLimit()).isEqualTo(100);
+    }
+
+    @Test
+    void buscarIgnoraCamposDeOrdenDesconocidos() {
+        FiltroProducto filtro = new FiltroProducto();
+        filtro.setOrden("foto");
+
+        Query query = buscar(filtro);
+
+        assertThat(query.getQueryObject()).isEmpty();
+        assertThat(query.getSortObject()).isEmpty();
+    }
+
+    @Test
+    void buscarTextoOrdenaPorRelevancia() {
+        dao.buscarTexto("sony notebook", 20).blockLast();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(Producto.class));
+        assertThat(query.getValue().getQueryObject().get("$text", Document.class)).containsEntry("$search", "sony notebook");
+        assertThat(query.getValue().getSortObject().get("score", Document.class)).containsEntry("$meta", "textScore");
+        assertThat(query.getValue().getLimit()).isEqualTo(20);
+    }
+
+    @Test
+    void elIndiceDeTextoIncluyeElNombreDeLaCategoria() {
+        TextIndexDefinition texto = StreamSupport.stream(new MongoPersistentEntityIndexResolver(new MongoMappingContext())
+                        .resolveIndexFor(Producto.class).spliterator(), false)
+                .map(indice -> ((IndexDefinitionHolder) indice).getIndexDefinition())
+                .filter(TextIndexDefinition.class::isInstance)
+                .map(TextIndexDefinition.class::cast)
+                .findFirst()
+                .orElseThrow();
+
+        assertThat(texto.getIndexKeys()).containsKeys("nombre", "categoria.nombre");
+        assertThat(texto.getIndexOptions().get("weights", Document.class)).containsEntry("nombre", 3.0f);
+        assertThat(texto.getIndexOptions()).containsEntry("default_language", "spanish");
+    }
+
+    @Test
+    void modificarEsUnSoloFindAndModifyCondicionadoALaVersion() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Producto.class)))
+                .thenReturn(Mono.empty());
+
+        dao.modificar("1", 3L, Map.of("precio", 99.9)).block();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        ArgumentCaptor<FindAndModifyOptions> opciones = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+        verify(mongoTemplate).findAndModify(query.capture(), update.capture(), opciones.capture(), eq(Producto.class));
+        assertThat(query.getValue().getQueryObject()).containsEntry("id", "1").containsEntry("version", 3L);
+        assertThat(update.getValue().getUpdateObject().get("$set", Document.class)).containsExactly(Map.entry("precio", 99.9));
+        assertThat(update.getValue().getUpdateObject().get("$inc", Document.class)).containsEntry("version", 1);
+        assertThat(opciones.getValue().isReturnNew()).isTrue();
+    }
+
+    @Test
+    void lasEstadisticasPorCategoriaSeAgrupanEnMongo() {
+        FiltroProducto filtro = new FiltroProducto();
+        filtro.setPrecioMin(10.0);
+        filtro.setOrden("precio");
+
+        dao.estadisticasPorCategoria(filtro).blockLast();
+        List<Document> etapas = pipeline();
+
+        assertThat(etapas).extracting(etapa -> etapa.keySet().iterator().next())
+                .containsExactly("$match", "$group", "$lookup", "$addFields", "$project", "$sort");
+        Document grupo = etapas.get(1).get("$group", Document.class);
+        assertThat(grupo.get("_id")).isEqualTo("$categoria._id");
+        assertThat(grupo.get("precioPromedio", Document.class)).containsEntry("$avg", "$precio");
+        assertThat(grupo.get("ultimoCreateAt", Document.class)).containsEntry("$max", "$createAt");
+        assertThat(etapas.get(2).get("$lookup", Document.class)).containsEntry("from", "categorias");
+    }
+
+    @Test
+    void lasEstadisticasGeneralesSinFiltroNoTienenMatch() {
+        dao.estadisticasGenerales(new FiltroProducto()).block();
+        List<Document> etapas = pipeline();
+
+        assertThat(etapas).hasSize(1);
+        assertThat(etapas.get(0).get("$group", Document.class)).containsEntry("_id", null).containsKey("cantidad");
+    }
+
+    private List<Document> pipeline() {
+        ArgumentCaptor<Aggregation> agregacion = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoTemplate).aggregate(agregacion.capture(), eq(Producto.class), eq(EstadisticaCategoria.class));
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.afterPropertiesSet();
+        return agregacion.getValue().toPipeline(new RelaxedTypeBasedAggregationOperationContext(Producto.class,
+                mappingContext, new QueryMapper(converter)));
+    }
+
+    private Query buscar(FiltroProducto filtro) {
+        dao.buscar(filtro).blockLast();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(Producto.class));
+        return query.getValue();
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.springbootwebfluxapirest.services;
+
+import com.example.springbootwebfluxapirest.models.documents.Producto;
+import com.example.springbootwebfluxapirest.services.FeedProductos.EventoProducto;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoSocketReadException;
+import com.mongodb.ServerAddress;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FeedProductosTest {
+
+    // * Hace de replica set: guarda los eventos con su token, reanuda despues de un token y puede cortar el stream.
+    // * Los errores son los del driver: de red para un failover, codigo 286 para un token que ya no esta en el oplog
+    private static class OplogFalso {
+
+        private final List<EventoProducto> eventos = new CopyOnWriteArrayList<>();
+        private final List<String> reanudaciones = new CopyOnWriteArrayList<>();
+        private final AtomicInteger suscripciones = new AtomicInteger();
+        private volatile Sinks.Many<EventoProducto> vivo = Sinks.many().multicast().directBestEffort();
+        private volatile boolean sinHistoria;
+
+        Flux<EventoProducto> cambios(String token) {
+            return Flux.defer(() -> {
+                suscripciones.incrementAndGet();
+                reanudaciones.add(String.valueOf(token));
+                List<EventoProducto> pendientes = new ArrayList<>();
+                if (token != null) {
+                    int desde = eventos.stream().map(EventoProducto::token).toList().indexOf(token);
+                    if (desde < 0 || sinHistoria) {
+                        return Flux.error(historiaPerdida(token));
+                    }
+                    pendientes.addAll(eventos.subList(desde + 1, eventos.size()));
+                }
+                return Flux.fromIterable(pendientes).concatWith(vivo.asFlux());
+            });
+        }
+
+        void insertar(int cantidad) {
+            for (int i = 0; i < cantidad; i++) {
+                int numero = eventos.size() + 1;
+                EventoProducto evento = new EventoProducto(0, "t" + numero, "insert", String.valueOf(numero),
+                        new Producto("Producto " + numero, 10.0));
+                eventos.add(evento);
+                vivo.tryEmitNext(evento);
+            }
+        }
+
+        void cortar() {
+            fallar(new MongoSocketReadException("Failover del primario", new ServerAddress()));
+        }
+
+        void fallar(Throwable error) {
+            Sinks.Many<EventoProducto> anterior = vivo;
+            vivo = Sinks.many().multicast().directBestEffort();
+            anterior.tryEmitError(error);
+        }
+
+        // * El oplog roto: ningun token viejo sirve para reanudar
+        void perderHistoria() {
+            sinHistoria = true;
+        }
+
+        private static MongoCommandException historiaPerdida(String token) {
+            return new MongoCommandException(new BsonDocument("ok", new BsonInt32(0))
+                    .append("code", new BsonInt32(286))
+                    .append("codeName", new BsonString("ChangeStreamHistoryLost"))
+                    .append("errmsg", new BsonString("Resume token " + token + " no esta en el oplog")), new ServerAddress());
+        }
+    }
+
+    private final OplogFalso oplog = new OplogFalso();
+
+    private FeedProductos feed(int historial, int buffer) {
+        return new FeedProductos(oplog::cambios, historial, buffer, Duration.ofMinutes(1));
+    }
+
+    private static List<String> tokens(List<EventoProducto> eventos) {
+        return eventos.stream().map(EventoProducto::token).toList();
+    }
+
+    private static void esperar(BooleanSupplier condicion) throws InterruptedException {
+        // * Con el backoff de 1s y jitter, dos reconexiones seguidas pueden tardar hasta 4.5s
+        long limite = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condicion.getAsBoolean() && System.nanoTime() < limite) {
+            Thread.sleep(10);
+        }
+        assertThat(condicion.getAsBoolean()).isTrue();
+    }
+
+    @Test
+    void todosLosClientesCompartenUnSoloChangeStream() {
+        FeedProductos feed = feed(100, 16);
+        List<EventoProducto> primero = new CopyOnWriteArrayList<>();
+        List<EventoProducto> segundo = new CopyOnWriteArrayList<>();
+        Disposable uno = feed.suscribir(null).subscribe(primero::add);
+        Disposable dos = feed.suscribir(null).subscribe(segundo::add);
+
+        oplog.insertar(3);
+
+        assertThat(tokens(primero)).containsExactly("t1", "t2", "t3");
+        assertThat(tokens(segundo)).containsExactly("t1", "t2", "t3");
+        assertThat(primero).extracting(EventoProducto::secuencia).containsExactly(1L, 2L, 3L);
+        assertThat(oplog.suscripciones.get()).isEqualTo(1);
+        assertThat(feed.estadisticas()).containsEntry("clientes", 2);
+        uno.dispose();
+        dos.dispose();
+    }
+
+    @Test
+    void unClienteLentoPierdeLosMasViejosSinFrenarAlResto() {
+        FeedProductos feed = feed(100, 4);
+        List<EventoProducto> rapido = new CopyOnWriteArrayList<>();
+        List<EventoProducto> lento = new CopyOnWriteArrayList<>();
+        Disposable uno = feed.suscribir(null).subscribe(rapido::add);
+        BaseSubscriber<EventoProducto> dos = new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(org.reactivestreams.Subscription subscription) {
+                // * No pide nada hasta que se le indique
+            }
+
+            @Override
+            protected void hookOnNext(EventoProducto evento) {
+                lento.add(evento);
+            }
+        };
+        feed.suscribir(null).subscribe(dos);
+
+        oplog.insertar(10);
+        assertThat(rapido).hasSize(10);
+        assertThat(lento).isEmpty();
+
+        dos.request(10);
+        assertThat(tokens(lento)).containsExactly("t7", "t8", "t9", "t10");
+        assertThat(feed.estadisticas()).containsEntry("descartados", 6L);
+        uno.dispose();
+        dos.dispose();
+    }
+
+    @Test
+    void alReconectarseConUnTokenRecienteRecibeLoQueSePerdioDesdeMemoria() {
+        FeedProductos feed = feed(100, 16);
+        List<EventoProducto> antes = new CopyOnWriteArrayList<>();
+        Disposable conexion = feed.suscribir(null).subscribe(antes::add);
+        oplog.insertar(3);
+        conexion.dispose();
+
+        // * Sin clientes el change stream sigue abierto durante la gracia
+        oplog.insertar(2);
+
+        List<EventoProducto> despues = new CopyOnWriteArrayList<>();
+        Disposable reconexion = feed.suscribir(antes.get(antes.size() - 1).token()).subscribe(despues::add);
+        oplog.insertar(1);
+
+        assertThat(tokens(despues)).containsExactly("t4", "t5", "t6");
+        assertThat(oplog.suscripciones.get()).isEqualTo(1);
+        reconexion.dispose();
+    }
+
+    @Test
+    void unTokenQueYaNoEstaEnMemoriaSeReanudaEnMongo() {
+        FeedProductos feed = feed(2, 16);
+        Disposable conexion = feed.suscribir(null).subscribe();
+        oplog.insertar(5);
+
+        List<EventoProducto> despues = new CopyOnWriteArrayList<>();
+        Disposable reconexion = feed.suscribir("t1").subscribe(despues::add);
+
+        assertThat(tokens(despues)).containsExactly("t2", "t3", "t4", "t5");
+        assertThat(oplog.reanudaciones).containsExactly("null", "t1");
+        assertThat(feed.estadisticas()).containsEntry("reanudacionesPropias", 1L);
+        conexion.dispose();
+        reconexion.dispose();
+    }
+
+    @Test
+    void siSeCortaElChangeStreamSeReanudaDespuesDelUltimoToken() throws InterruptedException {
+        FeedProductos feed = feed(100, 16);
+        List<EventoProducto> recibidos = new CopyOnWriteArrayList<>();
+        Disposable conexion = feed.suscribir(null).subscribe(recibidos::add);
+        oplog.insertar(2);
+
+        oplog.cortar();
+        // * Llegan mientras el feed espera el backoff para reconectarse
+        oplog.insertar(2);
+
+        esperar(() -> oplog.suscripciones.get() == 2);
+        oplog.insertar(1);
+        esperar(() -> recibidos.size() == 5);
+
+        assertThat(tokens(recibidos)).containsExactly("t1", "t2", "t3", "t4", "t5");
+        assertThat(oplog.reanudaciones).containsExactly("null", "t2");
+        assertThat(feed.estadisticas()).containsEntry("reconexionesFuente", 1L);
+        conexion.dispose();
+    }
+
+    @Test
+    void siElTokenYaNoEstaEnElOplogSeReabreDesdeAhora() throws InterruptedException {
+        FeedProductos feed = feed(100, 16);
+        List<EventoProducto> recibidos = new CopyOnWriteArrayList<>();
+        Disposable conexion = feed.suscribir(null).subscribe(recibidos::add);
+        oplog.insertar(2);
+
+        oplog.perderHistoria();
+        oplog.cortar();
+
+        // * Reanudar despues de t2 falla con 286: no se insiste con ese token, se reabre sin token
+        esperar(() -> oplog.suscripciones.get() == 3);
+        oplog.insertar(1);
+        esperar(() -> recibidos.size() == 3);
+
+        assertThat(tokens(recibidos)).containsExactly("t1", "t2", "t3");
+        assertThat(oplog.reanudaciones).containsExactly("null", "t2", "null");
+        assertThat(feed.estadisticas()).containsEntry("huecos", 1L).containsEntry("reconexionesFuente", 2L);
+        conexion.dispose();
+    }
+
+    @Test
+    void unErrorQueNoEsDeReanudacionLlegaALosClientes() throws InterruptedException {
+        FeedProductos feed = feed(100, 16);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        feed.suscribir(null).subscribe(evento -> {
+        }, error::set);
+        oplog.insertar(1);
+
+        oplog.fallar(new IllegalStateException("Sin permisos sobre la coleccion"));
+
+        esperar(() -> error.get() != null);
+        assertThat(error.get()).hasMessage("Sin permisos sobre la coleccion");
+        assertThat(oplog.suscripciones.get()).isEqualTo(1);
+        assertThat(feed.estadisticas()).containsEntry("reconexionesFuente", 0L);
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.springbootwebfluxapirest.services;
+
+import com.example.springbootwebfluxapirest.models.documents.Producto;
+import com.example.springbootwebfluxapirest.models.dto.Sugerencia;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IndiceProductosTest {
+
+    private IndiceProductos indice;
+
+    @BeforeEach
+    void setUp() {
+        indice = new IndiceProductos();
+        indice.actualizar(producto("1", "Sony Cámara HD Digital"));
+        indice.actualizar(producto("2", "Sony Notebook"));
+        indice.actualizar(producto("3", "HP Notebook Omen 17"));
+        indice.actualizar(producto("4", "Mica Cómoda 5 Cajones"));
+    }
+
+    private static Producto producto(String id, String nombre) {
+        Producto producto = new Producto(nombre, 10.0);
+        producto.setId(id);
+        return producto;
+    }
+
+    private static Object[] ids(List<Sugerencia> sugerencias) {
+        return sugerencias.stream().map(Sugerencia::id).toArray();
+    }
+
+    @Test
+    void buscaPorPrefijoDeCualquierPalabraSinAcentosNiMayusculas() {
+        assertThat(ids(indice.sugerir("NOTE", 10))).containsExactlyInAnyOrder("2", "3");
+        assertThat(ids(indice.sugerir("cama", 10))).containsExactly("1");
+        assertThat(ids(indice.sugerir("cómo", 10))).containsExactly("4");
+        assertThat(indice.sugerir("camara", 10).get(0).nombre()).isEqualTo("Sony Cámara HD Digital");
+        assertThat(indice.sugerir("xbox", 10)).isEmpty();
+        assertThat(indice.sugerir("  ", 10)).isEmpty();
+    }
+
+    @Test
+    void conVariasPalabrasTodasTienenQueAparecer() {
+        assertThat(ids(indice.sugerir("sony note", 10))).containsExactly("2");
+        assertThat(ids(indice.sugerir("note so", 10))).containsExactly("2");
+        assertThat(indice.sugerir("sony omen", 10)).isEmpty();
+    }
+
+    @Test
+    void respetaElLimite() {
+        for (int i = 0; i < 100; i++) {
+            indice.actualizar(producto("p" + i, "Producto " + i));
+        }
+
+        assertThat(indice.sugerir("pro", 10)).hasSize(10);
+        assertThat(indice.sugerir("producto 4", 100)).hasSize(11);
+    }
+
+    @Test
+    void renombrarYEliminarActualizanElIndice() {
+        indice.actualizar(producto("2", "Sony Vaio"));
+        indice.eliminar("3");
+
+        assertThat(indice.sugerir("note", 10)).isEmpty();
+        assertThat(ids(indice.sugerir("vaio", 10))).containsExactly("2");
+        assertThat(indice.estadisticas()).containsEntry("productos", 3);
+        // * "hp", "notebook", "omen" y "17" ya no tienen productos
+        assertThat(indice.estadisticas()).containsEntry("palabras", 9);
+    }
+
+    @Test
+    void reconstruirReemplazaElIndiceConLoQueHayEnMongo() {
+        ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+        when(mongoTemplate.find(any(Query.class), eq(Producto.class)))
+                .thenReturn(Flux.just(producto("10", "Apple iPod"), producto("11", "Apple Watch")));
+        ReflectionTestUtils.setField(indice, "mongoTemplate", mongoTemplate);
+
+        assertThat(indice.reconstruir().block()).isEqualTo(2L);
+
+        assertThat(ids(indice.sugerir("app", 10))).containsExactlyInAnyOrder("10", "11");
+        assertThat(indice.sugerir("sony", 10)).isEmpty();
+    }
+
+    @Test
+    void loQueCambiaDuranteLaReconstruccionNoLoPisaElCursor() {
+        ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+        // * El cursor ya leyo 10 y 11 pero los emite despues de que se renombro 10 y se borro 11
+        when(mongoTemplate.find(any(Query.class), eq(Producto.class))).thenReturn(Flux.defer(() -> {
+            indice.actualizar(producto("10", "Apple iPhone"));
+            indice.eliminar("11");
+            return Flux.just(producto("10", "Apple iPod"), producto("11", "Apple Watch"), producto("12", "Apple TV"));
+        }));
+        ReflectionTestUtils.setField(indice, "mongoTemplate", mongoTemplate);
+
+        indice.reconstruir().block();
+
+        assertThat(ids(indice.sugerir("app", 10))).containsExactlyInAnyOrder("10", "12");
+        assertThat(ids(indice.sugerir("iphone", 10))).containsExactly("10");
+        assertThat(indice.sugerir("ipod", 10)).isEmpty();
+        assertThat(indice.sugerir("watch", 10)).isEmpty();
+
+        // * Pasada la reconstruccion el cursor de la siguiente vuelve a mandar
+        when(mongoTemplate.find(any(Query.class), eq(Producto.class))).thenReturn(Flux.just(producto("11", "Apple Watch")));
+        indice.reconstruir().block();
+        assertThat(ids(indice.sugerir("watch", 10))).containsExactly("11");
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.springbootwebfluxapirest.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MetricasFlujosTest {
+
+    private final SimpleMeterRegistry registro = new SimpleMeterRegistry();
+    private final MetricasFlujos metricas = new MetricasFlujos(registro);
+
+    @Test
+    void registraSuscripcionesElementosYDemanda() {
+        Flux<Integer> flujo = metricas.servicio("findAll", Flux.range(1, 10));
+
+        StepVerifier.create(flujo).expectNextCount(10).verifyComplete();
+        StepVerifier.create(flujo, 4).expectNextCount(4).thenCancel().verify();
+
+        assertEquals(2, registro.get("productos.servicio.subscribed").tag("operacion", "findAll").counter().count());
+        assertEquals(14, registro.get("productos.servicio.onNext.delay").tag("operacion", "findAll").timer().count());
+        assertEquals(1, registro.get("productos.servicio.flow.duration")
+                .tags("operacion", "findAll", "status", "completed").timer().count());
+        assertEquals(1, registro.get("productos.servicio.flow.duration")
+                .tags("operacion", "findAll", "status", "cancelled").timer().count());
+        assertEquals(2, registro.get("productos.servicio.requested").tag("operacion", "findAll").summary().count());
+    }
+
+    @Test
+    void registraErroresPorTipo() {
+        StepVerifier.create(metricas.controlador("ver", Mono.error(new IllegalStateException("Mongo no responde"))))
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        assertEquals(1, registro.get("productos.controlador.flow.duration")
+                .tags("operacion", "ver", "status", "error", "exception", "java.lang.IllegalStateException")
+                .timer().count());
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.springbootwebfluxapirest.services;
+
+import com.example.springbootwebfluxapirest.models.documents.Producto;
+import com.example.springbootwebfluxapirest.models.dto.EstadisticaCategoria;
+import com.example.springbootwebfluxapirest.models.dto.FiltroProducto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProductoServiceCacheTest {
+
+    private ProductoServiceImpl delegado;
+    private ProductoServiceCache cache;
+    private AtomicInteger consultas;
+
+    @BeforeEach
+    void setUp() {
+        delegado = mock(ProductoServiceImpl.class);
+        cache = new ProductoServiceCache(100, Duration.ofMinutes(5), Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(cache, "delegado", delegado);
+
+        consultas = new AtomicInteger();
+        when(delegado.findById("1")).thenReturn(Mono.fromSupplier(() -> {
+            consultas.incrementAndGet();
+            Producto producto = new Producto("TV", 10.0);
+            producto.setId("1");
+            return producto;
+        }).delayElement(Duration.ofMillis(100)));
+    }
+
+    @Test
+    void fallosConcurrentesCompartenUnaConsulta() {
+        StepVerifier.create(Mono.zip(cache.findById("1"), cache.findById("1")))
+                .expectNextCount(1)
+                .verifyComplete();
+        StepVerifier.create(cache.findById("1"))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertEquals(1, consultas.get());
+    }
+
+    @Test
+    void saveInvalidaLaEntrada() {
+        Producto producto = new Producto("TV", 20.0);
+        producto.setId("1");
+        when(delegado.save(any())).thenReturn(Mono.just(producto));
+
+        cache.findById("1").block();
+        cache.save(producto).block();
+        cache.findById("1").block();
+
+        assertEquals(2, consultas.get());
+    }
+
+    @Test
+    void cadaLecturaEsUnaCopia() {
+        Producto leido = cache.findById("1").block();
+        leido.setFoto("otra.jpg");
+        leido.setVariantes(null);
+
+        Producto otraLectura = cache.findById("1").block();
+
+        assertNull(otraLectura.getFoto());
+        assertEquals(1, consultas.get());
+    }
+
+    @Test
+    void unSaveFallidoTambienInvalida() {
+        Producto producto = new Producto("TV", 20.0);
+        producto.setId("1");
+        when(delegado.save(any())).thenReturn(Mono.error(new IllegalStateException("mongo caido")));
+
+        cache.findById("1").block();
+        StepVerifier.create(cache.save(producto)).verifyError(IllegalStateException.class);
+        cache.findById("1").block();
+
+        assertEquals(2, consultas.get());
+    }
+
+    @Test
+    void lasEstadisticasSeReusanPorFiltro() {
+        AtomicInteger agregaciones = new AtomicInteger();
+        when(delegado.estadisticasPorCategoria(any())).thenAnswer(invocation -> Flux.defer(() -> {
+            agregaciones.incrementAndGet();
+            return Flux.just(new EstadisticaCategoria(), new EstadisticaCategoria());
+        }).delaySubscription(Duration.ofMillis(100)));
+        FiltroProducto filtro = new FiltroProducto();
+        filtro.setCategoriaId("c1");
+        FiltroProducto mismoFiltro = new FiltroProducto();
+        mismoFiltro.setCategoriaId("c1");
+
+        StepVerifier.create(Flux.merge(cache.estadisticasPorCategoria(filtro), cache.estadisticasPorCategoria(mismoFiltro)))
+                .expectNextCount(4)
+                .verifyComplete();
+        assertEquals(1, agregaciones.get());
+
+        cache.estadisticasPorCategoria(new FiltroProducto()).blockLast();
+        assertEquals(2, agregaciones.get());
+    }
+
+    @Test
+    void noGuardaProductosInexistentes() {
+        when(delegado.findById("2")).thenReturn(Mono.empty());
+
+        StepVerifier.create(cache.findById("2")).verifyComplete();
+
+        Map<?, ?> productos = (Map<?, ?>) cache.estadisticas().get("productos");
+        assertEquals(0L, productos.get("tamano"));
+    }
+}
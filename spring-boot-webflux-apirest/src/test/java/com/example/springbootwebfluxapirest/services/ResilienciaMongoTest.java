@@ -0,0 +1,208 @@
+package com.example.springbootwebfluxapirest.services;
+
+import com.example.springbootwebfluxapirest.models.dao.CategoriaDao;
+import com.example.springbootwebfluxapirest.models.dao.ProductoDao;
+import com.example.springbootwebfluxapirest.models.documents.Categoria;
+import com.example.springbootwebfluxapirest.models.documents.Producto;
+import com.example.springbootwebfluxapirest.models.dto.ResultadoBulk;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// * Mongo falso: los DAO son mocks que devuelven publishers que fallan (o se cuelgan) las primeras N suscripciones
+class ResilienciaMongoTest {
+
+    private ProductoDao dao;
+    private CategoriaDao categoriaDao;
+    private ReactiveMongoTemplate mongoTemplate;
+    private MeterRegistry registro;
+    private ProductoServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        dao = mock(ProductoDao.class);
+        categoriaDao = mock(CategoriaDao.class);
+        mongoTemplate = mock(ReactiveMongoTemplate.class);
+        registro = new SimpleMeterRegistry();
+        // * timeout 100ms, 2 reintentos de 10-50ms, circuito de 4 llamadas que se abre con 50% de fallos
+        ResilienciaMongo resiliencia = new ResilienciaMongo(registro, Duration.ofMillis(100), Duration.ofMillis(100), 2,
+                Duration.ofMillis(10), Duration.ofMillis(50), 0.5, 50, 4, Duration.ofSeconds(30));
+        service = new ProductoServiceImpl();
+        ReflectionTestUtils.setField(service, "dao", dao);
+        ReflectionTestUtils.setField(service, "categoriaDao", categoriaDao);
+        ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(service, "resiliencia", resiliencia);
+        ReflectionTestUtils.setField(service, "metricas", new MetricasFlujos(registro));
+        ReflectionTestUtils.setField(service, "categorias", new ResolutorCategorias(false, 500, Duration.ofMinutes(5)));
+        ReflectionTestUtils.setField(service, "indice", new IndiceProductos());
+    }
+
+    private static <T> Mono<T> fallaLasPrimeras(int fallos, AtomicInteger suscripciones, T valor) {
+        return Mono.defer(() -> suscripciones.incrementAndGet() <= fallos
+                ? Mono.error(new DataAccessResourceFailureException("Mongo no responde"))
+                : Mono.just(valor));
+    }
+
+    private double contador(String nombre) {
+        return registro.get(nombre).counter().count();
+    }
+
+    private double circuito(CircuitBreaker.State estado) {
+        return registro.get("resilience4j.circuitbreaker.state").tag("state", estado.name().toLowerCase()).gauge().value();
+    }
+
+    @Test
+    void lecturaSeReintentaHastaQueMongoResponde() {
+        AtomicInteger suscripciones = new AtomicInteger();
+        when(dao.findById("1")).thenReturn(fallaLasPrimeras(2, suscripciones, new Producto("TV", 10.0)));
+
+        StepVerifier.create(service.findById("1"))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertEquals(3, suscripciones.get());
+        assertEquals(2, contador(ResilienciaMongo.REINTENTOS));
+    }
+
+    @Test
+    void lecturaColgadaTerminaPorTimeout() {
+        AtomicInteger suscripciones = new AtomicInteger();
+        when(dao.findById("1")).thenReturn(Mono.<Producto>never().doOnSubscribe(s -> suscripciones.incrementAndGet()));
+
+        StepVerifier.create(service.findById("1"))
+                .expectError(TimeoutException.class)
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(3, suscripciones.get());
+        assertEquals(3, contador(ResilienciaMongo.TIMEOUTS));
+    }
+
+    @Test
+    void escrituraNoSeReintenta() {
+        AtomicInteger suscripciones = new AtomicInteger();
+        Producto producto = new Producto("TV", 10.0);
+        when(dao.save(any())).thenReturn(fallaLasPrimeras(1, suscripciones, producto));
+
+        StepVerifier.create(service.save(producto))
+                .expectError(DataAccessResourceFailureException.class)
+                .verify();
+
+        assertEquals(1, suscripciones.get());
+    }
+
+    @Test
+    void erroresQueNoSonDeMongoNiSeReintentanNiAbrenElCircuito() {
+        AtomicInteger suscripciones = new AtomicInteger();
+        when(dao.findById("1")).thenReturn(Mono.defer(() -> {
+            suscripciones.incrementAndGet();
+            return Mono.error(new IllegalArgumentException("id invalido"));
+        }));
+
+        for (int i = 0; i < 5; i++) {
+            StepVerifier.create(service.findById("1")).expectError(IllegalArgumentException.class).verify();
+        }
+
+        assertEquals(5, suscripciones.get());
+        assertEquals(1, circuito(CircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    void conMongoCaidoElCircuitoSeAbreYFallaRapido() throws InterruptedException {
+        AtomicInteger suscripciones = new AtomicInteger();
+        when(dao.findById("1")).thenReturn(fallaLasPrimeras(Integer.MAX_VALUE, suscripciones, null));
+
+        // * Una llamada con sus 2 reintentos ya completa la ventana de 4 con 3 fallos
+        StepVerifier.create(service.findById("1")).expectError(DataAccessResourceFailureException.class).verify();
+        StepVerifier.create(service.findById("1")).expectError().verify();
+        assertEquals(1, circuito(CircuitBreaker.State.OPEN));
+
+        int antes = suscripciones.get();
+        StepVerifier.create(service.findById("1"))
+                .expectError(CallNotPermittedException.class)
+                .verify(Duration.ofMillis(50));
+
+        assertEquals(antes, suscripciones.get());
+        assertTrue(contador("resilience4j.circuitbreaker.not.permitted.calls") >= 1);
+        Thread.sleep(20);
+        assertTrue(registro.get(ResilienciaMongo.TIEMPO_ABIERTO).functionCounter().count() >= 0.02);
+    }
+
+    @Test
+    void fluxSoloSeReintentaAntesDelPrimerElemento() {
+        AtomicInteger antes = new AtomicInteger();
+        when(categoriaDao.findAll()).thenReturn(fallaLasPrimeras(1, antes, new Categoria("Deportes")).flux());
+
+        StepVerifier.create(service.findAllCategoria())
+                .expectNextCount(1)
+                .verifyComplete();
+        assertEquals(2, antes.get());
+
+        // * Si ya se emitio algo, reintentar duplicaria elementos: el error llega al cliente
+        AtomicInteger despues = new AtomicInteger();
+        when(categoriaDao.findAll()).thenReturn(Flux.defer(() -> {
+            despues.incrementAndGet();
+            return Flux.concat(Flux.just(new Categoria("Muebles")),
+                    Flux.error(new DataAccessResourceFailureException("Mongo no responde")));
+        }));
+
+        StepVerifier.create(service.findAllCategoria())
+                .expectNextCount(1)
+                .expectError(DataAccessResourceFailureException.class)
+                .verify();
+        assertEquals(1, despues.get());
+    }
+
+    @Test
+    void unLoteQueFallaEnteroDevuelveUn5xxPorProducto() {
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+        converter.afterPropertiesSet();
+        when(mongoTemplate.getConverter()).thenReturn(converter);
+        when(mongoTemplate.getCollectionName(Producto.class)).thenReturn("productos");
+        when(mongoTemplate.getCollection("productos")).thenReturn(Mono.error(new DataAccessResourceFailureException("Mongo no responde")));
+
+        // * El error no corta el flujo: un resultado por producto y el stream completa
+        List<ResultadoBulk> resultados = service.saveAll(List.of(new Producto("TV", 10.0), new Producto("Radio", 20.0)))
+                .collectList()
+                .block();
+        assertThat(resultados).hasSize(2).allSatisfy(r -> {
+            assertThat(r.getStatus()).isEqualTo(500);
+            assertThat(r.getId()).isNotNull();
+            assertThat(r.getErrors()).containsExactly("Mongo no responde");
+            assertThat(r.getTimestamp()).isNotNull();
+        });
+
+        // * Con el circuito abierto ni se intenta: 503
+        when(dao.findById("1")).thenReturn(fallaLasPrimeras(Integer.MAX_VALUE, new AtomicInteger(), null));
+        StepVerifier.create(service.findById("1")).expectError().verify();
+        StepVerifier.create(service.findById("1")).expectError().verify();
+        assertEquals(1, circuito(CircuitBreaker.State.OPEN));
+
+        StepVerifier.create(service.saveAll(List.of(new Producto("Reloj", 30.0))))
+                .assertNext(r -> assertEquals(503, r.getStatus()))
+                .verifyComplete();
+    }
+}
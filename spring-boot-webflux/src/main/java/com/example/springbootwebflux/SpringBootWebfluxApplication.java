@@ -4,11 +4,16 @@ import com.example.springbootwebflux.models.documents.Categoria;
 import com.example.springbootwebflux.models.documents.Producto;
 import com.example.springbootwebflux.models.services.ProductoService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.Date;
 
@@ -21,6 +26,9 @@ public class SpringBootWebfluxApplication implements CommandLineRunner {
     @Autowired
     private ReactiveMongoTemplate mongoTemplate;
 
+    @Value("${config.carga.habilitada:true}")
+    private boolean cargaHabilitada;
+
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(SpringBootWebfluxApplication.class);
 
     public static void main(String[] args) {
@@ -29,15 +37,18 @@ public class SpringBootWebfluxApplication implements CommandLineRunner {
 
     @Override
     public void run(String... args) throws Exception {
-        mongoTemplate.dropCollection("productos").subscribe();
-        mongoTemplate.dropCollection("categorias").subscribe();
-
+        if (!cargaHabilitada) {
+            return;
+        }
         Categoria electrónica = new Categoria("Electrónica");
         Categoria deportes = new Categoria("Deportes");
         Categoria jardín = new Categoria("Jardín");
         Categoria muebles = new Categoria("Muebles");
 
-        Flux.just(electrónica, deportes, jardín, muebles)
+        // * Se espera a que terminen los drop y se vuelven a crear los indices antes de insertar
+        Mono.when(mongoTemplate.dropCollection("productos"), mongoTemplate.dropCollection("categorias"))
+                .then(crearIndices())
+                .thenMany(Flux.just(electrónica, deportes, jardín, muebles))
                 .flatMap(productoService::saveCategoria)
                 .doOnNext(categoria -> {
                     log.info("Categoria creada: " + categoria.getNombre() + " Id: " + categoria.getId());
@@ -59,4 +70,14 @@ public class SpringBootWebfluxApplication implements CommandLineRunner {
                     return productoService.save(producto);
                 }).subscribe(producto -> log.info("Insert: " + producto.getId() + " " + producto.getNombre()));
     }
+
+    // * Los indices declarados en Producto (@Indexed, @CompoundIndex) los crea Spring Data al arrancar
+    // * (spring.data.mongodb.auto-index-creation) pero se pierden al borrar la coleccion
+    private Mono<Void> crearIndices() {
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+        ReactiveIndexOperations indexOps = mongoTemplate.indexOps(Producto.class);
+        return Flux.fromIterable(resolver.resolveIndexFor(Producto.class))
+                .concatMap(indexOps::ensureIndex)
+                .then();
+    }
 }
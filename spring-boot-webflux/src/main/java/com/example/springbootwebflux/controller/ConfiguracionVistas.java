@@ -0,0 +1,56 @@
+package com.example.springbootwebflux.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Scope;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import org.thymeleaf.spring6.view.reactive.ThymeleafReactiveView;
+
+// * Una vista por modo de listado, todas sobre la plantilla listar, cada una con su tamaño de chunk
+// * (config.vistas.<modo>.chunk, en bytes; 0 = sin limite, se escribe todo lo renderizado en cada flush).
+// * spring.thymeleaf.reactive.max-chunk-size es uno solo para todas las vistas: ThymeleafReactiveViewResolver respeta
+// * el chunk de una vista si hay un bean prototype con el nombre de la vista (si no es prototype crea otra vista y lo pierde).
+// * Es WebFluxConfigurer para que tambien se cargue en los @WebFluxTest
+@Configuration
+public class ConfiguracionVistas implements WebFluxConfigurer {
+
+    public static final String LISTAR_FULL = "listar-full";
+    public static final String LISTAR_CHUNKED = "listar-chunked";
+    public static final String LISTAR_DATADRIVER = "listar-datadriver";
+
+    @Value("${config.vistas.full.chunk:0}")
+    private int chunkFull;
+
+    @Value("${config.vistas.chunked.chunk:8192}")
+    private int chunkChunked;
+
+    @Value("${config.vistas.datadriver.chunk:0}")
+    private int chunkDataDriver;
+
+    @Bean(LISTAR_FULL)
+    @Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
+    public ThymeleafReactiveView listarFull() {
+        return vista("listar", chunkFull);
+    }
+
+    @Bean(LISTAR_CHUNKED)
+    @Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
+    public ThymeleafReactiveView listarChunked() {
+        return vista("listar-chunked", chunkChunked);
+    }
+
+    @Bean(LISTAR_DATADRIVER)
+    @Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
+    public ThymeleafReactiveView listarDataDriver() {
+        return vista("listar", chunkDataDriver);
+    }
+
+    private ThymeleafReactiveView vista(String plantilla, int chunk) {
+        ThymeleafReactiveView vista = new ThymeleafReactiveView();
+        vista.setTemplateName(plantilla);
+        vista.setResponseMaxChunkSizeBytes(chunk > 0 ? chunk : Integer.MAX_VALUE);
+        return vista;
+    }
+}
@@ -2,13 +2,24 @@ package com.example.springbootwebflux.controller;
 
 import com.example.springbootwebflux.models.documents.Categoria;
 import com.example.springbootwebflux.models.documents.Producto;
+import com.example.springbootwebflux.models.dto.ProductoVista;
+import com.example.springbootwebflux.models.services.AlmacenFotos;
+import com.example.springbootwebflux.models.services.LogMuestreado;
+import com.example.springbootwebflux.models.services.MetricasFlujos;
+import com.example.springbootwebflux.models.services.MiniaturaService;
 import com.example.springbootwebflux.models.services.ProductoService;
+import jakarta.annotation.PostConstruct;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.stereotype.Controller;
@@ -19,13 +30,14 @@ import org.springframework.web.bind.support.SessionStatus;
 import org.thymeleaf.spring6.context.webflux.ReactiveDataDriverContextVariable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
-import java.net.MalformedURLException;
+import java.net.URI;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.Date;
-import java.util.UUID;
 import java.util.logging.Logger;
 
 @SessionAttributes("producto")
@@ -34,31 +46,107 @@ public class ProductoController {
     @Autowired
     private ProductoService productoService;
 
+    @Autowired
+    private MiniaturaService miniaturaService;
+
+    @Autowired
+    private AlmacenFotos almacenFotos;
+
+    @Autowired
+    private MetricasFlujos metricas;
+
     @Value("${config.uploads.path}")
     private String path;
 
+    @Value("${config.uploads.cache-max-age:365d}")
+    private Duration cacheMaxAge;
+
+    @Value("${config.log.muestreo:100}")
+    private long muestreoLog;
+
+    // * Productos por buffer del data driver en cada listado: Thymeleaf renderiza y escribe (flush) de a un buffer,
+    // * con buffers chicos se paga el costo de cada flush por muy pocas filas. Se puede pisar con ?buffer=
+    @Value("${config.vistas.full.buffer:1000}")
+    private int bufferFull;
+
+    @Value("${config.vistas.chunked.buffer:1000}")
+    private int bufferChunked;
+
+    @Value("${config.vistas.datadriver.buffer:2}")
+    private int bufferDataDriver;
+
+    @Value("${config.vistas.buffer-maximo:10000}")
+    private int bufferMaximo;
+
+    @Value("${config.vistas.datadriver.retraso:1s}")
+    private Duration retrasoDataDriver;
+
     private static final Logger log = Logger.getLogger(ProductoController.class.getName());
 
-    @ModelAttribute("categorias")
-    private Flux<Categoria> categorias() {
-        return productoService.findAllCategoria();
+    // * Los listados logueaban cada producto: se escribe 1 de cada config.log.muestreo
+    private LogMuestreado logProductos;
+
+    @PostConstruct
+    void iniciarLog() {
+        logProductos = new LogMuestreado(log, muestreoLog);
     }
 
-    @GetMapping("/uploads/img/{nombReFoto:.+}")
-    public Mono<ResponseEntity<Resource>> verFoto(@PathVariable String nombreFoto) throws MalformedURLException {
-        Path ruta = Paths.get(path).resolve(nombreFoto).toAbsolutePath();
-        Resource imagen = new UrlResource(ruta.toUri());
-        return Mono.just(ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + imagen.getFilename() + "\"")
-                .body(imagen));
+    // * Solo en las vistas del formulario: con @ModelAttribute se consultaban las categorias en cada peticion
+    // * (listados, fotos, redirecciones) aunque la vista no las usara
+    private void agregarCategorias(Model model) {
+        model.addAttribute("categorias", productoService.findAllCategoria());
+    }
+
+    // * El Resource lo escribe ResourceHttpMessageWriter: usa sendfile (zero-copy) y responde a Range con 206.
+    // * Con ETag y Last-Modified el ResponseEntityResultHandler contesta 304 a If-None-Match / If-Modified-Since.
+    // * Cada nombre (original o variante) es un archivo fijo, asi que se puede guardar como immutable.
+    // * Con ?ancho= se redirige al nombre de la miniatura mas pequeña que lo cubra (ver fotoPorAncho)
+    @GetMapping("/uploads/img/{nombreFoto:.+}")
+    public Mono<ResponseEntity<Resource>> verFoto(@PathVariable String nombreFoto, @RequestParam(required = false) Integer ancho) {
+        if (ancho != null) {
+            return fotoPorAncho(nombreFoto, ancho);
+        }
+        return Mono.fromCallable(() -> {
+                    Path raiz = Paths.get(path).toAbsolutePath().normalize();
+                    Path ruta = raiz.resolve(nombreFoto).normalize();
+                    if (!ruta.startsWith(raiz) || !Files.isRegularFile(ruta)) {
+                        return ResponseEntity.notFound().<Resource>build();
+                    }
+                    long modificado = Files.getLastModifiedTime(ruta).toMillis();
+                    long tamano = Files.size(ruta);
+                    return ResponseEntity.ok()
+                            .contentType(MediaTypeFactory.getMediaType(ruta.getFileName().toString())
+                                    .orElse(MediaType.APPLICATION_OCTET_STREAM))
+                            .eTag(Long.toHexString(modificado) + "-" + Long.toHexString(tamano))
+                            .lastModified(modificado)
+                            .header(HttpHeaders.CACHE_CONTROL, CacheControl.maxAge(cacheMaxAge).cachePublic().getHeaderValue() + ", immutable")
+                            .<Resource>body(new FileSystemResource(ruta));
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    // * La variante sale de Producto.variantes. Mientras se generan la respuesta es la original: la redireccion va
+    // * con no-cache para que el navegador vuelva a preguntar y no se quede con la foto grande bajo esta URL.
+    // * Con las variantes ya guardadas la eleccion no cambia (el nombre es el hash del contenido) y se cachea
+    private Mono<ResponseEntity<Resource>> fotoPorAncho(String nombreFoto, int ancho) {
+        return productoService.findByFoto(nombreFoto)
+                .map(producto -> ResponseEntity.status(HttpStatus.FOUND)
+                        .location(URI.create("/uploads/img/" + miniaturaService.variante(producto, ancho)))
+                        .cacheControl(producto.getVariantes() != null
+                                ? CacheControl.maxAge(cacheMaxAge).cachePublic()
+                                : CacheControl.noCache())
+                        .<Resource>build())
+                .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
     @GetMapping("/ver/{id}")
     public Mono<String> ver(@PathVariable String id, Model model) {
-        return productoService.findById(id)
+        return metricas.controlador("ver", productoService.findById(id))
                 .doOnNext(prod -> {
                     log.info("Producto: " + prod.getNombre());
                     model.addAttribute("producto", prod);
+                    // * Directo al archivo de la miniatura, sin pasar por la redireccion de ?ancho=
+                    model.addAttribute("foto", miniaturaService.variante(prod, 480));
                     model.addAttribute("titulo", "Detalle producto");
                 })
                 .defaultIfEmpty(new Producto())
@@ -74,8 +162,9 @@ public class ProductoController {
 
     @GetMapping({"/listar", "/"})
     public Mono<String> listar(Model model) {
-        Flux<Producto> productos = productoService.findAllNombreUpperCase();
-        productos.subscribe(prod -> log.info(prod.getNombre()));
+        // * El log va dentro del flujo que renderiza Thymeleaf: un subscribe aparte repetia la consulta a Mongo
+        Flux<ProductoVista> productos = metricas.controlador("listar", productoService.findAllNombreUpperCase()
+                .doOnNext(prod -> logProductos.info(prod::nombre)));
 
         model.addAttribute("productos", productos);
         model.addAttribute("titulo", "Listado de productos");
@@ -87,6 +176,7 @@ public class ProductoController {
         model.addAttribute("producto", new Producto());
         model.addAttribute("titulo", "Formulario de productos");
         model.addAttribute("boton", "Crear");
+        agregarCategorias(model);
 
         return Mono.just("form");
     }
@@ -99,6 +189,7 @@ public class ProductoController {
         model.addAttribute("producto", producto);
         model.addAttribute("titulo", "Editar producto");
         model.addAttribute("boton", "Editar");
+        agregarCategorias(model);
         return Mono.just("form");
     }
 
@@ -110,6 +201,7 @@ public class ProductoController {
                     log.info("Producto: " + prod.getNombre());
                     model.addAttribute("producto", prod);
                     model.addAttribute("titulo", "Editar producto");
+                    agregarCategorias(model);
                 })
                 .flatMap(p -> {
                     if (p == null) {
@@ -126,39 +218,39 @@ public class ProductoController {
         if (bindingResult.hasErrors()) {
             model.addAttribute("titulo", "Errores en formulario de productos");
             model.addAttribute("boton", "Guardar");
+            agregarCategorias(model);
             return Mono.just("form");
         } else {
             status.setComplete();
             Mono<Categoria> categoria = productoService.findCategoriaById(producto.getCategoria().getId());
-            return categoria.flatMap(c -> {
+            return metricas.controlador("guardar", categoria.flatMap(c -> {
                         if (producto.getCreateAt() == null) {
                             producto.setCreateAt(new Date());
                         }
-                        if (!file.filename().isEmpty()) {
-                            producto.setFoto(UUID.randomUUID().toString() + "-" + file.filename()
-                                    .replace(" ", "")
-                                    .replace(":", "")
-                                    .replace("\\", ""));
-                        }
                         producto.setCategoria(c);
-                        return productoService.save(producto);
+                        if (file.filename().isEmpty()) {
+                            return productoService.save(producto);
+                        }
+                        // * Primero se guarda la foto (por hash) y despues el producto con el nombre resultante
+                        return almacenFotos.guardar(file)
+                                .flatMap(foto -> {
+                                    producto.setFoto(foto);
+                                    producto.setVariantes(null);
+                                    return productoService.save(producto);
+                                })
+                                .doOnNext(p -> miniaturaService.encolar(p.getId(), p.getFoto()));
                     }).doOnNext(p -> {
                         log.info("Categoria asignada: " + p.getCategoria().getNombre() + " ID: " + p.getCategoria().getId());
                         log.info("Producto guardado: " + p.getNombre() + " ID: " + p.getId());
-                    }).flatMap(p -> {
-                        if (!file.filename().isEmpty()) {
-                            return file.transferTo(new java.io.File(path + p.getFoto()));
-                        } else {
-                            return Mono.empty();
-                        }
-                    })
-                    .thenReturn("redirect:/listar?sucess=producto+guardado+con+exito");
+                    }))
+                    .thenReturn("redirect:/listar?sucess=producto+guardado+con+exito")
+                    .onErrorResume(DataBufferLimitException.class, ex -> Mono.just("redirect:/listar?error=la+foto+supera+el+tamano+maximo"));
         }
     }
 
     @GetMapping("/eliminar/{id}")
     public Mono<String> eliminar(@PathVariable String id) {
-        return productoService.findById(id)
+        return metricas.controlador("eliminar", productoService.findById(id))
                 .defaultIfEmpty(new Producto())
                 .flatMap(p -> {
                     if (p.getId() == null) {
@@ -176,33 +268,40 @@ public class ProductoController {
 
     // * DATA DRIVER -> Permite sacar del flujo una parte de los productos aunque tenga delay
     @GetMapping("/listar-datadriver")
-    public String listarDataDriver(Model model) {
-        Flux<Producto> productos = productoService.findAllNombreUpperCase().delayElements(Duration.ofSeconds(1));
-        productos.subscribe(prod -> log.info(prod.getNombre()));
+    public String listarDataDriver(Model model, @RequestParam(required = false) Integer buffer) {
+        Flux<ProductoVista> productos = productoService.findAllNombreUpperCase();
+        if (!retrasoDataDriver.isZero()) {
+            productos = productos.delayElements(retrasoDataDriver);
+        }
+        productos = metricas.controlador("listarDataDriver", productos.doOnNext(prod -> logProductos.info(prod::nombre)));
 
-        model.addAttribute("productos", new ReactiveDataDriverContextVariable(productos, 2));
+        model.addAttribute("productos", new ReactiveDataDriverContextVariable(productos, tamanoBuffer(buffer, bufferDataDriver)));
         model.addAttribute("titulo", "Listado de productos");
-        return "listar";
+        return ConfiguracionVistas.LISTAR_DATADRIVER;
     }
 
     // * FULL
     // * Hay un parametro TTFB (Time to first byte) significa cuanto tiempo tiene que estar el navegador esperando hasta que llega la primera respuesta
     @GetMapping("/listar-full")
-    public String listarFull(Model model) {
-        Flux<Producto> productos = productoService.findAllNombreUpperCaseRepeat();
+    public String listarFull(Model model, @RequestParam(required = false) Integer buffer) {
+        Flux<ProductoVista> productos = metricas.controlador("listarFull", productoService.findAllNombreUpperCaseRepeat());
 
-        model.addAttribute("productos", new ReactiveDataDriverContextVariable(productos, 2));
+        model.addAttribute("productos", new ReactiveDataDriverContextVariable(productos, tamanoBuffer(buffer, bufferFull)));
         model.addAttribute("titulo", "Listado de productos");
-        return "listar";
+        return ConfiguracionVistas.LISTAR_FULL;
     }
 
     // * CHUNKED -> Configuracion para contrapresion (Es mejor que el full ya que este esta sin configurar)
     @GetMapping("/listar-chunked")
-    public String listarChunked(Model model) {
-        Flux<Producto> productos = productoService.findAllNombreUpperCaseRepeat();
+    public String listarChunked(Model model, @RequestParam(required = false) Integer buffer) {
+        Flux<ProductoVista> productos = metricas.controlador("listarChunked", productoService.findAllNombreUpperCaseRepeat());
 
-        model.addAttribute("productos", new ReactiveDataDriverContextVariable(productos, 2));
+        model.addAttribute("productos", new ReactiveDataDriverContextVariable(productos, tamanoBuffer(buffer, bufferChunked)));
         model.addAttribute("titulo", "Listado de productos");
-        return "listar-chunked";
+        return ConfiguracionVistas.LISTAR_CHUNKED;
+    }
+
+    private int tamanoBuffer(Integer pedido, int defecto) {
+        return pedido != null && pedido > 0 ? Math.min(pedido, bufferMaximo) : defecto;
     }
 }
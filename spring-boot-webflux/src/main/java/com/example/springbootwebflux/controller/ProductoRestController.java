@@ -2,15 +2,33 @@ package com.example.springbootwebflux.controller;
 
 import com.example.springbootwebflux.models.dao.ProductoDao;
 import com.example.springbootwebflux.models.documents.Producto;
+import com.example.springbootwebflux.models.dto.EstadisticaCategoria;
+import com.example.springbootwebflux.models.dto.FiltroProducto;
+import com.example.springbootwebflux.models.dto.Sugerencia;
+import com.example.springbootwebflux.models.services.FeedProductos;
+import com.example.springbootwebflux.models.services.FeedProductos.EventoProducto;
+import com.example.springbootwebflux.models.services.IndiceProductos;
+import com.example.springbootwebflux.models.services.LogMuestreado;
+import com.example.springbootwebflux.models.services.MetricasFlujos;
+import com.example.springbootwebflux.models.services.ProductoServiceCache;
+import com.example.springbootwebflux.models.services.ResolutorCategorias;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.ui.Model;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 @RestController
@@ -19,26 +37,129 @@ public class ProductoRestController {
     @Autowired
     private ProductoDao dao;
 
+    @Autowired
+    private ProductoServiceCache productoServiceCache;
+
+    @Autowired
+    private MetricasFlujos metricas;
+
+    @Autowired
+    private ResolutorCategorias resolutorCategorias;
+
+    @Autowired
+    private FeedProductos feedProductos;
+
+    @Autowired
+    private IndiceProductos indiceProductos;
+
+    @Value("${config.busqueda.limite:20}")
+    private int limiteBusqueda;
+
+    @Value("${config.busqueda.sugerencias:10}")
+    private int limiteSugerencias;
+
+    @Value("${config.log.muestreo:100}")
+    private long muestreoLog;
+
+    @Value("${config.feed.latido:15s}")
+    private Duration latidoFeed;
+
     private static final Logger log = Logger.getLogger(ProductoRestController.class.getName());
 
+    // * Un log.info por producto costaba mas que serializarlo: se escribe 1 de cada config.log.muestreo
+    private LogMuestreado logProductos;
+
+    @PostConstruct
+    void iniciarLog() {
+        logProductos = new LogMuestreado(log, muestreoLog);
+    }
+
+    // * ?campos=nombre,precio -> Solo trae de Mongo los campos pedidos (evita decodificar foto y categoria)
+    // * ?categoriaId=...&precioMin=...&precioMax=...&nombre=...&desde=...&hasta=...&orden=...&direccion=...&limite=...
+    // * -> Los filtros se resuelven en Mongo
     @GetMapping
-    public Flux<Producto> index() {
-        Flux<Producto> productos = dao.findAll()
+    public Flux<Producto> index(FiltroProducto filtro, @RequestParam(required = false) List<String> campos) {
+        Flux<Producto> productos = resolutorCategorias.resolver(dao.buscar(filtro, campos))
                 .map(producto -> {
-                    producto.setNombre(producto.getNombre().toUpperCase());
+                    if (producto.getNombre() != null) {
+                        producto.setNombre(producto.getNombre().toUpperCase());
+                    }
                     return producto;
-                }).doOnNext(prod -> log.info(prod.getNombre()));
-        return productos;
+                }).doOnNext(prod -> logProductos.info(prod::getNombre));
+        return metricas.controlador("index", productos);
+    }
+
+    // * BUSQUEDA -> ?q=sony notebook&limite=20: indice de texto de Mongo sobre el nombre y la categoria, por relevancia
+    @GetMapping("/buscar")
+    public Flux<Producto> buscar(@RequestParam String q, @RequestParam(required = false) Integer limite) {
+        if (q.isBlank()) {
+            return Flux.empty();
+        }
+        int tamano = limite != null && limite > 0 ? limite : limiteBusqueda;
+        return metricas.controlador("buscar", productoServiceCache.buscarTexto(q, tamano));
+    }
+
+    // * AUTOCOMPLETAR -> ?q=son&limite=10: prefijos de las palabras del nombre, desde el indice en memoria (sin Mongo)
+    @GetMapping("/sugerencias")
+    public Mono<List<Sugerencia>> sugerencias(@RequestParam String q, @RequestParam(required = false) Integer limite) {
+        int tamano = limite != null && limite > 0 ? limite : limiteSugerencias;
+        return Mono.fromSupplier(() -> indiceProductos.sugerir(q, tamano));
+    }
+
+    // * ESTADISTICAS -> cantidad, precio minimo / promedio / maximo y ultimo createAt, calculados en Mongo.
+    // * Aceptan los mismos filtros que el listado (?categoriaId=...&precioMin=...&desde=...)
+    @GetMapping("/estadisticas")
+    public Mono<EstadisticaCategoria> estadisticas(FiltroProducto filtro) {
+        return metricas.controlador("estadisticas", productoServiceCache.estadisticasGenerales(filtro));
+    }
+
+    @GetMapping("/estadisticas/categorias")
+    public Flux<EstadisticaCategoria> estadisticasPorCategoria(FiltroProducto filtro) {
+        return metricas.controlador("estadisticasPorCategoria", productoServiceCache.estadisticasPorCategoria(filtro));
+    }
+
+    @GetMapping("/cache")
+    public Mono<Map<String, Object>> cache() {
+        return Mono.fromSupplier(productoServiceCache::estadisticas);
+    }
+
+    @GetMapping("/categorias")
+    public Mono<Map<String, Object>> categorias() {
+        return Mono.fromSupplier(resolutorCategorias::estadisticas);
+    }
+
+    // * CAMBIOS EN VIVO (SSE) -> cada evento lleva como id su resume token: el EventSource lo reenvia solo en
+    // * Last-Event-ID al reconectarse y recibe lo que se perdio. El latido mantiene abierta la conexion en los proxies
+    @GetMapping(value = "/cambios", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<EventoProducto>> cambios(@RequestHeader(value = "Last-Event-ID", required = false) String ultimoEvento,
+                                                         @RequestParam(required = false) String desde) {
+        Flux<ServerSentEvent<EventoProducto>> eventos = feedProductos.suscribir(ultimoEvento != null ? ultimoEvento : desde)
+                .map(evento -> ServerSentEvent.builder(evento)
+                        .id(evento.token())
+                        .event(evento.operacion())
+                        .build());
+        Flux<ServerSentEvent<EventoProducto>> latidos = Flux.interval(latidoFeed)
+                .map(i -> ServerSentEvent.<EventoProducto>builder().comment("latido").build());
+        // * Los latidos terminan junto con los eventos
+        return eventos.publish(compartidos -> Flux.merge(compartidos, latidos.takeUntilOther(compartidos.then())));
+    }
+
+    // * CAMBIOS EN VIVO (NDJSON) -> el token va en cada linea, para reconectarse con ?desde=<token>
+    @GetMapping(value = "/cambios", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<EventoProducto> cambiosNdjson(@RequestParam(required = false) String desde) {
+        return feedProductos.suscribir(desde);
+    }
+
+    @GetMapping("/cambios/estadisticas")
+    public Mono<Map<String, Object>> estadisticasCambios() {
+        return Mono.fromSupplier(feedProductos::estadisticas);
     }
 
     @GetMapping("/{id}")
-    public Mono<Producto> show(@PathVariable String id) {
-//        Mono<Producto> productos = dao.findById(id);
-        Flux<Producto> productos = dao.findAll();
-
-        Mono<Producto> producto = productos.filter(p -> p.getId().equals(id))
-                .next() // * Nos retorna un Mono
-                .doOnNext(prod -> log.info(prod.getNombre())); // Imprimir el nombre del producto
-        return producto;
+    public Mono<Producto> show(@PathVariable String id, @RequestParam(required = false) List<String> campos) {
+        // * Busqueda por el indice de _id en lugar de findAll().filter(...), el costo no depende del tamaño de la coleccion
+        Mono<Producto> producto = resolutorCategorias.resolver(dao.findById(id, campos))
+                .doOnNext(prod -> logProductos.info(prod::getNombre)); // Imprimir el nombre del producto
+        return metricas.controlador("show", producto);
     }
 }
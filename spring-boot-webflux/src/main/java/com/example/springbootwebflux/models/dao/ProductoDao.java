@@ -2,6 +2,9 @@ package com.example.springbootwebflux.models.dao;
 
 import com.example.springbootwebflux.models.documents.Producto;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Mono;
 
-public interface ProductoDao extends ReactiveMongoRepository<Producto, String> {
+public interface ProductoDao extends ReactiveMongoRepository<Producto, String>, ProductoDaoCustom {
+    // * Las fotos se guardan por hash: todos los productos con la misma foto tienen las mismas variantes
+    public Mono<Producto> findFirstByFoto(String foto);
 }
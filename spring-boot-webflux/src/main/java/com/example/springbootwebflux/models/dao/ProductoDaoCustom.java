@@ -0,0 +1,20 @@
+package com.example.springbootwebflux.models.dao;
+
+import com.example.springbootwebflux.models.documents.Producto;
+import com.example.springbootwebflux.models.documents.Variante;
+import com.example.springbootwebflux.models.dto.EstadisticaCategoria;
+import com.example.springbootwebflux.models.dto.FiltroProducto;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+// * Consultas que necesitan el ReactiveMongoTemplate (proyecciones de campos, filtros combinados, texto y agregaciones)
+public interface ProductoDaoCustom {
+    public Mono<Producto> findById(String id, List<String> campos);
+    public Flux<Producto> buscar(FiltroProducto filtro, List<String> campos);
+    public Flux<Producto> buscarTexto(String texto, int limite);
+    public Flux<EstadisticaCategoria> estadisticasPorCategoria(FiltroProducto filtro);
+    public Mono<EstadisticaCategoria> estadisticasGenerales(FiltroProducto filtro);
+    public Mono<Boolean> guardarVariantes(String id, String foto, List<Variante> variantes);
+}
@@ -0,0 +1,170 @@
+package com.example.springbootwebflux.models.dao;
+
+import com.example.springbootwebflux.models.documents.Producto;
+import com.example.springbootwebflux.models.documents.Variante;
+import com.example.springbootwebflux.models.dto.EstadisticaCategoria;
+import com.example.springbootwebflux.models.dto.FiltroProducto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.GroupOperation;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+public class ProductoDaoCustomImpl implements ProductoDaoCustom {
+
+    private static final Set<String> CAMPOS_ORDEN = Set.of("id", "nombre", "precio", "createAt");
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    // * Un ?limite= mas grande se recorta a este maximo (sin ?limite= el listado sigue siendo el stream completo)
+    @Value("${config.paginacion.limite-maximo:1000}")
+    private int limiteMaximo;
+
+    @Override
+    public Mono<Producto> findById(String id, List<String> campos) {
+        // * Va directo al indice de _id, sin recorrer la coleccion
+        Query query = proyectar(new Query(Criteria.where("id").is(id)), campos);
+        return mongoTemplate.findOne(query, Producto.class);
+    }
+
+    // * Todos los filtros se resuelven en Mongo (con los indices de Producto) en lugar de filtrar el Flux en Java
+    @Override
+    public Flux<Producto> buscar(FiltroProducto filtro, List<String> campos) {
+        Query query = new Query();
+        criterios(filtro).forEach(query::addCriteria);
+        if (filtro.getOrden() != null && CAMPOS_ORDEN.contains(filtro.getOrden())) {
+            Sort.Direction direccion = Sort.Direction.fromOptionalString(filtro.getDireccion()).orElse(Sort.Direction.ASC);
+            query.with(Sort.by(direccion, filtro.getOrden()));
+        }
+        if (filtro.getLimite() != null && filtro.getLimite() > 0) {
+            query.limit(Math.min(filtro.getLimite(), limiteMaximo));
+        }
+        return mongoTemplate.find(proyectar(query, campos), Producto.class);
+    }
+
+    // * $text sobre el indice de texto de Producto (nombre con mas peso que la categoria), ordenado por relevancia.
+    // * En modo referencia la categoria no esta en el documento y solo cuenta el nombre
+    @Override
+    public Flux<Producto> buscarTexto(String texto, int limite) {
+        Query query = TextQuery.queryText(TextCriteria.forDefaultLanguage().matching(texto))
+                .sortByScore()
+                .limit(limite);
+        return mongoTemplate.find(query, Producto.class);
+    }
+
+    // * Estadisticas calculadas en Mongo ($match -> $group -> $lookup del nombre -> $sort): por la red viaja una fila
+    // * por categoria en lugar de todo el catalogo. El nombre sale de la coleccion de categorias (vale tambien con
+    // * config.categorias.referencia, y un renombre se ve sin reescribir productos); si no esta, el embebido
+    @Override
+    public Flux<EstadisticaCategoria> estadisticasPorCategoria(FiltroProducto filtro) {
+        List<AggregationOperation> etapas = new ArrayList<>(filtrar(filtro));
+        etapas.add(agrupar(Aggregation.group("categoria.id")).first("categoria.nombre").as("categoria"));
+        etapas.add(Aggregation.lookup("categorias", "_id", "_id", "categoriaActual"));
+        etapas.add(Aggregation.addFields()
+                .addField("categoria").withValue(ConditionalOperators
+                        .ifNull(ArrayOperators.ArrayElemAt.arrayOf("categoriaActual.nombre").elementAt(0))
+                        .thenValueOf("categoria"))
+                .build());
+        etapas.add(Aggregation.project().andExclude("categoriaActual"));
+        etapas.add(Aggregation.sort(Sort.by(Sort.Direction.DESC, "cantidad").and(Sort.by("_id"))));
+        return mongoTemplate.aggregate(Aggregation.newAggregation(etapas), Producto.class, EstadisticaCategoria.class);
+    }
+
+    @Override
+    public Mono<EstadisticaCategoria> estadisticasGenerales(FiltroProducto filtro) {
+        List<AggregationOperation> etapas = new ArrayList<>(filtrar(filtro));
+        etapas.add(agrupar(Aggregation.group()));
+        return mongoTemplate.aggregate(Aggregation.newAggregation(etapas), Producto.class, EstadisticaCategoria.class)
+                .next();
+    }
+
+    private List<AggregationOperation> filtrar(FiltroProducto filtro) {
+        List<Criteria> criterios = criterios(filtro);
+        return criterios.isEmpty() ? List.of()
+                : List.of(Aggregation.match(new Criteria().andOperator(criterios)));
+    }
+
+    private static GroupOperation agrupar(GroupOperation grupo) {
+        return grupo.count().as("cantidad")
+                .min("precio").as("precioMinimo")
+                .avg("precio").as("precioPromedio")
+                .max("precio").as("precioMaximo")
+                .max("createAt").as("ultimoCreateAt");
+    }
+
+    // * Los mismos filtros para los listados y las estadisticas (el orden y el limite son solo de los listados)
+    private List<Criteria> criterios(FiltroProducto filtro) {
+        List<Criteria> criterios = new ArrayList<>();
+        if (filtro.getCategoriaId() != null) {
+            criterios.add(Criteria.where("categoria.id").is(filtro.getCategoriaId()));
+        }
+        if (filtro.getPrecioMin() != null || filtro.getPrecioMax() != null) {
+            Criteria precio = Criteria.where("precio");
+            if (filtro.getPrecioMin() != null) {
+                precio.gte(filtro.getPrecioMin());
+            }
+            if (filtro.getPrecioMax() != null) {
+                precio.lte(filtro.getPrecioMax());
+            }
+            criterios.add(precio);
+        }
+        if (filtro.getNombre() != null && !filtro.getNombre().isEmpty()) {
+            // * Prefijo anclado y escapado para que Mongo pueda recorrer el indice de nombre
+            criterios.add(Criteria.where("nombre").regex("^" + filtro.getNombre().replaceAll("\\W", "\\\\$0")));
+        }
+        if (filtro.getDesde() != null || filtro.getHasta() != null) {
+            Criteria createAt = Criteria.where("createAt");
+            if (filtro.getDesde() != null) {
+                createAt.gte(filtro.getDesde());
+            }
+            if (filtro.getHasta() != null) {
+                // * hasta llega como yyyy-MM-dd (medianoche): se incluye todo ese dia
+                createAt.lt(Date.from(filtro.getHasta().toInstant().plus(1, ChronoUnit.DAYS)));
+            }
+            criterios.add(createAt);
+        }
+        return criterios;
+    }
+
+    // * $set atomico solo de las variantes y solo si la foto no cambio mientras se generaban
+    @Override
+    public Mono<Boolean> guardarVariantes(String id, String foto, List<Variante> variantes) {
+        Query query = new Query(Criteria.where("id").is(id).and("foto").is(foto));
+        return mongoTemplate.updateFirst(query, new Update().set("variantes", variantes), Producto.class)
+                .map(resultado -> resultado.getModifiedCount() > 0);
+    }
+
+    // * Solo se incluyen los campos que existen en Producto, el resto se ignora.
+    // * Sin campos validos se devuelve el documento completo
+    private Query proyectar(Query query, List<String> campos) {
+        if (campos == null || campos.isEmpty()) {
+            return query;
+        }
+        MongoPersistentEntity<?> entidad = mongoTemplate.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(Producto.class);
+        campos.stream()
+                .map(String::trim)
+                .filter(campo -> entidad.getPersistentProperty(campo) != null)
+                .forEach(campo -> query.fields().include(campo));
+        return query;
+    }
+}
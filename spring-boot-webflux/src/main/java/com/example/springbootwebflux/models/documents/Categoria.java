@@ -2,6 +2,7 @@ package com.example.springbootwebflux.models.documents;
 
 import jakarta.validation.constraints.NotEmpty;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.TextIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document(collection = "categorias")
@@ -9,6 +10,7 @@ public class Categoria {
     @Id
     @NotEmpty
     private String id;
+    @TextIndexed
     private String nombre;
 
     public Categoria() {
@@ -18,6 +20,12 @@ public class Categoria {
         this.nombre = nombre;
     }
 
+    // * Copia para la cache de ProductoServiceCache
+    public Categoria(Categoria otra) {
+        this.id = otra.id;
+        this.nombre = otra.nombre;
+    }
+
     public String getId() {
         return id;
     }
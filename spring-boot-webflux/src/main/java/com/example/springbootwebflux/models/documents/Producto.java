@@ -5,31 +5,46 @@ import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.IndexDirection;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.TextIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.format.annotation.DateTimeFormat;
 
 import java.util.Date;
+import java.util.List;
 
-@Document(collection  = "productos")
+// * Indices para los filtros de ProductoDao
+@CompoundIndex(name = "categoria_precio", def = "{'categoria._id': 1, 'precio': 1}")
+// * Indice de texto (nombre y nombre de la categoria embebida) para GET /api/productos/buscar
+@Document(collection  = "productos", language = "spanish")
 public class Producto {
 
     @Id
     private String id;
 
     @NotEmpty
+    @Indexed
+    @TextIndexed(weight = 3)
     private String nombre;
 
     @NotNull
+    @Indexed
     private Double precio;
 
     @DateTimeFormat(pattern = "yyyy-MM-dd")
+    @Indexed(direction = IndexDirection.DESCENDING)
     private Date createAt; // * Se convierte en un tipo BSON y hay que manejar el formato
 
     @Valid
     private Categoria categoria;
 
+    @Indexed(sparse = true)
     private String foto;
 
+    private List<Variante> variantes; // * Las completa MiniaturaService en segundo plano
+
     public Producto() {
     }
 
@@ -43,6 +58,17 @@ public class Producto {
         this.categoria = categoria;
     }
 
+    // * Copia profunda: ProductoServiceCache entrega una por lectura y quien la modifica no toca la entrada cacheada
+    public Producto(Producto otro) {
+        this.id = otro.id;
+        this.nombre = otro.nombre;
+        this.precio = otro.precio;
+        this.createAt = otro.createAt != null ? new Date(otro.createAt.getTime()) : null;
+        this.categoria = otro.categoria != null ? new Categoria(otro.categoria) : null;
+        this.foto = otro.foto;
+        this.variantes = otro.variantes != null ? otro.variantes.stream().map(Variante::new).toList() : null;
+    }
+
     public String getId() {
         return id;
     }
@@ -90,4 +116,12 @@ public class Producto {
     public void setFoto(String foto) {
         this.foto = foto;
     }
+
+    public List<Variante> getVariantes() {
+        return variantes;
+    }
+
+    public void setVariantes(List<Variante> variantes) {
+        this.variantes = variantes;
+    }
 }
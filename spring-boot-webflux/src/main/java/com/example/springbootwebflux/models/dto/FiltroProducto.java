@@ -0,0 +1,95 @@
+package com.example.springbootwebflux.models.dto;
+
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.util.Date;
+
+// * Parametros de consulta de los listados (?categoriaId=...&precioMax=...&orden=precio&direccion=desc&limite=20)
+public class FiltroProducto {
+    private String categoriaId;
+    private Double precioMin;
+    private Double precioMax;
+    private String nombre; // * Prefijo del nombre
+
+    @DateTimeFormat(pattern = "yyyy-MM-dd")
+    private Date desde;
+
+    @DateTimeFormat(pattern = "yyyy-MM-dd")
+    private Date hasta;
+
+    private String orden;
+    private String direccion;
+    private Integer limite;
+
+    public String getCategoriaId() {
+        return categoriaId;
+    }
+
+    public void setCategoriaId(String categoriaId) {
+        this.categoriaId = categoriaId;
+    }
+
+    public Double getPrecioMin() {
+        return precioMin;
+    }
+
+    public void setPrecioMin(Double precioMin) {
+        this.precioMin = precioMin;
+    }
+
+    public Double getPrecioMax() {
+        return precioMax;
+    }
+
+    public void setPrecioMax(Double precioMax) {
+        this.precioMax = precioMax;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public void setNombre(String nombre) {
+        this.nombre = nombre;
+    }
+
+    public Date getDesde() {
+        return desde;
+    }
+
+    public void setDesde(Date desde) {
+        this.desde = desde;
+    }
+
+    public Date getHasta() {
+        return hasta;
+    }
+
+    public void setHasta(Date hasta) {
+        this.hasta = hasta;
+    }
+
+    public String getOrden() {
+        return orden;
+    }
+
+    public void setOrden(String orden) {
+        this.orden = orden;
+    }
+
+    public String getDireccion() {
+        return direccion;
+    }
+
+    public void setDireccion(String direccion) {
+        this.direccion = direccion;
+    }
+
+    public Integer getLimite() {
+        return limite;
+    }
+
+    public void setLimite(Integer limite) {
+        this.limite = limite;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.springbootwebflux.models.dto;
+
+import com.example.springbootwebflux.models.documents.Producto;
+
+import java.util.Date;
+
+// * Modelo de solo lectura para los listados: no toca la entidad y se calcula una vez por elemento
+public record ProductoVista(String id, String nombre, Double precio, Date createAt, String categoriaNombre) {
+
+    public static ProductoVista nombreUpperCase(Producto producto) {
+        return new ProductoVista(producto.getId(),
+                producto.getNombre().toUpperCase(),
+                producto.getPrecio(),
+                producto.getCreateAt(),
+                producto.getCategoria() != null ? producto.getCategoria().getNombre() : null);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.springbootwebflux.models.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+// * Guarda las fotos direccionadas por contenido: el nombre es el SHA-256 de los bytes.
+// * El hash se calcula mientras se escribe el stream de DataBuffer (sin cargar la foto en memoria)
+// * y si ya existe un archivo con el mismo hash se reutiliza en lugar de guardarlo otra vez
+// * Las usa el formulario (ProductoController.guardar); como el nombre cambia si cambia la foto, verFoto las sirve como immutable
+@Service
+public class AlmacenFotos {
+
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(AlmacenFotos.class);
+
+    private final Path uploads;
+
+    private final DataSize tamanoMaximo;
+
+    public AlmacenFotos(@Value("${config.uploads.path}") String path,
+                        @Value("${config.uploads.tamano-maximo:10MB}") DataSize tamanoMaximo) {
+        this.uploads = Paths.get(path).toAbsolutePath().normalize();
+        this.tamanoMaximo = tamanoMaximo;
+    }
+
+    // * Devuelve el nombre con el que quedo guardada la foto. Si supera el tamaño maximo falla con
+    // * DataBufferLimitException en cuanto se pasa del limite, sin leer el resto del archivo
+    public Mono<String> guardar(FilePart file) {
+        return Mono.defer(() -> {
+            MessageDigest digest = sha256();
+            AtomicLong bytes = new AtomicLong();
+            Path temporal = uploads.resolve(".subida-" + UUID.randomUUID() + ".tmp");
+
+            Flux<DataBuffer> contenido = file.content()
+                    .handle((buffer, sink) -> {
+                        if (bytes.addAndGet(buffer.readableByteCount()) > tamanoMaximo.toBytes()) {
+                            DataBufferUtils.release(buffer);
+                            sink.error(new DataBufferLimitException("La foto supera el tamaño maximo de " + tamanoMaximo));
+                            return;
+                        }
+                        // * asByteBuffer() esta deprecado y readableByteBuffers() recien aparece en Spring 6.0.5;
+                        // * toByteBuffer copia los bytes legibles sin mover la posicion de lectura del buffer
+                        digest.update(buffer.toByteBuffer(buffer.readPosition(), buffer.readableByteCount()));
+                        sink.next(buffer);
+                    });
+
+            return DataBufferUtils.write(contenido, temporal, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)
+                    .then(Mono.fromCallable(() -> mover(temporal, HexFormat.of().formatHex(digest.digest()) + extension(file.filename())))
+                            .subscribeOn(Schedulers.boundedElastic()))
+                    .onErrorResume(ex -> Mono.fromCallable(() -> Files.deleteIfExists(temporal))
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .then(Mono.error(ex)));
+        });
+    }
+
+    private String mover(Path temporal, String nombre) throws IOException {
+        Path destino = uploads.resolve(nombre);
+        if (Files.exists(destino)) {
+            Files.delete(temporal);
+            log.info("Foto repetida, se reutiliza {}", nombre);
+        } else {
+            Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return nombre;
+    }
+
+    // * Solo se conserva una extension simple, el nombre original del cliente no llega al disco
+    static String extension(String filename) {
+        int punto = filename.lastIndexOf('.');
+        if (punto < 0) {
+            return "";
+        }
+        String extension = filename.substring(punto + 1).toLowerCase(Locale.ROOT);
+        return extension.matches("[a-z0-9]{1,5}") ? "." + extension : "";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
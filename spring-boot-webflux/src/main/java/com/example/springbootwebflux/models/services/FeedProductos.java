@@ -0,0 +1,192 @@
+package com.example.springbootwebflux.models.services;
+
+import com.example.springbootwebflux.models.documents.Producto;
+import com.mongodb.MongoException;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+// * Cambios de productos en vivo (change stream de Mongo) para SSE / NDJSON, en lugar de que los clientes consulten
+// * toda la coleccion cada tanto. Una sola suscripcion al change stream se comparte entre todos los clientes:
+// * - Cada cliente tiene su propio buffer acotado y si no da abasto se descartan sus eventos mas viejos (DROP_OLDEST),
+// *   un cliente lento no frena al resto ni al change stream.
+// * - Cada evento lleva el resume token de Mongo. Un cliente que se reconecta con su ultimo token recibe lo que se perdio:
+// *   si el token esta entre los ultimos `historial` eventos sale de memoria, si es mas viejo se abre un change stream
+// *   propio con resumeAfter (solo para ese cliente).
+// * - Si el change stream se corta (failover del replica set) se reanuda despues del ultimo token visto. Si ese token
+// *   ya no sirve (el oplog se roto y perdio esa historia) se reabre desde ahora y el hueco queda en el log; cualquier
+// *   otro error no es de reanudacion y termina el feed de los clientes conectados en vez de reintentar para siempre.
+// * El change stream se abre con el primer cliente y se cierra `gracia` despues de que se va el ultimo.
+// * En este modulo lo consume GET /api/productos/cambios y los contadores salen en /api/productos/cambios/estadisticas.
+// * Necesita un replica set (un mongod solo no soporta change streams); el constructor con la fuente permite probarlo sin Mongo
+@Service
+public class FeedProductos {
+
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(FeedProductos.class);
+
+    // * ChangeStreamHistoryLost, ChangeStreamFatalError, InvalidResumeToken y CappedPositionLost: reanudar con el mismo
+    // * token vuelve a fallar igual
+    private static final Set<Integer> TOKEN_PERDIDO = Set.of(286, 280, 260, 136);
+
+    public record EventoProducto(long secuencia, String token, String operacion, String id, Producto producto) {
+    }
+
+    // * Token desde el que reanudar (null = desde ahora) -> eventos del change stream
+    private final Function<String, Flux<EventoProducto>> fuente;
+    private final int bufferCliente;
+    private final Flux<EventoProducto> compartido;
+
+    private final AtomicLong secuencia = new AtomicLong();
+    private final Map<String, Long> tokens;
+    private volatile String ultimoToken;
+
+    private final AtomicInteger clientes = new AtomicInteger();
+    private final LongAdder descartados = new LongAdder();
+    private final LongAdder reanudacionesPropias = new LongAdder();
+    private final LongAdder reconexionesFuente = new LongAdder();
+    private final LongAdder huecos = new LongAdder();
+
+    @Autowired
+    public FeedProductos(ReactiveMongoTemplate mongoTemplate,
+                         @Value("${config.feed.historial:1000}") int historial,
+                         @Value("${config.feed.buffer-cliente:256}") int bufferCliente,
+                         @Value("${config.feed.gracia:30s}") Duration gracia) {
+        this(token -> cambios(mongoTemplate, token), historial, bufferCliente, gracia);
+    }
+
+    FeedProductos(Function<String, Flux<EventoProducto>> fuente, int historial, int bufferCliente, Duration gracia) {
+        this.fuente = fuente;
+        this.bufferCliente = bufferCliente;
+        this.tokens = Collections.synchronizedMap(new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> mayor) {
+                return size() > historial;
+            }
+        });
+        this.compartido = Flux.defer(() -> fuente.apply(ultimoToken))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .filter(e -> tokenPerdido(e) || reanudable(e))
+                        .doBeforeRetry(senal -> reconectar(senal.failure())))
+                .doOnError(e -> log.error("Change stream de productos cortado por un error que no se reanuda: " + e.getMessage()))
+                .map(this::numerar)
+                .replay(historial)
+                .refCount(1, gracia);
+    }
+
+    // * desde: resume token del ultimo evento que recibio el cliente (Last-Event-ID), o null para recibir desde ahora
+    public Flux<EventoProducto> suscribir(String desde) {
+        return Flux.defer(() -> {
+                    Flux<EventoProducto> eventos;
+                    Long visto = desde != null ? tokens.get(desde) : Long.valueOf(secuencia.get());
+                    if (visto != null) {
+                        // * El replay del compartido trae los ultimos eventos y despues los nuevos, sin huecos entre ambos
+                        eventos = compartido.filter(evento -> evento.secuencia() > visto);
+                    } else {
+                        reanudacionesPropias.increment();
+                        eventos = fuente.apply(desde);
+                    }
+                    return eventos.onBackpressureBuffer(bufferCliente, evento -> descartados.increment(),
+                            BufferOverflowStrategy.DROP_OLDEST);
+                })
+                .doOnSubscribe(s -> clientes.incrementAndGet())
+                .doFinally(senal -> clientes.decrementAndGet());
+    }
+
+    private void reconectar(Throwable error) {
+        reconexionesFuente.increment();
+        if (tokenPerdido(error)) {
+            huecos.increment();
+            log.warn("El token " + ultimoToken + " ya no esta en el oplog (" + error.getMessage()
+                    + "): el change stream de productos se reabre desde ahora y se pierden los cambios intermedios");
+            ultimoToken = null;
+        } else {
+            log.warn("Change stream de productos cortado, se reanuda despues de " + ultimoToken + ": " + error.getMessage());
+        }
+    }
+
+    // * Spring puede envolver la excepcion del driver: se mira toda la cadena de causas
+    static boolean tokenPerdido(Throwable error) {
+        for (Throwable causa = error; causa != null; causa = causa.getCause()) {
+            if (causa instanceof MongoException mongo && TOKEN_PERDIDO.contains(mongo.getCode())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean reanudable(Throwable error) {
+        for (Throwable causa = error; causa != null; causa = causa.getCause()) {
+            if (ResilienciaMongo.esFallaDeMongo(causa)
+                    || causa instanceof MongoException mongo && mongo.hasErrorLabel("ResumableChangeStreamError")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private EventoProducto numerar(EventoProducto evento) {
+        long numero = secuencia.incrementAndGet();
+        if (evento.token() != null) {
+            ultimoToken = evento.token();
+            tokens.put(evento.token(), numero);
+        }
+        return new EventoProducto(numero, evento.token(), evento.operacion(), evento.id(), evento.producto());
+    }
+
+    private static Flux<EventoProducto> cambios(ReactiveMongoTemplate mongoTemplate, String token) {
+        ChangeStreamOptions.ChangeStreamOptionsBuilder opciones = ChangeStreamOptions.builder().returnFullDocumentOnUpdate();
+        if (token != null) {
+            opciones.resumeAfter(new BsonDocument("_data", new BsonString(token)));
+        }
+        return mongoTemplate.changeStream("productos", opciones.build(), Producto.class)
+                .map(evento -> new EventoProducto(0, token(evento), evento.getOperationType() != null
+                        ? evento.getOperationType().getValue() : null, id(evento), evento.getBody()));
+    }
+
+    private static String token(ChangeStreamEvent<Producto> evento) {
+        BsonValue token = evento.getResumeToken();
+        return token != null && token.isDocument() && token.asDocument().isString("_data")
+                ? token.asDocument().getString("_data").getValue() : null;
+    }
+
+    // * En un delete no hay documento, el id sale de documentKey
+    private static String id(ChangeStreamEvent<Producto> evento) {
+        if (evento.getRaw() == null || evento.getRaw().getDocumentKey() == null) {
+            return evento.getBody() != null ? evento.getBody().getId() : null;
+        }
+        BsonValue id = evento.getRaw().getDocumentKey().get("_id");
+        return id == null ? null : id.isObjectId() ? id.asObjectId().getValue().toHexString()
+                : id.isString() ? id.asString().getValue() : id.toString();
+    }
+
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("clientes", clientes.get());
+        estadisticas.put("eventos", secuencia.get());
+        estadisticas.put("descartados", descartados.sum());
+        estadisticas.put("reanudacionesPropias", reanudacionesPropias.sum());
+        estadisticas.put("reconexionesFuente", reconexionesFuente.sum());
+        estadisticas.put("huecos", huecos.sum());
+        return estadisticas;
+    }
+}
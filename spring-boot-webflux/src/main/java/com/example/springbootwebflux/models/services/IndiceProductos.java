@@ -0,0 +1,254 @@
+package com.example.springbootwebflux.models.services;
+
+import com.example.springbootwebflux.models.documents.Producto;
+import com.example.springbootwebflux.models.dto.Sugerencia;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+// * Indice invertido en memoria para autocompletar nombres de productos por prefijo, sin ir a Mongo.
+// * Cada palabra del nombre (en minusculas y sin acentos) apunta a los ids que la contienen, en un mapa ordenado:
+// * un prefijo es un recorrido desde ceilingKey(prefijo) que corta al juntar `limite` productos.
+// * Con varias palabras ("sony no") se recorre la que tiene menos productos y se filtra por las demas.
+// * Se arma completo al arrancar y despues se actualiza con cada save / delete de ProductoServiceImpl; en este
+// * modulo lo consulta GET /api/productos/sugerencias y el tamaño del indice sale en el log al armarlo.
+// * Las lecturas no bloquean; las escrituras (pocas comparadas con las consultas) se hacen de a una
+@Service
+public class IndiceProductos {
+
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(IndiceProductos.class);
+
+    private static final Pattern SEPARADOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern ACENTOS = Pattern.compile("\\p{M}+");
+
+    // * Tope de candidatos revisados cuando las otras palabras filtran casi todo, para acotar la latencia
+    private static final int CANDIDATOS_MAXIMOS = 5000;
+
+    private record Entrada(String nombre, String[] palabras) {
+    }
+
+    private static class Indice {
+        private final ConcurrentSkipListMap<String, Set<String>> palabras = new ConcurrentSkipListMap<>();
+        private final ConcurrentHashMap<String, Entrada> productos = new ConcurrentHashMap<>();
+
+        private void agregar(String id, String nombre) {
+            Entrada nueva = new Entrada(nombre, palabras(nombre));
+            Entrada anterior = productos.put(id, nueva);
+            if (anterior != null) {
+                quitar(id, anterior);
+            }
+            String[] suyas = nueva.palabras();
+            for (int i = 0; i < suyas.length; i++) {
+                palabras.computeIfAbsent(suyas[i], p -> ConcurrentHashMap.newKeySet()).add(id);
+                // * La misma instancia que la clave: con 1M de productos las palabras se repiten mucho
+                suyas[i] = palabras.ceilingKey(suyas[i]);
+            }
+        }
+
+        private void eliminar(String id) {
+            Entrada anterior = productos.remove(id);
+            if (anterior != null) {
+                quitar(id, anterior);
+            }
+        }
+
+        private void quitar(String id, Entrada entrada) {
+            Entrada actual = productos.get(id);
+            for (String palabra : entrada.palabras()) {
+                if (actual != null && Arrays.asList(actual.palabras()).contains(palabra)) {
+                    continue;
+                }
+                Set<String> ids = palabras.get(palabra);
+                if (ids != null) {
+                    ids.remove(id);
+                    if (ids.isEmpty()) {
+                        palabras.remove(palabra, ids);
+                    }
+                }
+            }
+        }
+    }
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    private volatile Indice actual = new Indice();
+    private Indice construyendo;
+    // * Ids guardados o borrados durante la reconstruccion: ya estan aplicados en `construyendo` y lo que traiga el
+    // * cursor de ellos es anterior (un producto ya borrado volveria a aparecer hasta la proxima reconstruccion)
+    private final Set<String> cambiados = new HashSet<>();
+
+    public List<Sugerencia> sugerir(String texto, int limite) {
+        String[] buscadas = palabras(texto);
+        if (buscadas.length == 0 || limite <= 0) {
+            return List.of();
+        }
+        Indice indice = actual;
+        String recorrida = masSelectiva(indice, buscadas);
+        Set<String> encontrados = new LinkedHashSet<>();
+        List<Sugerencia> sugerencias = new ArrayList<>(limite);
+        int revisados = 0;
+        for (Map.Entry<String, Set<String>> palabra : indice.palabras.tailMap(recorrida).entrySet()) {
+            if (!palabra.getKey().startsWith(recorrida)) {
+                break;
+            }
+            for (String id : palabra.getValue()) {
+                if (revisados++ >= CANDIDATOS_MAXIMOS) {
+                    return sugerencias;
+                }
+                Entrada entrada = indice.productos.get(id);
+                if (entrada != null && contieneTodas(entrada.palabras(), buscadas) && encontrados.add(id)) {
+                    sugerencias.add(new Sugerencia(id, entrada.nombre()));
+                    if (sugerencias.size() == limite) {
+                        return sugerencias;
+                    }
+                }
+            }
+        }
+        return sugerencias;
+    }
+
+    public synchronized void actualizar(Producto producto) {
+        if (producto.getId() == null || producto.getNombre() == null) {
+            return;
+        }
+        actual.agregar(producto.getId(), producto.getNombre());
+        if (construyendo != null) {
+            construyendo.agregar(producto.getId(), producto.getNombre());
+            cambiados.add(producto.getId());
+        }
+    }
+
+    public synchronized void eliminar(String id) {
+        if (id == null) {
+            return;
+        }
+        actual.eliminar(id);
+        if (construyendo != null) {
+            construyendo.eliminar(id);
+            cambiados.add(id);
+        }
+    }
+
+    // * Arma un indice nuevo leyendo solo id y nombre y lo reemplaza al terminar; mientras tanto se sigue
+    // * respondiendo con el anterior y los save / delete se aplican a los dos
+    private Mono<Long> reconstruir() {
+        return Mono.defer(() -> {
+            Indice nuevo = new Indice();
+            synchronized (this) {
+                construyendo = nuevo;
+                cambiados.clear();
+            }
+            Query query = new Query();
+            query.fields().include("nombre");
+            long inicio = System.nanoTime();
+            return mongoTemplate.find(query, Producto.class)
+                    .doOnNext(producto -> {
+                        synchronized (this) {
+                            if (producto.getNombre() != null && !cambiados.contains(producto.getId())) {
+                                nuevo.agregar(producto.getId(), producto.getNombre());
+                            }
+                        }
+                    })
+                    .count()
+                    .doOnNext(total -> {
+                        synchronized (this) {
+                            actual = nuevo;
+                            if (construyendo == nuevo) {
+                                construyendo = null;
+                                cambiados.clear();
+                            }
+                        }
+                        log.info(String.format("Indice de productos: %d productos, %d palabras en %.2f s", total,
+                                nuevo.palabras.size(), (System.nanoTime() - inicio) / 1e9));
+                    })
+                    .doFinally(senal -> {
+                        synchronized (this) {
+                            if (construyendo == nuevo) {
+                                construyendo = null;
+                                cambiados.clear();
+                            }
+                        }
+                    });
+        });
+    }
+
+    // * Despues de la carga inicial (el CommandLineRunner termina antes de este evento)
+    @EventListener(ApplicationReadyEvent.class)
+    public void alArrancar() {
+        reconstruir().subscribe(total -> {
+        }, e -> log.warn("No se pudo armar el indice de productos: " + e.getMessage()));
+    }
+
+
+    // * La palabra buscada con menos productos: "tablet x1315" recorre los pocos de x1315 y filtra por tablet, no al
+    // * reves. Se prueban primero las mas largas y cada conteo corta apenas supera al mejor, asi un prefijo de una
+    // * letra no se cuenta entero
+    private static String masSelectiva(Indice indice, String[] buscadas) {
+        if (buscadas.length == 1) {
+            return buscadas[0];
+        }
+        String[] ordenadas = buscadas.clone();
+        Arrays.sort(ordenadas, (a, b) -> b.length() - a.length());
+        String mejor = ordenadas[0];
+        long menor = Long.MAX_VALUE;
+        for (String buscada : ordenadas) {
+            long productos = 0;
+            for (Map.Entry<String, Set<String>> palabra : indice.palabras.tailMap(buscada).entrySet()) {
+                if (!palabra.getKey().startsWith(buscada) || productos >= menor) {
+                    break;
+                }
+                productos += palabra.getValue().size();
+            }
+            if (productos < menor) {
+                menor = productos;
+                mejor = buscada;
+            }
+        }
+        return mejor;
+    }
+
+    private static boolean contieneTodas(String[] palabras, String[] buscadas) {
+        for (String buscada : buscadas) {
+            boolean encontrada = false;
+            for (String palabra : palabras) {
+                if (palabra.startsWith(buscada)) {
+                    encontrada = true;
+                    break;
+                }
+            }
+            if (!encontrada) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // * "Cámara HD-Digital" -> [camara, hd, digital]
+    static String[] palabras(String texto) {
+        if (texto == null) {
+            return new String[0];
+        }
+        String normalizado = ACENTOS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("").toLowerCase();
+        return Arrays.stream(SEPARADOR.split(normalizado))
+                .filter(palabra -> !palabra.isEmpty())
+                .distinct()
+                .toArray(String[]::new);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.springbootwebflux.models.services;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// * Log por elemento sin pagar un log.info por cada uno: escribe 1 de cada `cada` mensajes y el mensaje solo se arma
+// * si se va a escribir. Con el logger en FINE se escriben todos (para depurar)
+public class LogMuestreado {
+
+    private final Logger log;
+    private final long cada;
+    private final AtomicLong contador = new AtomicLong();
+
+    public LogMuestreado(Logger log, long cada) {
+        this.log = log;
+        this.cada = Math.max(1, cada);
+    }
+
+    public void info(Supplier<String> mensaje) {
+        long n = contador.getAndIncrement();
+        if (log.isLoggable(Level.FINE)) {
+            log.fine(mensaje);
+        } else if (n % cada == 0 && log.isLoggable(Level.INFO)) {
+            log.info(mensaje.get() + " (1 de cada " + cada + ", " + (n + 1) + " en total)");
+        }
+    }
+
+    public long getContador() {
+        return contador.get();
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.springbootwebflux.models.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.observability.micrometer.Micrometer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// * Metricas de Reactor (tap + Micrometer.metrics) para los flujos del servicio y de los controladores.
+// * Cada flujo se mide con el nombre de la capa y el tag operacion, y Reactor registra:
+// * - <nombre>.subscribed: suscripciones
+// * - <nombre>.requested: demanda pedida por quien consume (solo Flux)
+// * - <nombre>.onNext.delay: tiempo entre elementos, su count es la cantidad de onNext
+// * - <nombre>.flow.duration: latencia de la suscripcion al fin, con tag status completed/completedEmpty/error/cancelled
+// * Se exponen en /actuator/prometheus (ej. productos_controlador_flow_duration_seconds{operacion="listar"} para la
+// * vista de listado, que Thymeleaf consume con contrapresion)
+@Component
+public class MetricasFlujos {
+
+    public static final String SERVICIO = "productos.servicio";
+    public static final String CONTROLADOR = "productos.controlador";
+
+    private final MeterRegistry registro;
+
+    public MetricasFlujos(MeterRegistry registro) {
+        this.registro = registro;
+    }
+
+    public <T> Flux<T> servicio(String operacion, Flux<T> flujo) {
+        return medir(SERVICIO, operacion, flujo);
+    }
+
+    public <T> Mono<T> servicio(String operacion, Mono<T> mono) {
+        return medir(SERVICIO, operacion, mono);
+    }
+
+    public <T> Flux<T> controlador(String operacion, Flux<T> flujo) {
+        return medir(CONTROLADOR, operacion, flujo);
+    }
+
+    public <T> Mono<T> controlador(String operacion, Mono<T> mono) {
+        return medir(CONTROLADOR, operacion, mono);
+    }
+
+    private <T> Flux<T> medir(String nombre, String operacion, Flux<T> flujo) {
+        return flujo.name(nombre)
+                .tag("operacion", operacion)
+                .tap(Micrometer.metrics(registro));
+    }
+
+    private <T> Mono<T> medir(String nombre, String operacion, Mono<T> mono) {
+        return mono.name(nombre)
+                .tag("operacion", operacion)
+                .tap(Micrometer.metrics(registro));
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.springbootwebflux.models.services;
+
+import com.example.springbootwebflux.models.dao.ProductoDao;
+import com.example.springbootwebflux.models.documents.Producto;
+import com.example.springbootwebflux.models.documents.Variante;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// * Genera en segundo plano las miniaturas de las fotos subidas.
+// * Las tareas entran en una cola acotada y se procesan de a `hilos` en un scheduler propio, fuera del event loop.
+// * Si la cola esta llena la foto se queda sin variantes (se sirve la original) en vez de acumular imagenes en memoria.
+// * En este modulo verFoto?ancho= redirige a la variante que devuelve variante(producto, ancho)
+@Service
+public class MiniaturaService {
+
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(MiniaturaService.class);
+
+    @Autowired
+    private ProductoDao dao;
+
+    @Autowired
+    private ProductoServiceCache productoServiceCache;
+
+    private final Path uploads;
+    private final List<Integer> anchos;
+    private final float calidad;
+    private final Scheduler scheduler;
+    private final Sinks.Many<Tarea> tareas;
+    private final Disposable procesamiento;
+    private final AtomicLong descartadas = new AtomicLong();
+
+    public MiniaturaService(@Value("${config.uploads.path}") String path,
+                            @Value("${config.miniaturas.anchos:160,480,1024}") List<Integer> anchos,
+                            @Value("${config.miniaturas.calidad:0.8}") float calidad,
+                            @Value("${config.miniaturas.hilos:2}") int hilos,
+                            @Value("${config.miniaturas.cola:64}") int cola) {
+        this.uploads = Paths.get(path).toAbsolutePath().normalize();
+        this.anchos = anchos.stream().sorted().toList();
+        this.calidad = calidad;
+        this.scheduler = Schedulers.newBoundedElastic(hilos, cola, "miniaturas");
+        this.tareas = Sinks.many().unicast().onBackpressureBuffer(new ArrayBlockingQueue<>(cola));
+        // * flatMap pide a la cola solo `hilos` tareas a la vez: el resto espera en la cola acotada
+        this.procesamiento = tareas.asFlux()
+                .flatMap(this::procesar, hilos)
+                .subscribe();
+    }
+
+    // * synchronized: el sink unicast no admite emisiones concurrentes y los uploads llegan desde varios hilos
+    public synchronized boolean encolar(String id, String foto) {
+        Sinks.EmitResult resultado = tareas.tryEmitNext(new Tarea(id, foto));
+        if (resultado.isFailure()) {
+            descartadas.incrementAndGet();
+            log.warn("Cola de miniaturas llena ({}), la foto {} se sirve sin variantes", resultado, foto);
+            return false;
+        }
+        return true;
+    }
+
+    // * La variante mas pequeña que cubre el ancho pedido segun Producto.variantes (sin mirar el disco),
+    // * o la original si no hay ninguna o todavia no se generaron
+    public String variante(Producto producto, Integer ancho) {
+        Variante elegida = null;
+        if (ancho != null && producto.getVariantes() != null) {
+            for (Variante variante : producto.getVariantes()) {
+                if (variante.getAncho() >= ancho && (elegida == null || variante.getAncho() < elegida.getAncho())) {
+                    elegida = variante;
+                }
+            }
+        }
+        return elegida != null ? elegida.getFoto() : producto.getFoto();
+    }
+
+    public long getDescartadas() {
+        return descartadas.get();
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        procesamiento.dispose();
+        scheduler.dispose();
+    }
+
+    private Mono<Void> procesar(Tarea tarea) {
+        return Mono.fromCallable(() -> generar(tarea.foto()))
+                .subscribeOn(scheduler)
+                .filter(variantes -> !variantes.isEmpty())
+                .flatMap(variantes -> dao.guardarVariantes(tarea.id(), tarea.foto(), variantes))
+                .doOnNext(guardado -> productoServiceCache.invalidar(tarea.id()))
+                .doOnError(ex -> log.error("No se pudieron generar las miniaturas de " + tarea.foto(), ex))
+                .onErrorResume(ex -> Mono.empty())
+                .then();
+    }
+
+    private List<Variante> generar(String foto) throws IOException {
+        Path origen = uploads.resolve(foto);
+        Dimension tamano = dimensiones(origen);
+        if (tamano == null) {
+            log.warn("Formato de imagen no soportado: {}", foto);
+            return List.of();
+        }
+        // * Las fotos se guardan por hash (AlmacenFotos): si la variante ya existe es de la misma foto
+        // * y no hace falta decodificar la original
+        BufferedImage original = null;
+        List<Variante> variantes = new ArrayList<>();
+        for (int ancho : anchos) {
+            if (ancho >= tamano.width) {
+                break;
+            }
+            int alto = Math.max(1, Math.round((float) tamano.height * ancho / tamano.width));
+            Path destino = uploads.resolve(nombreVariante(foto, ancho));
+            if (!Files.isRegularFile(destino)) {
+                if (original == null) {
+                    original = ImageIO.read(origen.toFile());
+                }
+                escribirJpeg(escalar(original, ancho, alto), destino);
+            }
+            variantes.add(new Variante(ancho, alto, destino.getFileName().toString(), Files.size(destino)));
+        }
+        return variantes;
+    }
+
+    // * Lee solo la cabecera de la imagen
+    private Dimension dimensiones(Path origen) throws IOException {
+        try (ImageInputStream entrada = ImageIO.createImageInputStream(origen.toFile())) {
+            Iterator<ImageReader> readers = entrada != null ? ImageIO.getImageReaders(entrada) : Collections.emptyIterator();
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(entrada);
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage escalar(BufferedImage original, int ancho, int alto) {
+        BufferedImage miniatura = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = miniatura.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            // * Fondo blanco para las imagenes con transparencia, JPEG no tiene canal alfa
+            g.drawImage(original, 0, 0, ancho, alto, Color.WHITE, null);
+        } finally {
+            g.dispose();
+        }
+        return miniatura;
+    }
+
+    // * Se escribe en un temporal y se mueve: dos subidas de la misma foto no pisan una variante a medio escribir
+    private void escribirJpeg(BufferedImage imagen, Path destino) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam parametros = writer.getDefaultWriteParam();
+        parametros.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        parametros.setCompressionQuality(calidad);
+        Path temporal = Files.createTempFile(uploads, ".miniatura-", ".tmp");
+        try {
+            try (ImageOutputStream salida = ImageIO.createImageOutputStream(temporal.toFile())) {
+                writer.setOutput(salida);
+                writer.write(null, new IIOImage(imagen, null, null), parametros);
+            }
+            Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            writer.dispose();
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    static String nombreVariante(String foto, int ancho) {
+        int punto = foto.lastIndexOf('.');
+        String base = punto > 0 ? foto.substring(0, punto) : foto;
+        return base + "-" + ancho + ".jpg";
+    }
+
+    private record Tarea(String id, String foto) {
+    }
+}
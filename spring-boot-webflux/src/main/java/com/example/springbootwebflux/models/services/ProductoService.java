@@ -2,19 +2,26 @@ package com.example.springbootwebflux.models.services;
 
 import com.example.springbootwebflux.models.documents.Categoria;
 import com.example.springbootwebflux.models.documents.Producto;
+import com.example.springbootwebflux.models.dto.EstadisticaCategoria;
+import com.example.springbootwebflux.models.dto.FiltroProducto;
+import com.example.springbootwebflux.models.dto.ProductoVista;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public interface ProductoService {
     public Flux<Producto> findAll();
-    public Flux<Producto> findAllNombreUpperCase();
-    public Flux<Producto> findAllNombreUpperCaseRepeat();
+    public Flux<ProductoVista> findAllNombreUpperCase();
+    public Flux<ProductoVista> findAllNombreUpperCaseRepeat();
     public Mono<Producto> findById(String id);
+    public Mono<Producto> findByFoto(String foto);
+    public Flux<Producto> buscarTexto(String texto, int limite);
     public Mono<Producto> save(Producto producto);
     public Mono<Void> delete(Producto producto);
     public Flux<Categoria> findAllCategoria();
     public Mono<Categoria> findCategoriaById(String id);
     public Mono<Categoria> saveCategoria(Categoria categoria);
+    public Flux<EstadisticaCategoria> estadisticasPorCategoria(FiltroProducto filtro);
+    public Mono<EstadisticaCategoria> estadisticasGenerales(FiltroProducto filtro);
 
 
 
@@ -0,0 +1,189 @@
+package com.example.springbootwebflux.models.services;
+
+import com.example.springbootwebflux.models.documents.Categoria;
+import com.example.springbootwebflux.models.documents.Producto;
+import com.example.springbootwebflux.models.dto.EstadisticaCategoria;
+import com.example.springbootwebflux.models.dto.FiltroProducto;
+import com.example.springbootwebflux.models.dto.ProductoVista;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// * Decorador de ProductoService con cache de lectura (read-through) para findById y findCategoriaById.
+// * Los fallos concurrentes para el mismo id comparten el mismo CompletableFuture, es decir una sola consulta a Mongo.
+// * Cada lectura recibe una copia: los controladores modifican el producto antes de guardarlo y no deben tocar la entrada.
+// * Las escrituras invalidan en doFinally, asi un save que falla a mitad de camino tampoco deja la entrada vieja.
+// * Las estadisticas se guardan por filtro solo config.cache.estadisticas-ttl (0 = sin cache): no se invalidan con
+// * cada escritura, un reporte puede tener unos segundos de atraso
+@Primary
+@Service
+public class ProductoServiceCache implements ProductoService {
+
+    @Autowired
+    private ProductoServiceImpl delegado;
+
+    private final AsyncCache<String, Producto> productos;
+
+    private final AsyncCache<String, Categoria> categorias;
+
+    private final AsyncCache<String, List<EstadisticaCategoria>> estadisticas;
+
+    public ProductoServiceCache(@Value("${config.cache.maximo:10000}") long maximo,
+                                @Value("${config.cache.ttl:5m}") Duration ttl,
+                                @Value("${config.cache.estadisticas-ttl:30s}") Duration ttlEstadisticas) {
+        this.productos = Caffeine.newBuilder()
+                .maximumSize(maximo)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        this.categorias = Caffeine.newBuilder()
+                .maximumSize(maximo)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        this.estadisticas = ttlEstadisticas.isZero() ? null : Caffeine.newBuilder()
+                .maximumSize(1000)
+                .expireAfterWrite(ttlEstadisticas)
+                .recordStats()
+                .buildAsync();
+    }
+
+    @Override
+    public Flux<Producto> findAll() {
+        return delegado.findAll();
+    }
+
+    @Override
+    public Flux<ProductoVista> findAllNombreUpperCase() {
+        return delegado.findAllNombreUpperCase();
+    }
+
+    @Override
+    public Flux<ProductoVista> findAllNombreUpperCaseRepeat() {
+        return delegado.findAllNombreUpperCaseRepeat();
+    }
+
+    @Override
+    public Mono<Producto> findById(String id) {
+        if (id == null) {
+            return delegado.findById(id);
+        }
+        // * Un Mono vacio completa el future con null y Caffeine no guarda la entrada
+        return Mono.fromFuture(() -> productos.get(id, (key, executor) -> delegado.findById(key).toFuture()), true)
+                .map(Producto::new);
+    }
+
+    @Override
+    public Mono<Producto> findByFoto(String foto) {
+        return delegado.findByFoto(foto);
+    }
+
+    @Override
+    public Flux<Producto> buscarTexto(String texto, int limite) {
+        return delegado.buscarTexto(texto, limite);
+    }
+
+    @Override
+    public Mono<Producto> save(Producto producto) {
+        return delegado.save(producto)
+                .doFinally(senal -> invalidar(producto.getId()));
+    }
+
+    @Override
+    public Mono<Void> delete(Producto producto) {
+        return delegado.delete(producto)
+                .doFinally(senal -> invalidar(producto.getId()));
+    }
+
+    @Override
+    public Flux<Categoria> findAllCategoria() {
+        return delegado.findAllCategoria();
+    }
+
+    @Override
+    public Mono<Categoria> findCategoriaById(String id) {
+        if (id == null) {
+            return delegado.findCategoriaById(id);
+        }
+        return Mono.fromFuture(() -> categorias.get(id, (key, executor) -> delegado.findCategoriaById(key).toFuture()), true)
+                .map(Categoria::new);
+    }
+
+    @Override
+    public Mono<Categoria> saveCategoria(Categoria categoria) {
+        return delegado.saveCategoria(categoria)
+                .doFinally(senal -> {
+                    if (categoria.getId() != null) {
+                        categorias.synchronous().invalidate(categoria.getId());
+                    }
+                });
+    }
+
+    @Override
+    public Flux<EstadisticaCategoria> estadisticasPorCategoria(FiltroProducto filtro) {
+        return reporte("categorias", filtro, () -> delegado.estadisticasPorCategoria(filtro));
+    }
+
+    @Override
+    public Mono<EstadisticaCategoria> estadisticasGenerales(FiltroProducto filtro) {
+        return reporte("generales", filtro, () -> delegado.estadisticasGenerales(filtro).flux()).next();
+    }
+
+    // * Pedidos concurrentes del mismo reporte comparten un solo aggregate
+    private Flux<EstadisticaCategoria> reporte(String tipo, FiltroProducto filtro, Supplier<Flux<EstadisticaCategoria>> consulta) {
+        if (estadisticas == null) {
+            return consulta.get();
+        }
+        return Mono.fromFuture(() -> estadisticas.get(clave(tipo, filtro), (key, executor) -> consulta.get().collectList().toFuture()), true)
+                .flatMapIterable(Function.identity());
+    }
+
+    private static String clave(String tipo, FiltroProducto filtro) {
+        return String.join("|", tipo, filtro.getCategoriaId(), String.valueOf(filtro.getPrecioMin()),
+                String.valueOf(filtro.getPrecioMax()), filtro.getNombre(),
+                filtro.getDesde() != null ? String.valueOf(filtro.getDesde().getTime()) : null,
+                filtro.getHasta() != null ? String.valueOf(filtro.getHasta().getTime()) : null);
+    }
+
+    // * Para cambios que no pasan por save (ej. las variantes de MiniaturaService)
+    public void invalidar(String id) {
+        if (id != null) {
+            productos.synchronous().invalidate(id);
+        }
+    }
+
+    // * Aciertos, fallos y desalojos para dimensionar la cache
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("productos", estadisticas(productos));
+        estadisticas.put("categorias", estadisticas(categorias));
+        if (this.estadisticas != null) {
+            estadisticas.put("estadisticas", estadisticas(this.estadisticas));
+        }
+        return estadisticas;
+    }
+
+    private Map<String, Object> estadisticas(AsyncCache<String, ?> cache) {
+        CacheStats stats = cache.synchronous().stats();
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("tamano", cache.synchronous().estimatedSize());
+        resultado.put("aciertos", stats.hitCount());
+        resultado.put("fallos", stats.missCount());
+        resultado.put("desalojos", stats.evictionCount());
+        resultado.put("tasaAciertos", stats.hitRate());
+        return resultado;
+    }
+}
@@ -4,11 +4,18 @@ import com.example.springbootwebflux.models.dao.CategoriaDao;
 import com.example.springbootwebflux.models.dao.ProductoDao;
 import com.example.springbootwebflux.models.documents.Categoria;
 import com.example.springbootwebflux.models.documents.Producto;
+import com.example.springbootwebflux.models.dto.EstadisticaCategoria;
+import com.example.springbootwebflux.models.dto.FiltroProducto;
+import com.example.springbootwebflux.models.dto.ProductoVista;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.List;
+
 @Service
 public class ProductoServiceImpl implements ProductoService {
 
@@ -18,52 +25,116 @@ public class ProductoServiceImpl implements ProductoService {
     @Autowired
     private CategoriaDao categoriaDao;
 
+    // * Todas las llamadas a Mongo pasan por aca: timeout, reintentos (solo lecturas) y circuit breaker
+    @Autowired
+    private ResilienciaMongo resiliencia;
+
+    // * Suscripciones, demanda, elementos, latencia y errores de cada operacion (ver MetricasFlujos)
+    @Autowired
+    private MetricasFlujos metricas;
+
+    // * Con config.categorias.referencia el producto guarda solo el id de la categoria y el nombre se resuelve aca
+    @Autowired
+    private ResolutorCategorias categorias;
+
+    // * Autocompletado en memoria: se mantiene al dia con cada save / delete
+    @Autowired
+    private IndiceProductos indice;
+
+    // * Apagada por defecto: contra limitRate queda dentro del ruido (ContraPresionBenchmark, en
+    // * spring-boot-reactor-benchmarks)
+    @Value("${config.demanda.habilitada:false}")
+    private boolean demandaAdaptativa;
+
+    @Value("${config.demanda.minimo:32}")
+    private int demandaMinima;
+
+    @Value("${config.demanda.maximo:1024}")
+    private int demandaMaxima;
+
+    @Value("${config.demanda.objetivo:50ms}")
+    private Duration demandaObjetivo;
+
+    // * Solo los campos que pintan los listados, el resto no se decodifica. Lo que se ahorra es foto y variantes:
+    // * los productos de la carga inicial no tienen ninguno de los dos y por eso los bytes por fila casi no cambian
+    private static final List<String> CAMPOS_VISTA = List.of("id", "nombre", "precio", "createAt", "categoria");
+
+    // * Con config.demanda.habilitada el cursor de Mongo se pide en lotes que se ajustan a lo rapido que consume el
+    // * cliente (ver DemandaAdaptativa)
     @Override
     public Flux<Producto> findAll() {
-        return dao.findAll();
+        Flux<Producto> productos = resiliencia.lectura(dao.findAll());
+        if (demandaAdaptativa) {
+            productos = productos.transform(DemandaAdaptativa.operador(demandaMinima, demandaMaxima, demandaObjetivo));
+        }
+        return metricas.servicio("findAll", categorias.resolver(productos));
     }
 
     @Override
-    public Flux<Producto> findAllNombreUpperCase() {
-        return dao.findAll()
-                .map(producto -> {
-                    producto.setNombre(producto.getNombre().toUpperCase());
-                    return producto;
-                });
+    public Flux<ProductoVista> findAllNombreUpperCase() {
+        return metricas.servicio("findAllNombreUpperCase", categorias.resolver(resiliencia.lectura(dao.buscar(new FiltroProducto(), CAMPOS_VISTA)))
+                .map(ProductoVista::nombreUpperCase));
     }
 
+    // * Una sola consulta por peticion: las vistas se guardan en memoria y se reproducen 5000 veces
     @Override
-    public Flux<Producto> findAllNombreUpperCaseRepeat() {
-        return findAllNombreUpperCase().repeat(5000);
+    public Flux<ProductoVista> findAllNombreUpperCaseRepeat() {
+        return metricas.servicio("findAllNombreUpperCaseRepeat", findAllNombreUpperCase()
+                .collectList()
+                .flatMapMany(vistas -> Flux.fromIterable(vistas).repeat(5000)));
     }
 
     @Override
     public Mono<Producto> findById(String id) {
-        return dao.findById(id);
+        return metricas.servicio("findById", categorias.resolver(resiliencia.lectura(dao.findById(id))));
+    }
+
+    @Override
+    public Mono<Producto> findByFoto(String foto) {
+        return metricas.servicio("findByFoto", resiliencia.lectura(dao.findFirstByFoto(foto)));
+    }
+
+    @Override
+    public Flux<Producto> buscarTexto(String texto, int limite) {
+        return metricas.servicio("buscarTexto", categorias.resolver(resiliencia.lectura(dao.buscarTexto(texto, limite))));
     }
 
     @Override
     public Mono<Producto> save(Producto producto) {
-        return dao.save(producto);
+        return metricas.servicio("save", categorias.guardar(producto, p -> resiliencia.escritura(dao.save(p)))
+                .doOnNext(indice::actualizar));
     }
 
     @Override
     public Mono<Void> delete(Producto producto) {
-        return dao.delete(producto);
+        return metricas.servicio("delete", resiliencia.escritura(dao.delete(producto))
+                .doOnSuccess(v -> indice.eliminar(producto.getId())));
     }
 
     @Override
     public Flux<Categoria> findAllCategoria() {
-        return categoriaDao.findAll();
+        return metricas.servicio("findAllCategoria", resiliencia.lectura(categoriaDao.findAll()));
     }
 
     @Override
     public Mono<Categoria> findCategoriaById(String id) {
-        return categoriaDao.findById(id);
+        return metricas.servicio("findCategoriaById", resiliencia.lectura(categoriaDao.findById(id)));
     }
 
     @Override
     public Mono<Categoria> saveCategoria(Categoria categoria) {
-        return categoriaDao.save(categoria);
+        return metricas.servicio("saveCategoria", resiliencia.escritura(categoriaDao.save(categoria))
+                .doOnNext(categorias::actualizar));
+    }
+
+    // * Se calculan en Mongo con un aggregate, sin traer los productos
+    @Override
+    public Flux<EstadisticaCategoria> estadisticasPorCategoria(FiltroProducto filtro) {
+        return metricas.servicio("estadisticasPorCategoria", resiliencia.lectura(dao.estadisticasPorCategoria(filtro)));
+    }
+
+    @Override
+    public Mono<EstadisticaCategoria> estadisticasGenerales(FiltroProducto filtro) {
+        return metricas.servicio("estadisticasGenerales", resiliencia.lectura(dao.estadisticasGenerales(filtro)));
     }
 }
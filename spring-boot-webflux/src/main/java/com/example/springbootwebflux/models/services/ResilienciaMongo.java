@@ -0,0 +1,154 @@
+package com.example.springbootwebflux.models.services;
+
+import com.mongodb.MongoNodeIsRecoveringException;
+import com.mongodb.MongoNotPrimaryException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+import reactor.util.retry.RetryBackoffSpec;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// * Timeouts, reintentos y circuit breaker para las llamadas a Mongo de ProductoServiceImpl.
+// * Las lecturas se reintentan con backoff exponencial y jitter (sin jitter, durante un failover todas las instancias
+// * reintentan a la vez). Las escrituras no se reintentan. Si Mongo falla seguido el circuito se abre y las llamadas
+// * fallan enseguida con CallNotPermittedException en vez de esperar el timeout.
+// * Reintentos, timeouts y tiempo abierto se registran en Micrometer (mongo.*) junto con las metricas del circuito de
+// * resilience4j (estado, llamadas rechazadas, tasa de fallos). Este modulo no tiene endpoint propio para verlas:
+// * salen en /actuator/prometheus
+@Service
+public class ResilienciaMongo {
+
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(ResilienciaMongo.class);
+
+    public static final String REINTENTOS = "mongo.reintentos";
+    public static final String TIMEOUTS = "mongo.timeouts";
+    public static final String TIEMPO_ABIERTO = "mongo.circuito.tiempo.abierto";
+
+    private final Duration timeoutLectura;
+    private final Duration timeoutEscritura;
+    private final RetryBackoffSpec reintento;
+    private final CircuitBreaker circuito;
+
+    private final Counter reintentos;
+    private final Counter timeouts;
+    private final AtomicLong abiertoDesde = new AtomicLong();
+    private final AtomicLong tiempoAbierto = new AtomicLong();
+
+    public ResilienciaMongo(MeterRegistry registro,
+                            @Value("${config.resiliencia.timeout-lectura:2s}") Duration timeoutLectura,
+                            @Value("${config.resiliencia.timeout-escritura:10s}") Duration timeoutEscritura,
+                            @Value("${config.resiliencia.reintentos:3}") int maximoReintentos,
+                            @Value("${config.resiliencia.backoff-minimo:100ms}") Duration backoffMinimo,
+                            @Value("${config.resiliencia.backoff-maximo:2s}") Duration backoffMaximo,
+                            @Value("${config.resiliencia.jitter:0.5}") double jitter,
+                            @Value("${config.resiliencia.circuito.umbral-fallos:50}") float umbralFallos,
+                            @Value("${config.resiliencia.circuito.ventana:20}") int ventana,
+                            @Value("${config.resiliencia.circuito.espera-abierto:10s}") Duration esperaAbierto) {
+        this.timeoutLectura = timeoutLectura;
+        this.timeoutEscritura = timeoutEscritura;
+        this.reintentos = Counter.builder(REINTENTOS)
+                .description("Lecturas de Mongo reintentadas")
+                .register(registro);
+        this.timeouts = Counter.builder(TIMEOUTS)
+                .description("Llamadas a Mongo cortadas por timeout")
+                .register(registro);
+        this.reintento = Retry.backoff(maximoReintentos, backoffMinimo)
+                .maxBackoff(backoffMaximo)
+                .jitter(jitter)
+                .filter(ResilienciaMongo::esFallaDeMongo)
+                .doBeforeRetry(senal -> reintentos.increment())
+                .onRetryExhaustedThrow((spec, senal) -> senal.failure());
+        // * Solo cuentan como fallo los problemas de conexion/timeout: un error de validacion o de clave duplicada
+        // * no dice nada de la salud de Mongo
+        CircuitBreakerRegistry circuitos = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .failureRateThreshold(umbralFallos)
+                .slidingWindowSize(ventana)
+                .minimumNumberOfCalls(Math.min(ventana, 10))
+                .waitDurationInOpenState(esperaAbierto)
+                .permittedNumberOfCallsInHalfOpenState(3)
+                .recordException(ResilienciaMongo::esFallaDeMongo)
+                .build());
+        this.circuito = circuitos.circuitBreaker("mongo");
+        // * resilience4j_circuitbreaker_state{name="mongo",state="open"} vale 1 mientras esta abierto
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitos).bindTo(registro);
+        this.circuito.getEventPublisher().onStateTransition(evento -> {
+            log.warn("Circuito de Mongo: " + evento.getStateTransition());
+            if (evento.getStateTransition().getToState() == CircuitBreaker.State.OPEN) {
+                abiertoDesde.set(System.nanoTime());
+            } else if (evento.getStateTransition().getFromState() == CircuitBreaker.State.OPEN) {
+                tiempoAbierto.addAndGet(System.nanoTime() - abiertoDesde.getAndSet(0));
+            }
+        });
+        // * Acumulado, incluye el tramo abierto en curso: rate() da la fraccion del tiempo con el circuito abierto
+        FunctionCounter.builder(TIEMPO_ABIERTO, this, resiliencia -> resiliencia.tiempoAbiertoNanos() / 1e9)
+                .description("Tiempo total con el circuito de Mongo abierto")
+                .baseUnit("seconds")
+                .register(registro);
+    }
+
+    public <T> Mono<T> lectura(Mono<T> llamada) {
+        return llamada
+                .timeout(timeoutLectura)
+                .doOnError(TimeoutException.class, e -> timeouts.increment())
+                .transformDeferred(CircuitBreakerOperator.of(circuito))
+                .retryWhen(reintento);
+    }
+
+    // * El timeout es solo hasta el primer elemento: despues el ritmo lo pone quien consume (contrapresion) y un
+    // * cliente lento no es un Mongo colgado. Se reintenta solo si todavia no se emitio nada, si no se duplicarian
+    public <T> Flux<T> lectura(Flux<T> llamada) {
+        return Flux.defer(() -> {
+            AtomicBoolean emitio = new AtomicBoolean();
+            return llamada
+                    .timeout(Mono.delay(timeoutLectura), elemento -> Mono.never())
+                    .doOnError(TimeoutException.class, e -> timeouts.increment())
+                    .transformDeferred(CircuitBreakerOperator.of(circuito))
+                    .doOnNext(elemento -> emitio.set(true))
+                    .retryWhen(reintento.modifyErrorFilter(filtro -> filtro.and(e -> !emitio.get())));
+        });
+    }
+
+    public <T> Mono<T> escritura(Mono<T> llamada) {
+        return llamada
+                .timeout(timeoutEscritura)
+                .doOnError(TimeoutException.class, e -> timeouts.increment())
+                .transformDeferred(CircuitBreakerOperator.of(circuito));
+    }
+
+    static boolean esFallaDeMongo(Throwable error) {
+        return error instanceof TimeoutException
+                || error instanceof DataAccessResourceFailureException
+                || error instanceof TransientDataAccessException
+                || error instanceof MongoSocketException
+                || error instanceof MongoTimeoutException
+                || error instanceof MongoNotPrimaryException
+                || error instanceof MongoNodeIsRecoveringException;
+    }
+
+    private long tiempoAbiertoNanos() {
+        long abierto = tiempoAbierto.get();
+        long desde = abiertoDesde.get();
+        if (desde != 0) {
+            abierto += System.nanoTime() - desde;
+        }
+        return abierto;
+    }
+}
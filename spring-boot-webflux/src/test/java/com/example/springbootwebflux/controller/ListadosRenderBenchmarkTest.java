@@ -0,0 +1,138 @@
+package com.example.springbootwebflux.controller;
+
+import com.example.springbootwebflux.models.dto.ProductoVista;
+import com.example.springbootwebflux.models.services.AlmacenFotos;
+import com.example.springbootwebflux.models.services.MetricasFlujos;
+import com.example.springbootwebflux.models.services.MiniaturaService;
+import com.example.springbootwebflux.models.services.ProductoService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+// * Render de los listados con FILAS productos (sin Mongo: el servicio es un mock) para elegir buffer y chunk de cada
+// * vista. Mide TTFB (primer DataBuffer), tiempo total, cantidad de escrituras y bytes por escritura.
+// * mvn test -Dbenchmark=true -Dtest=ListadosRenderBenchmarkTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@WebFluxTest(controllers = ProductoController.class,
+        properties = {"config.carga.habilitada=false", "config.vistas.datadriver.retraso=0s"})
+@Import({MetricasFlujos.class, SimpleMeterRegistry.class})
+class ListadosRenderBenchmarkTest {
+
+    private static final int FILAS = 50_000;
+    private static final int CALENTAMIENTO = 2;
+    private static final int MEDICIONES = 5;
+    private static final int[] BUFFERS = {2, 100, 1000};
+    private static final int[] CHUNKS = {0, 1024, 8192, 65536};
+
+    @Autowired
+    private WebTestClient client;
+
+    @Autowired
+    private ConfiguracionVistas configuracionVistas;
+
+    @MockBean
+    private ProductoService productoService;
+
+    @MockBean
+    private MiniaturaService miniaturaService;
+
+    @MockBean
+    private AlmacenFotos almacenFotos;
+
+    @MockBean
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @BeforeEach
+    void setUp() {
+        List<ProductoVista> vistas = new ArrayList<>(FILAS);
+        for (int i = 0; i < FILAS; i++) {
+            vistas.add(new ProductoVista(Integer.toHexString(i), "PRODUCTO " + i, i / 10.0, new Date(), "Electrónica"));
+        }
+        when(productoService.findAllNombreUpperCase()).thenReturn(Flux.fromIterable(vistas));
+        when(productoService.findAllNombreUpperCaseRepeat()).thenReturn(Flux.fromIterable(vistas));
+        client = client.mutate().responseTimeout(Duration.ofMinutes(2)).build();
+    }
+
+    @Test
+    void renderPorModoBufferYChunk() {
+        System.out.printf("%-20s %7s %7s %10s %10s %11s %14s%n",
+                "vista", "buffer", "chunk", "ttfb ms", "total ms", "escrituras", "bytes/escrit.");
+        for (String modo : List.of("full", "chunked", "datadriver")) {
+            for (int chunk : CHUNKS) {
+                ReflectionTestUtils.setField(configuracionVistas, campoChunk(modo), chunk);
+                for (int buffer : BUFFERS) {
+                    Medicion medicion = medir("/listar-" + modo + "?buffer=" + buffer);
+                    System.out.printf("%-20s %7d %7d %10.1f %10.1f %11d %14d%n", "listar-" + modo, buffer, chunk,
+                            medicion.ttfb / 1e6, medicion.total / 1e6, medicion.escrituras, medicion.bytes / medicion.escrituras);
+                    assertTrue(medicion.bytes > FILAS * 100L, "El listado no tiene todas las filas");
+                }
+            }
+        }
+    }
+
+    private static String campoChunk(String modo) {
+        return switch (modo) {
+            case "full" -> "chunkFull";
+            case "chunked" -> "chunkChunked";
+            default -> "chunkDataDriver";
+        };
+    }
+
+    // * Mediana de MEDICIONES renders despues de CALENTAMIENTO
+    private Medicion medir(String uri) {
+        for (int i = 0; i < CALENTAMIENTO; i++) {
+            render(uri);
+        }
+        Medicion[] mediciones = new Medicion[MEDICIONES];
+        for (int i = 0; i < MEDICIONES; i++) {
+            mediciones[i] = render(uri);
+        }
+        Arrays.sort(mediciones, (a, b) -> Long.compare(a.total, b.total));
+        return mediciones[MEDICIONES / 2];
+    }
+
+    private Medicion render(String uri) {
+        AtomicLong primero = new AtomicLong();
+        AtomicLong escrituras = new AtomicLong();
+        AtomicLong bytes = new AtomicLong();
+        long inicio = System.nanoTime();
+        client.get().uri(uri)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(DataBuffer.class)
+                .getResponseBody()
+                .doOnNext(buffer -> {
+                    primero.compareAndSet(0, System.nanoTime());
+                    escrituras.incrementAndGet();
+                    bytes.addAndGet(buffer.readableByteCount());
+                    DataBufferUtils.release(buffer);
+                })
+                .blockLast(Duration.ofMinutes(2));
+        long fin = System.nanoTime();
+        return new Medicion(primero.get() - inicio, fin - inicio, escrituras.get(), bytes.get());
+    }
+
+    private record Medicion(long ttfb, long total, long escrituras, long bytes) {
+    }
+}
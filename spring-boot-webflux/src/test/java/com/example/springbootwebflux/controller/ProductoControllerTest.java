@@ -0,0 +1,245 @@
+package com.example.springbootwebflux.controller;
+
+import com.example.springbootwebflux.models.documents.Producto;
+import com.example.springbootwebflux.models.documents.Variante;
+import com.example.springbootwebflux.models.dto.ProductoVista;
+import com.example.springbootwebflux.models.services.AlmacenFotos;
+import com.example.springbootwebflux.models.services.MetricasFlujos;
+import com.example.springbootwebflux.models.services.MiniaturaService;
+import com.example.springbootwebflux.models.services.ProductoService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@WebFluxTest(controllers = ProductoController.class, properties = "config.carga.habilitada=false")
+@Import({MetricasFlujos.class, SimpleMeterRegistry.class})
+class ProductoControllerTest {
+
+    private static final Path UPLOADS = crearDirectorio();
+
+    private static final byte[] FOTO = "0123456789abcdef".getBytes();
+
+    private static final byte[] MINIATURA = "miniatura".getBytes();
+
+    @Autowired
+    private WebTestClient client;
+
+    @MockBean
+    private ProductoService productoService;
+
+    @MockBean
+    private MiniaturaService miniaturaService;
+
+    @MockBean
+    private AlmacenFotos almacenFotos;
+
+    @MockBean
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @DynamicPropertySource
+    static void propiedades(DynamicPropertyRegistry registry) {
+        registry.add("config.uploads.path", () -> UPLOADS.toString() + "/");
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        when(productoService.findAllCategoria()).thenReturn(Flux.empty());
+        Files.write(UPLOADS.resolve("foto.jpg"), FOTO);
+        Files.write(UPLOADS.resolve("foto-160.jpg"), MINIATURA);
+        Files.write(UPLOADS.getParent().resolve("secreto.txt"), FOTO);
+    }
+
+    @Test
+    void verFotoConCacheYEtag() {
+        client.get().uri("/uploads/img/foto.jpg")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.IMAGE_JPEG)
+                .expectHeader().valueMatches("Cache-Control", "max-age=31536000, public, immutable")
+                .expectHeader().valueEquals("Accept-Ranges", "bytes")
+                .expectHeader().exists("ETag")
+                .expectHeader().exists("Last-Modified")
+                .expectBody(byte[].class).isEqualTo(FOTO);
+    }
+
+    @Test
+    void verFotoNoModificada() {
+        String etag = client.get().uri("/uploads/img/foto.jpg")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(byte[].class)
+                .getResponseHeaders().getETag();
+
+        client.get().uri("/uploads/img/foto.jpg")
+                .ifNoneMatch(etag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    void verFotoPorRango() {
+        byte[] parcial = client.get().uri("/uploads/img/foto.jpg")
+                .header("Range", "bytes=4-7")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PARTIAL_CONTENT)
+                .expectHeader().valueEquals("Content-Range", "bytes 4-7/" + FOTO.length)
+                .expectBody(byte[].class).returnResult().getResponseBody();
+
+        assertThat(new String(parcial)).isEqualTo("4567");
+    }
+
+    @Test
+    void verFotoMiniaturaRedirigeALaVariante() {
+        Producto producto = new Producto("TV", 10.0);
+        producto.setFoto("foto.jpg");
+        producto.setVariantes(List.of(new Variante(160, 120, "foto-160.jpg", 100L)));
+        when(productoService.findByFoto("foto.jpg")).thenReturn(Mono.just(producto));
+        when(miniaturaService.variante(producto, 100)).thenReturn("foto-160.jpg");
+
+        client.get().uri("/uploads/img/foto.jpg?ancho=100")
+                .exchange()
+                .expectStatus().isFound()
+                .expectHeader().location("/uploads/img/foto-160.jpg")
+                .expectHeader().valueEquals("Cache-Control", "max-age=31536000, public");
+        client.get().uri("/uploads/img/foto-160.jpg")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(byte[].class).isEqualTo(MINIATURA);
+    }
+
+    @Test
+    void verFotoMiniaturaSinVariantesNoSeCachea() {
+        Producto producto = new Producto("TV", 10.0);
+        producto.setFoto("foto.jpg");
+        when(productoService.findByFoto("foto.jpg")).thenReturn(Mono.just(producto));
+        when(miniaturaService.variante(producto, 100)).thenReturn("foto.jpg");
+        when(productoService.findByFoto("otra.jpg")).thenReturn(Mono.empty());
+
+        client.get().uri("/uploads/img/foto.jpg?ancho=100")
+                .exchange()
+                .expectStatus().isFound()
+                .expectHeader().location("/uploads/img/foto.jpg")
+                .expectHeader().valueEquals("Cache-Control", "no-cache");
+        client.get().uri("/uploads/img/otra.jpg?ancho=100")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void verFotoInexistenteOFueraDeUploads() {
+        client.get().uri("/uploads/img/no-existe.jpg")
+                .exchange()
+                .expectStatus().isNotFound();
+
+        client.get().uri(URI.create("/uploads/img/..%2Fsecreto.txt"))
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    // * Cada suscripcion al flujo del servicio es una consulta a Mongo: un render tiene que costar una sola
+    @Test
+    void listarConsultaMongoUnaSolaVezPorPagina() {
+        AtomicInteger consultas = contarConsultas();
+
+        client.get().uri("/listar")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).value(html -> assertThat(html).contains("TELEVISOR"));
+
+        assertThat(consultas).hasValue(1);
+        verify(productoService, never()).findAllCategoria();
+    }
+
+    @Test
+    void listarDataDriverConsultaMongoUnaSolaVezPorPagina() {
+        AtomicInteger consultas = contarConsultas();
+
+        client.get().uri("/listar-datadriver")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).value(html -> assertThat(html).contains("TELEVISOR"));
+
+        assertThat(consultas).hasValue(1);
+    }
+
+    @Test
+    void soloElFormularioConsultaLasCategorias() {
+        client.get().uri("/form")
+                .exchange()
+                .expectStatus().isOk();
+
+        verify(productoService, times(1)).findAllCategoria();
+    }
+
+    @Test
+    void listarChunkedEscribeChunksDelTamanoDeSuVista() {
+        when(productoService.findAllNombreUpperCaseRepeat()).thenReturn(Flux.range(0, 2000)
+                .map(i -> new ProductoVista(String.valueOf(i), "TELEVISOR", 10.0, new Date(), "Electrónica")));
+
+        List<Integer> tamanos = client.get().uri("/listar-chunked?buffer=500")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(DataBuffer.class)
+                .getResponseBody()
+                .map(buffer -> {
+                    int tamano = buffer.readableByteCount();
+                    DataBufferUtils.release(buffer);
+                    return tamano;
+                })
+                .collectList()
+                .block();
+
+        // * config.vistas.chunked.chunk=8192 (spring.thymeleaf.reactive.max-chunk-size es 1024)
+        assertThat(tamanos).hasSizeGreaterThan(10).allMatch(tamano -> tamano <= 8192);
+        assertThat(tamanos).anyMatch(tamano -> tamano > 1024);
+    }
+
+    private AtomicInteger contarConsultas() {
+        AtomicInteger consultas = new AtomicInteger();
+        when(productoService.findAllNombreUpperCase()).thenReturn(Flux.defer(() -> {
+            consultas.incrementAndGet();
+            return Flux.just(new ProductoVista("1", "TELEVISOR", 10.0, new Date(), "Electrónica"));
+        }));
+        return consultas;
+    }
+
+    private static Path crearDirectorio() {
+        try {
+            return Files.createDirectories(Files.createTempDirectory("productos").resolve("uploads"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.springbootwebflux.controller;
+
+import com.example.springbootwebflux.models.documents.Categoria;
+import com.example.springbootwebflux.models.documents.Producto;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// * Prueba de carga contra un Mongo real: mvn test -Dbenchmark=true -Dtest=ProductoRestControllerCargaTest
+// * Usa su propia base (spring_boot_carga) y la borra al terminar: la del sistema no se toca
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.data.mongodb.database=spring_boot_carga", "config.carga.habilitada=false"})
+class ProductoRestControllerCargaTest {
+
+    private static final int[] TAMANOS = {10, 1_000, 100_000, 1_000_000};
+    private static final int LOTE = 10_000;
+    private static final int CONSULTAS = 500;
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    private WebTestClient client;
+
+    @BeforeEach
+    @AfterEach
+    void borrarBase() {
+        mongoTemplate.getMongoDatabase()
+                .flatMap(base -> Mono.from(base.drop()))
+                .block();
+    }
+
+    @Test
+    void showTieneLatenciaConstante() {
+        Categoria categoria = new Categoria("Electrónica");
+        categoria.setId(new ObjectId().toHexString());
+
+        List<String> ids = new ArrayList<>();
+        long[] medianas = new long[TAMANOS.length];
+        for (int t = 0; t < TAMANOS.length; t++) {
+            insertar(ids, TAMANOS[t] - ids.size(), categoria);
+
+            long[] latencias = new long[CONSULTAS];
+            for (int i = 0; i < CONSULTAS; i++) {
+                String id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+                long inicio = System.nanoTime();
+                client.get().uri("/api/productos/{id}?campos=nombre,precio", id)
+                        .exchange()
+                        .expectStatus().isOk();
+                latencias[i] = System.nanoTime() - inicio;
+            }
+            Arrays.sort(latencias);
+            medianas[t] = latencias[CONSULTAS / 2];
+            System.out.printf("productos=%d p50=%.3fms p99=%.3fms%n", TAMANOS[t],
+                    medianas[t] / 1e6, latencias[CONSULTAS * 99 / 100] / 1e6);
+        }
+
+        // * Con el indice de _id la latencia no debe crecer con el tamaño de la coleccion
+        assertTrue(medianas[TAMANOS.length - 1] < medianas[0] * 3 + 2_000_000,
+                "La latencia crece con el tamaño de la coleccion");
+    }
+
+    private void insertar(List<String> ids, int cantidad, Categoria categoria) {
+        Flux.range(0, cantidad)
+                .map(i -> {
+                    Producto producto = new Producto("Producto " + i, 100.0 + i, categoria);
+                    producto.setId(new ObjectId().toHexString());
+                    producto.setCreateAt(new Date());
+                    return producto;
+                })
+                .buffer(LOTE)
+                .concatMap(lote -> {
+                    lote.forEach(p -> ids.add(p.getId()));
+                    return mongoTemplate.insertAll(lote);
+                })
+                .then()
+                .block();
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.springbootwebflux.models.dto;
+
+import com.example.springbootwebflux.models.documents.Producto;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.StringTemplateResolver;
+
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// * Bytes asignados por fila pintada: entidad mutada (antes) contra ProductoVista con proyeccion (despues).
+// * No necesita Mongo, decodifica los Document con el mismo conversor: mvn test -Dbenchmark=true -Dtest=ProductoVistaAsignacionesTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ProductoVistaAsignacionesTest {
+
+    private static final int FILAS = 10_000;
+    private static final int RONDAS = 20;
+
+    private static final String FILA = "<tr th:each=\"p : ${productos}\">"
+            + "<td th:text=\"${p.id}\"></td>"
+            + "<td th:text=\"${p.nombre}\"></td>"
+            + "<td th:text=\"${#numbers.formatDecimal(p.precio, 1, 2)}\"></td>"
+            + "<td th:text=\"${#dates.format(p.createAt, 'dd/MM/yyyy')}\"></td>"
+            + "<td th:text=\"${%s}\"></td>"
+            + "</tr>";
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    void vistaAsignaMenosPorFila() {
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+        converter.afterPropertiesSet();
+
+        List<Document> completos = new ArrayList<>();
+        List<Document> proyectados = new ArrayList<>();
+        for (int i = 0; i < FILAS; i++) {
+            Document documento = documento(i);
+            completos.add(documento);
+            Document proyectado = new Document(documento);
+            proyectado.remove("foto");
+            proyectado.remove("_class");
+            proyectados.add(proyectado);
+        }
+
+        SpringTemplateEngine engine = new SpringTemplateEngine();
+        engine.setTemplateResolver(new StringTemplateResolver());
+        String filaAntes = FILA.formatted("p.categoria.nombre");
+        String filaDespues = FILA.formatted("p.categoriaNombre");
+
+        Function<Document, Object> antes = documento -> {
+            Producto producto = converter.read(Producto.class, documento);
+            producto.setNombre(producto.getNombre().toUpperCase());
+            return producto;
+        };
+        Function<Document, Object> despues = documento ->
+                ProductoVista.nombreUpperCase(converter.read(Producto.class, documento));
+
+        // * Calentamiento para que el JIT y las caches de SpEL no cuenten en la medicion
+        for (int i = 0; i < 3; i++) {
+            pintar(engine, filaAntes, completos, antes);
+            pintar(engine, filaDespues, proyectados, despues);
+        }
+
+        long bytesAntes = Long.MAX_VALUE;
+        long bytesDespues = Long.MAX_VALUE;
+        for (int i = 0; i < RONDAS; i++) {
+            bytesAntes = Math.min(bytesAntes, pintar(engine, filaAntes, completos, antes));
+            bytesDespues = Math.min(bytesDespues, pintar(engine, filaDespues, proyectados, despues));
+        }
+        System.out.printf("bytes/fila antes=%d despues=%d%n", bytesAntes / FILAS, bytesDespues / FILAS);
+
+        assertTrue(bytesDespues < bytesAntes, "La vista no reduce las asignaciones por fila");
+    }
+
+    private long pintar(SpringTemplateEngine engine, String plantilla, List<Document> documentos, Function<Document, Object> mapear) {
+        long inicio = threads.getCurrentThreadAllocatedBytes();
+        List<Object> productos = new ArrayList<>(documentos.size());
+        for (Document documento : documentos) {
+            productos.add(mapear.apply(documento));
+        }
+        Context context = new Context();
+        context.setVariable("productos", productos);
+        engine.process(plantilla, context, Writer.nullWriter());
+        return threads.getCurrentThreadAllocatedBytes() - inicio;
+    }
+
+    private Document documento(int i) {
+        return new Document("_id", new ObjectId())
+                .append("nombre", "Producto " + i)
+                .append("precio", 100.0 + i)
+                .append("createAt", new Date())
+                .append("categoria", new Document("_id", new ObjectId()).append("nombre", "Electrónico"))
+                .append("foto", "6f1c2d3e-4b5a-6978-8a9b-0c1d2e3f4a5b-foto-producto-" + i + ".jpg")
+                .append("_class", Producto.class.getName());
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.springbootwebflux.models.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AlmacenFotosTest {
+
+    @TempDir
+    Path uploads;
+
+    @Test
+    void guardaPorHashYReutilizaLaFotoRepetida() throws Exception {
+        AlmacenFotos almacen = new AlmacenFotos(uploads.toString(), DataSize.ofKilobytes(64));
+        byte[] foto = new byte[20_000];
+        Arrays.fill(foto, (byte) 7);
+        String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(foto));
+
+        StepVerifier.create(almacen.guardar(filePart("Mi Foto.JPG", foto, null)))
+                .expectNext(hash + ".jpg")
+                .verifyComplete();
+        StepVerifier.create(almacen.guardar(filePart("otra copia.jpg", foto, null)))
+                .expectNext(hash + ".jpg")
+                .verifyComplete();
+
+        assertThat(archivos()).containsExactly(hash + ".jpg");
+        assertThat(Files.readAllBytes(uploads.resolve(hash + ".jpg"))).isEqualTo(foto);
+    }
+
+    @Test
+    void cortaLaSubidaAlSuperarElTamanoMaximo() throws IOException {
+        AlmacenFotos almacen = new AlmacenFotos(uploads.toString(), DataSize.ofKilobytes(8));
+        AtomicInteger leidos = new AtomicInteger();
+
+        StepVerifier.create(almacen.guardar(filePart("grande.png", new byte[64 * 1024], leidos)))
+                .expectError(DataBufferLimitException.class)
+                .verify();
+
+        // * No se lee el resto del archivo ni queda el temporal en uploads
+        assertThat(leidos.get()).isLessThan(16);
+        assertThat(archivos()).isEmpty();
+    }
+
+    @Test
+    void extension() {
+        assertThat(AlmacenFotos.extension("foto.PNG")).isEqualTo(".png");
+        assertThat(AlmacenFotos.extension("sin-extension")).isEmpty();
+        assertThat(AlmacenFotos.extension("raro.../../x")).isEmpty();
+    }
+
+    // * El contenido llega en trozos de 1KB, como lo entrega el parser multipart
+    private FilePart filePart(String nombre, byte[] contenido, AtomicInteger leidos) {
+        FilePart file = mock(FilePart.class);
+        when(file.filename()).thenReturn(nombre);
+        Flux<DataBuffer> trozos = Flux.range(0, (contenido.length + 1023) / 1024)
+                .doOnNext(i -> {
+                    if (leidos != null) {
+                        leidos.incrementAndGet();
+                    }
+                })
+                .map(i -> DefaultDataBufferFactory.sharedInstance.wrap(
+                        Arrays.copyOfRange(contenido, i * 1024, Math.min(contenido.length, (i + 1) * 1024))));
+        when(file.content()).thenReturn(trozos);
+        return file;
+    }
+
+    private String[] archivos() throws IOException {
+        try (Stream<Path> archivos = Files.list(uploads)) {
+            return archivos.map(p -> p.getFileName().toString()).toArray(String[]::new);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.springbootwebflux.models.services;
+
+import com.example.springbootwebflux.models.dao.CategoriaDao;
+import com.example.springbootwebflux.models.documents.Categoria;
+import com.example.springbootwebflux.models.documents.Producto;
+import com.example.springbootwebflux.models.dto.ProductoVista;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonBinaryReader;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// * Categoria embebida contra referencia por id, sin Mongo: los documentos se codifican a BSON con el converter de
+// * Spring Data y se decodifican de los bytes como llegarian del cursor. Mide tamaño por documento, tiempo de
+// * decodificacion y productos por segundo del listado (decodificar + resolver categorias + ProductoVista).
+// * La consulta $in de categorias se simula con 1ms de latencia.
+// * mvn test -Dbenchmark=true -Dtest=CategoriaReferenciaBenchmarkTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class CategoriaReferenciaBenchmarkTest {
+
+    private static final int FILAS = 100_000;
+    private static final int ITERACIONES = 5;
+    private static final List<Categoria> CATEGORIAS = List.of(
+            categoria("63d8a0f1c2b1e45a7f000001", "Electrónica"),
+            categoria("63d8a0f1c2b1e45a7f000002", "Deportes"),
+            categoria("63d8a0f1c2b1e45a7f000003", "Jardín"),
+            categoria("63d8a0f1c2b1e45a7f000004", "Muebles"));
+
+    private final MappingMongoConverter converter = crearConverter();
+    private final DocumentCodec codec = new DocumentCodec();
+
+    @Test
+    void embebidaContraReferencia() {
+        System.out.printf("%-12s %12s %18s %16s %10s%n", "modo", "bytes/doc", "decodificacion ns", "listado prod/s", "consultas");
+        for (boolean referencia : new boolean[]{false, true}) {
+            ResolutorCategorias resolutor = resolutor(referencia);
+            List<byte[]> documentos = codificar(resolutor);
+            long bytes = documentos.stream().mapToLong(documento -> documento.length).sum();
+
+            long decodificacion = Long.MAX_VALUE;
+            long listado = Long.MAX_VALUE;
+            for (int i = 0; i < ITERACIONES; i++) {
+                long inicio = System.nanoTime();
+                for (byte[] documento : documentos) {
+                    decodificar(documento);
+                }
+                decodificacion = Math.min(decodificacion, System.nanoTime() - inicio);
+
+                inicio = System.nanoTime();
+                Long cantidad = resolutor.resolver(Flux.fromIterable(documentos).map(this::decodificar))
+                        .map(ProductoVista::nombreUpperCase)
+                        .count()
+                        .block();
+                listado = Math.min(listado, System.nanoTime() - inicio);
+                assertEquals(FILAS, cantidad);
+            }
+            System.out.printf("%-12s %12d %18d %16.0f %10d%n", referencia ? "referencia" : "embebida",
+                    bytes / FILAS, decodificacion / FILAS, FILAS / (listado / 1e9), resolutor.getConsultas());
+        }
+    }
+
+    private List<byte[]> codificar(ResolutorCategorias resolutor) {
+        List<byte[]> documentos = new ArrayList<>(FILAS);
+        for (int i = 0; i < FILAS; i++) {
+            Producto producto = new Producto("Producto " + i, i / 10.0, CATEGORIAS.get(i % CATEGORIAS.size()));
+            producto.setId(String.format("%024x", i));
+            producto.setCreateAt(new Date());
+            resolutor.reducir(producto);
+            Document documento = new Document();
+            converter.write(producto, documento);
+            ByteBuffer buffer = new RawBsonDocument(documento, codec).getByteBuffer().asNIO();
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            documentos.add(bytes);
+        }
+        return documentos;
+    }
+
+    private Producto decodificar(byte[] bytes) {
+        Document documento = codec.decode(new BsonBinaryReader(ByteBuffer.wrap(bytes)), DecoderContext.builder().build());
+        return converter.read(Producto.class, documento);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ResolutorCategorias resolutor(boolean referencia) {
+        CategoriaDao categoriaDao = mock(CategoriaDao.class);
+        when(categoriaDao.findAllById(any(Iterable.class)))
+                .thenReturn(Flux.fromIterable(CATEGORIAS).delaySubscription(Duration.ofMillis(1)));
+        ResolutorCategorias resolutor = new ResolutorCategorias(referencia, 500, Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(resolutor, "categoriaDao", categoriaDao);
+        ReflectionTestUtils.setField(resolutor, "resiliencia", new ResilienciaMongo(new SimpleMeterRegistry(), Duration.ofSeconds(5),
+                Duration.ofSeconds(5), 0, Duration.ofMillis(10), Duration.ofMillis(10), 0.5, 50, 10, Duration.ofSeconds(10)));
+        return resolutor;
+    }
+
+    private static MappingMongoConverter crearConverter() {
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+        converter.afterPropertiesSet();
+        return converter;
+    }
+
+    private static Categoria categoria(String id, String nombre) {
+        Categoria categoria = new Categoria(nombre);
+        categoria.setId(id);
+        return categoria;
+    }
+}
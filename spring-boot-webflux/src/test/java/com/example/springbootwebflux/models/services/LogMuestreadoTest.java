@@ -0,0 +1,69 @@
+package com.example.springbootwebflux.models.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogMuestreadoTest {
+
+    private final List<String> mensajes = new ArrayList<>();
+
+    private Logger logger(Level nivel) {
+        Logger log = Logger.getAnonymousLogger();
+        log.setUseParentHandlers(false);
+        log.setLevel(nivel);
+        log.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord registro) {
+                mensajes.add(registro.getMessage());
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        return log;
+    }
+
+    @Test
+    void escribeUnoDeCadaNYSoloArmaEsosMensajes() {
+        LogMuestreado logMuestreado = new LogMuestreado(logger(Level.INFO), 10);
+        AtomicInteger armados = new AtomicInteger();
+
+        for (int i = 0; i < 25; i++) {
+            int n = i;
+            logMuestreado.info(() -> {
+                armados.incrementAndGet();
+                return "Producto " + n;
+            });
+        }
+
+        assertThat(mensajes).hasSize(3);
+        assertThat(mensajes.get(1)).startsWith("Producto 10");
+        assertThat(armados).hasValue(3);
+        assertThat(logMuestreado.getContador()).isEqualTo(25);
+    }
+
+    @Test
+    void conFineSeEscribenTodos() {
+        LogMuestreado logMuestreado = new LogMuestreado(logger(Level.FINE), 10);
+
+        for (int i = 0; i < 25; i++) {
+            logMuestreado.info(() -> "Producto");
+        }
+
+        assertThat(mensajes).hasSize(25);
+    }
+}
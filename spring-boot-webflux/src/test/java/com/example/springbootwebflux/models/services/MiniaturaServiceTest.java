@@ -0,0 +1,109 @@
+package com.example.springbootwebflux.models.services;
+
+import com.example.springbootwebflux.models.dao.ProductoDao;
+import com.example.springbootwebflux.models.documents.Producto;
+import com.example.springbootwebflux.models.documents.Variante;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MiniaturaServiceTest {
+
+    @TempDir
+    Path uploads;
+
+    private final ProductoDao dao = mock(ProductoDao.class);
+
+    private final ProductoServiceCache productoServiceCache = mock(ProductoServiceCache.class);
+
+    private MiniaturaService miniaturaService;
+
+    @BeforeEach
+    void setUp() {
+        when(dao.guardarVariantes(anyString(), anyString(), anyList())).thenReturn(Mono.just(true));
+    }
+
+    @AfterEach
+    void tearDown() {
+        miniaturaService.cerrar();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void generaLasVariantesMasChicasQueLaOriginal() throws IOException {
+        miniaturaService = crear(2, 8);
+        ImageIO.write(new BufferedImage(800, 600, BufferedImage.TYPE_INT_ARGB), "png", uploads.resolve("foto.png").toFile());
+
+        assertThat(miniaturaService.encolar("1", "foto.png")).isTrue();
+
+        ArgumentCaptor<List<Variante>> variantes = ArgumentCaptor.forClass(List.class);
+        verify(dao, timeout(5000)).guardarVariantes(eq("1"), eq("foto.png"), variantes.capture());
+        verify(productoServiceCache, timeout(5000)).invalidar("1");
+
+        // * 1024 es mas ancho que la original y no se genera
+        assertThat(variantes.getValue()).extracting(Variante::getAncho).containsExactly(160, 480);
+        assertThat(variantes.getValue()).extracting(Variante::getAlto).containsExactly(120, 360);
+        BufferedImage miniatura = ImageIO.read(uploads.resolve("foto-160.jpg").toFile());
+        assertThat(miniatura.getWidth()).isEqualTo(160);
+
+        Producto producto = new Producto("TV", 10.0);
+        producto.setFoto("foto.png");
+        assertThat(miniaturaService.variante(producto, 100)).isEqualTo("foto.png");
+        producto.setVariantes(variantes.getValue());
+        assertThat(miniaturaService.variante(producto, 100)).isEqualTo("foto-160.jpg");
+        assertThat(miniaturaService.variante(producto, 300)).isEqualTo("foto-480.jpg");
+        assertThat(miniaturaService.variante(producto, 2000)).isEqualTo("foto.png");
+        assertThat(miniaturaService.variante(producto, null)).isEqualTo("foto.png");
+    }
+
+    @Test
+    void descartaCuandoLaColaEstaLlena() throws IOException {
+        // * Sin hilos libres: el unico trabajador queda ocupado y la cola de 4 se llena
+        miniaturaService = crear(1, 4);
+        when(dao.guardarVariantes(anyString(), anyString(), anyList())).thenReturn(Mono.never());
+        ImageIO.write(new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB), "png", uploads.resolve("foto.png").toFile());
+
+        int aceptadas = 0;
+        for (int i = 0; i < 20; i++) {
+            if (miniaturaService.encolar(String.valueOf(i), "foto.png")) {
+                aceptadas++;
+            }
+        }
+
+        assertThat(aceptadas).isLessThanOrEqualTo(5);
+        assertThat(miniaturaService.getDescartadas()).isEqualTo(20 - aceptadas);
+    }
+
+    @Test
+    void nombreVariante() {
+        miniaturaService = crear(1, 1);
+        assertThat(MiniaturaService.nombreVariante("abc-foto.png", 160)).isEqualTo("abc-foto-160.jpg");
+        assertThat(MiniaturaService.nombreVariante("sinextension", 480)).isEqualTo("sinextension-480.jpg");
+    }
+
+    private MiniaturaService crear(int hilos, int cola) {
+        MiniaturaService servicio = new MiniaturaService(uploads.toString(), List.of(1024, 160, 480), 0.8f, hilos, cola);
+        ReflectionTestUtils.setField(servicio, "dao", dao);
+        ReflectionTestUtils.setField(servicio, "productoServiceCache", productoServiceCache);
+        return servicio;
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.springbootwebflux.models.services;
+
+import com.example.springbootwebflux.models.dao.CategoriaDao;
+import com.example.springbootwebflux.models.dao.ProductoDao;
+import com.example.springbootwebflux.models.documents.Categoria;
+import com.example.springbootwebflux.models.documents.Producto;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// * Mongo falso: los DAO son mocks que fallan (o se cuelgan) las primeras N suscripciones. Lo que se mira son los
+// * medidores que ResilienciaMongo registra, que es lo unico que este modulo expone de la resiliencia
+class ResilienciaMongoTest {
+
+    private ProductoDao dao;
+    private CategoriaDao categoriaDao;
+    private MeterRegistry registro;
+    private ProductoServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        dao = mock(ProductoDao.class);
+        categoriaDao = mock(CategoriaDao.class);
+        registro = new SimpleMeterRegistry();
+        // * timeout 100ms, 2 reintentos de 10-50ms, circuito de 4 llamadas que se abre con 50% de fallos
+        ResilienciaMongo resiliencia = new ResilienciaMongo(registro, Duration.ofMillis(100), Duration.ofMillis(100), 2,
+                Duration.ofMillis(10), Duration.ofMillis(50), 0.5, 50, 4, Duration.ofSeconds(30));
+        service = new ProductoServiceImpl();
+        ReflectionTestUtils.setField(service, "dao", dao);
+        ReflectionTestUtils.setField(service, "categoriaDao", categoriaDao);
+        ReflectionTestUtils.setField(service, "resiliencia", resiliencia);
+        ReflectionTestUtils.setField(service, "metricas", new MetricasFlujos(registro));
+        ReflectionTestUtils.setField(service, "categorias", new ResolutorCategorias(false, 500, Duration.ofMinutes(5)));
+        ReflectionTestUtils.setField(service, "indice", new IndiceProductos());
+    }
+
+    private static <T> Mono<T> fallaLasPrimeras(int fallos, AtomicInteger suscripciones, T valor) {
+        return Mono.defer(() -> suscripciones.incrementAndGet() <= fallos
+                ? Mono.error(new DataAccessResourceFailureException("Mongo no responde"))
+                : Mono.just(valor));
+    }
+
+    private double contador(String nombre) {
+        return registro.get(nombre).counter().count();
+    }
+
+    private double circuito(String estado) {
+        return registro.get("resilience4j.circuitbreaker.state").tag("state", estado).gauge().value();
+    }
+
+    @Test
+    void cadaReintentoSeCuentaEnElRegistro() {
+        AtomicInteger suscripciones = new AtomicInteger();
+        when(dao.findById("1")).thenReturn(fallaLasPrimeras(2, suscripciones, new Producto("TV", 10.0)));
+
+        StepVerifier.create(service.findById("1"))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertThat(suscripciones).hasValue(3);
+        assertThat(contador(ResilienciaMongo.REINTENTOS)).isEqualTo(2);
+        assertThat(contador(ResilienciaMongo.TIMEOUTS)).isZero();
+    }
+
+    @Test
+    void cadaTimeoutSeCuentaEnElRegistro() {
+        when(dao.findById("1")).thenReturn(Mono.never());
+
+        StepVerifier.create(service.findById("1"))
+                .expectError(TimeoutException.class)
+                .verify(Duration.ofSeconds(5));
+
+        // * El intento original y los 2 reintentos
+        assertThat(contador(ResilienciaMongo.TIMEOUTS)).isEqualTo(3);
+        assertThat(contador(ResilienciaMongo.REINTENTOS)).isEqualTo(2);
+    }
+
+    @Test
+    void lasEscriturasNoSeReintentan() {
+        AtomicInteger suscripciones = new AtomicInteger();
+        Producto producto = new Producto("TV", 10.0);
+        when(dao.save(any())).thenReturn(fallaLasPrimeras(1, suscripciones, producto));
+
+        StepVerifier.create(service.save(producto))
+                .expectError(DataAccessResourceFailureException.class)
+                .verify();
+
+        assertThat(suscripciones).hasValue(1);
+        assertThat(contador(ResilienciaMongo.REINTENTOS)).isZero();
+    }
+
+    @Test
+    void erroresQueNoSonDeMongoDejanElCircuitoCerrado() {
+        when(categoriaDao.findAll()).thenReturn(Flux.error(new IllegalArgumentException("consulta invalida")));
+
+        for (int i = 0; i < 5; i++) {
+            StepVerifier.create(service.findAllCategoria()).expectError(IllegalArgumentException.class).verify();
+        }
+
+        assertThat(circuito("closed")).isEqualTo(1);
+        assertThat(contador(ResilienciaMongo.REINTENTOS)).isZero();
+    }
+
+    @Test
+    void elCircuitoAbiertoSeVeEnElEstadoYEnElTiempoAbierto() throws InterruptedException {
+        AtomicInteger suscripciones = new AtomicInteger();
+        when(categoriaDao.findById("1")).thenReturn(fallaLasPrimeras(Integer.MAX_VALUE, suscripciones, new Categoria("Deportes")));
+
+        // * Una llamada con sus 2 reintentos ya completa la ventana de 4 con 3 fallos
+        StepVerifier.create(service.findCategoriaById("1")).expectError(DataAccessResourceFailureException.class).verify();
+        StepVerifier.create(service.findCategoriaById("1")).expectError().verify();
+        assertThat(circuito("open")).isEqualTo(1);
+        assertThat(circuito("closed")).isZero();
+
+        int antes = suscripciones.get();
+        StepVerifier.create(service.findCategoriaById("1"))
+                .expectError(CallNotPermittedException.class)
+                .verify(Duration.ofMillis(50));
+
+        assertThat(suscripciones).hasValue(antes);
+        assertThat(contador("resilience4j.circuitbreaker.not.permitted.calls")).isGreaterThanOrEqualTo(1);
+        Thread.sleep(20);
+        assertThat(registro.get(ResilienciaMongo.TIEMPO_ABIERTO).functionCounter().count()).isGreaterThanOrEqualTo(0.02);
+    }
+}
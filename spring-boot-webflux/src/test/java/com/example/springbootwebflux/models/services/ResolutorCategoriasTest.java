@@ -0,0 +1,125 @@
+package com.example.springbootwebflux.models.services;
+
+import com.example.springbootwebflux.models.dao.CategoriaDao;
+import com.example.springbootwebflux.models.documents.Categoria;
+import com.example.springbootwebflux.models.documents.Producto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ResolutorCategoriasTest {
+
+    private CategoriaDao categoriaDao;
+
+    @BeforeEach
+    void setUp() {
+        categoriaDao = mock(CategoriaDao.class);
+        when(categoriaDao.findAllById(any(Iterable.class))).thenAnswer(invocation -> {
+            List<Categoria> encontradas = new ArrayList<>();
+            for (Object id : (Iterable<?>) invocation.getArgument(0)) {
+                encontradas.add(categoria((String) id, "Categoria " + id));
+            }
+            return Flux.fromIterable(encontradas);
+        });
+    }
+
+    private ResolutorCategorias resolutor(boolean referencia) {
+        ResolutorCategorias resolutor = new ResolutorCategorias(referencia, 100, Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(resolutor, "categoriaDao", categoriaDao);
+        ReflectionTestUtils.setField(resolutor, "resiliencia", new ResilienciaMongo(new SimpleMeterRegistry(), Duration.ofSeconds(1),
+                Duration.ofSeconds(1), 0, Duration.ofMillis(10), Duration.ofMillis(10), 0.5, 50, 10, Duration.ofSeconds(10)));
+        return resolutor;
+    }
+
+    private static Categoria categoria(String id, String nombre) {
+        Categoria categoria = new Categoria(nombre);
+        categoria.setId(id);
+        return categoria;
+    }
+
+    private static Flux<Producto> productos(int cantidad, int categorias) {
+        return Flux.range(0, cantidad).map(i -> {
+            Producto producto = new Producto("Producto " + i, 10.0, categoria("c" + i % categorias, null));
+            producto.setId(String.valueOf(i));
+            return producto;
+        });
+    }
+
+    @Test
+    void resuelveConUnaConsultaPorLoteSoloLasQueNoEstanEnMemoria() {
+        ResolutorCategorias resolutor = resolutor(true);
+
+        List<Producto> resueltos = resolutor.resolver(productos(350, 3)).collectList().block();
+
+        assertThat(resueltos).hasSize(350);
+        assertThat(resueltos).extracting(Producto::getId).containsExactlyElementsOf(
+                productos(350, 3).map(Producto::getId).collectList().block());
+        assertThat(resueltos).allMatch(p -> p.getCategoria().getNombre().equals("Categoria " + p.getCategoria().getId()));
+        // * 4 lotes de 100: las 3 categorias se traen en el primero, el resto sale del mapa
+        assertThat(resolutor.getConsultas()).isEqualTo(1);
+
+        // * Una categoria nueva en otro listado: se consulta solo esa
+        resolutor.resolver(productos(10, 4)).blockLast();
+        assertThat(resolutor.getConsultas()).isEqualTo(2);
+        verify(categoriaDao).findAllById(Set.of("c3"));
+    }
+
+    @Test
+    void guardaSoloElIdYDevuelveLaCategoriaCompleta() {
+        ResolutorCategorias resolutor = resolutor(true);
+        Producto producto = new Producto("TV", 10.0, categoria("c1", "Electrónica"));
+        AtomicReference<Categoria> guardada = new AtomicReference<>();
+
+        StepVerifier.create(resolutor.guardar(producto, p -> {
+                    guardada.set(p.getCategoria());
+                    return Mono.just(p);
+                }))
+                .assertNext(p -> assertThat(p.getCategoria().getNombre()).isEqualTo("Electrónica"))
+                .verifyComplete();
+
+        assertThat(guardada.get().getId()).isEqualTo("c1");
+        assertThat(guardada.get().getNombre()).isNull();
+    }
+
+    @Test
+    void elRenombreSeVeSinReescribirProductos() {
+        ResolutorCategorias resolutor = resolutor(true);
+        resolutor.resolver(productos(5, 1)).blockLast();
+
+        resolutor.actualizar(categoria("c0", "Renombrada"));
+
+        assertThat(resolutor.resolver(productos(5, 1)).map(p -> p.getCategoria().getNombre()).collectList().block())
+                .containsOnly("Renombrada");
+        verify(categoriaDao, times(1)).findAllById(any(Iterable.class));
+    }
+
+    @Test
+    void sinModoReferenciaNoHaceNada() {
+        ResolutorCategorias resolutor = resolutor(false);
+        Producto producto = new Producto("TV", 10.0, categoria("c1", "Electrónica"));
+
+        resolutor.resolver(productos(50, 3)).blockLast();
+        resolutor.reducir(producto);
+
+        assertThat(producto.getCategoria().getNombre()).isEqualTo("Electrónica");
+        verify(categoriaDao, never()).findAllById(any(Iterable.class));
+    }
+}